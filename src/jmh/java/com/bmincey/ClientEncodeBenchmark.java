@@ -0,0 +1,134 @@
+package com.bmincey;
+
+import com.datastax.driver.core.CodecRegistry;
+import com.datastax.driver.core.DataType;
+import com.datastax.driver.core.ProtocolVersion;
+import com.datastax.driver.core.TypeCodec;
+import org.bson.BsonBinaryWriter;
+import org.bson.Document;
+import org.bson.codecs.DocumentCodec;
+import org.bson.codecs.EncoderContext;
+import org.bson.io.BasicOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cost of producing one point, measured without a server.  Covers the random-walk
+ * generator, the Cassandra bind path (value to codec lookup and serialization, which is what
+ * BoundStatement.bind does for each variable) and the MongoDB path (Document construction and
+ * BSON encoding).  Run with -prof gc to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientEncodeBenchmark {
+
+    private static final ProtocolVersion PROTOCOL_VERSION = ProtocolVersion.V4;
+
+    private final SampleDataGenerator generator = new SampleDataGenerator(100);
+    private final CodecRegistry codecRegistry = CodecRegistry.DEFAULT_INSTANCE;
+    private final DocumentCodec documentCodec = new DocumentCodec();
+    private final EncoderContext encoderContext = EncoderContext.builder().build();
+
+    private String host;
+    private double value;
+    private Document document;
+
+    @Setup
+    public void setup() {
+        this.host = this.generator.nextHost();
+        this.value = this.generator.nextValue();
+        this.document = this.newDocument();
+    }
+
+    @Benchmark
+    public void randomWalk(Blackhole blackhole) {
+        blackhole.consume(this.generator.nextHost());
+        blackhole.consume(this.generator.nextValue());
+    }
+
+    @Benchmark
+    public void cassandraBind(Blackhole blackhole) {
+        Date date = new Date(System.currentTimeMillis());
+
+        blackhole.consume(this.serialize(DataType.text(), this.host));
+        blackhole.consume(this.serialize(DataType.text(), "m1"));
+        blackhole.consume(this.serialize(DataType.timestamp(), date));
+        blackhole.consume(this.serialize(DataType.cdouble(), this.value));
+    }
+
+    @Benchmark
+    public void cassandraSerializeOnly(Blackhole blackhole) {
+        blackhole.consume(TypeCodec.varchar().serialize(this.host, PROTOCOL_VERSION));
+        blackhole.consume(TypeCodec.varchar().serialize("m1", PROTOCOL_VERSION));
+        blackhole.consume(TypeCodec.timestamp().serialize(new Date(System.currentTimeMillis()), PROTOCOL_VERSION));
+        blackhole.consume(TypeCodec.cdouble().serializeNoBoxing(this.value, PROTOCOL_VERSION));
+    }
+
+    @Benchmark
+    public Document mongoDocument() {
+        return this.newDocument();
+    }
+
+    @Benchmark
+    public int mongoEncode() {
+        return this.encode(this.document);
+    }
+
+    @Benchmark
+    public int mongoDocumentAndEncode() {
+        return this.encode(this.newDocument());
+    }
+
+    /**
+     *
+     * @param type
+     * @param value
+     * @return
+     */
+    private <T> ByteBuffer serialize(DataType type, T value) {
+        TypeCodec<T> codec = this.codecRegistry.codecFor(type, value);
+        return codec.serialize(value, PROTOCOL_VERSION);
+    }
+
+    /**
+     *
+     * @return
+     */
+    private Document newDocument() {
+        return new Document("host", this.host)
+                .append("metric", "m1")
+                .append("time", new Date(System.currentTimeMillis()))
+                .append("value", this.value);
+    }
+
+    /**
+     *
+     * @param document
+     * @return encoded size in bytes
+     */
+    private int encode(Document document) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer(64);
+        BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+
+        this.documentCodec.encode(writer, document, this.encoderContext);
+        writer.close();
+        return buffer.getPosition();
+    }
+}
@@ -0,0 +1,66 @@
+package com.bmincey;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Heap bytes allocated by the current thread since the meter was created, from the HotSpot
+ * per-thread allocation counter.  Allocations of driver I/O threads are not included.  Reports
+ * -1 on JVMs without the counter.
+ */
+public class AllocationMeter {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean SUPPORTED = THREADS instanceof com.sun.management.ThreadMXBean &&
+            ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported();
+
+    private final long started = threadAllocatedBytes();
+
+    /**
+     *
+     * @return bytes allocated by the current thread so far, -1 if not supported
+     */
+    public static long threadAllocatedBytes() {
+        if (!SUPPORTED) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     *
+     * @return bytes allocated so far by all live threads, -1 if not supported; threads that have
+     * exited no longer count
+     */
+    public static long allThreadsAllocatedBytes() {
+        if (!SUPPORTED) {
+            return -1;
+        }
+
+        long total = 0;
+        for (long bytes : ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Call from the thread that created the meter.
+     *
+     * @return bytes allocated since the meter was created, -1 if not supported
+     */
+    public long allocatedBytes() {
+        return SUPPORTED ? threadAllocatedBytes() - this.started : -1;
+    }
+
+    /**
+     *
+     * @param rows
+     * @return bytes allocated per row since the meter was created, -1 if not supported
+     */
+    public long bytesPerRow(long rows) {
+        return SUPPORTED && rows > 0 ? this.allocatedBytes() / rows : -1;
+    }
+}
@@ -1,5 +1,6 @@
 package com.bmincey;
 
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -19,12 +20,113 @@ public class ApplicationProperties {
     public static final String contactPointProperty = "contactPoint";
     public static final String keySpaceProperty = "keySpace";
     public static final String tableProperty = "table";
+    // Cassandra connection profile props
+    public static final String cassandraCoreConnectionsPerHostProperty = "cassandraCoreConnectionsPerHost";
+    public static final String cassandraMaxConnectionsPerHostProperty = "cassandraMaxConnectionsPerHost";
+    public static final String cassandraMaxRequestsPerConnectionProperty = "cassandraMaxRequestsPerConnection";
+    public static final String cassandraTokenAwareProperty = "cassandraTokenAware";
+    public static final String cassandraLocalDcProperty = "cassandraLocalDc";
+    public static final String cassandraCompressionProperty = "cassandraCompression";
+    public static final String cassandraConnectTimeoutMsProperty = "cassandraConnectTimeoutMs";
+    public static final String cassandraReadTimeoutMsProperty = "cassandraReadTimeoutMs";
+
+    public static final String cassandraBucketSpanMsProperty = "cassandraBucketSpanMs";
+    public static final String cassandraTtlSecondsProperty = "cassandraTtlSeconds";
+    // Parallel scan props (Cassandra and MongoDB)
+    public static final String parallelScanProperty = "parallelScan";
+    public static final String scanThreadsProperty = "scanThreads";
+    public static final String scanFetchSizeProperty = "scanFetchSize";
+    public static final String seriesPageSizeProperty = "seriesPageSize";
+    public static final String scanSplitsPerThreadProperty = "scanSplitsPerThread";
+    public static final String mongoScanSplitFieldProperty = "mongoScanSplitField";
     // MongoDB props
     public static final String mongoDBUriProperty = "mongoDBUri";
     public static final String databaseProperty = "database";
     public static final String collectionProperty = "collection";
     public static final String useBulkInsertProperty = "useBulkInsert";
 
+    public static final String mongoBucketSpanMsProperty = "mongoBucketSpanMs";
+    public static final String mongoBucketMaxPointsProperty = "mongoBucketMaxPoints";
+    // MongoDB async ingest props
+    public static final String mongoAsyncIngestProperty = "mongoAsyncIngest";
+    public static final String mongoAsyncMaxInFlightProperty = "mongoAsyncMaxInFlight";
+    public static final String mongoAsyncBatchSizeProperty = "mongoAsyncBatchSize";
+    public static final String mongoAsyncLingerMsProperty = "mongoAsyncLingerMs";
+    public static final String mongoPointCodecProperty = "mongoPointCodec";
+    // Cassandra async ingest props
+    public static final String asyncIngestProperty = "asyncIngest";
+    public static final String asyncMaxInFlightProperty = "asyncMaxInFlight";
+    public static final String asyncBatchRowsProperty = "asyncBatchRows";
+    // MongoDB bulk ingest props
+    public static final String bulkIngestProperty = "bulkIngest";
+    public static final String bulkBatchSizeProperty = "bulkBatchSize";
+    public static final String bulkLingerMsProperty = "bulkLingerMs";
+    public static final String bulkOrderedProperty = "bulkOrdered";
+    public static final String bulkWriterThreadsProperty = "bulkWriterThreads";
+    // Workload driver props
+    public static final String rollupsProperty = "rollups";
+    public static final String rollupWindowMsProperty = "rollupWindowMs";
+    public static final String rollupFlushMsProperty = "rollupFlushMs";
+
+    public static final String queryCacheProperty = "queryCache";
+    public static final String queryCacheMaxEntriesProperty = "queryCacheMaxEntries";
+    public static final String queryCacheSegmentsProperty = "queryCacheSegments";
+    public static final String cacheBenchmarkSecondsProperty = "cacheBenchmarkSeconds";
+    public static final String cacheBenchmarkHotHostsProperty = "cacheBenchmarkHotHosts";
+    public static final String cacheBenchmarkReadRatioProperty = "cacheBenchmarkReadRatio";
+    public static final String cacheBenchmarkRangeMsProperty = "cacheBenchmarkRangeMs";
+    public static final String cacheBenchmarkRefreshMsProperty = "cacheBenchmarkRefreshMs";
+
+    public static final String driverMetricsProperty = "driverMetrics";
+    public static final String driverMetricsSnapshotFileProperty = "driverMetricsSnapshotFile";
+    public static final String driverMetricsSnapshotMsProperty = "driverMetricsSnapshotMs";
+
+    public static final String warmupIterationsProperty = "warmupIterations";
+    public static final String warmupSecondsProperty = "warmupSeconds";
+
+    public static final String storeProperty = "store";
+    public static final String workerThreadsProperty = "workerThreads";
+    public static final String iterationsProperty = "iterations";
+    public static final String numHostsProperty = "numHosts";
+    public static final String queryIterationsProperty = "queryIterations";
+    public static final String expectedIntervalMicrosProperty = "expectedIntervalMicros";
+    // Open-loop load generator props
+    public static final String openLoopRatesProperty = "openLoopRates";
+    public static final String openLoopStepSecondsProperty = "openLoopStepSeconds";
+    public static final String openLoopReadRatioProperty = "openLoopReadRatio";
+    public static final String openLoopMaxThreadsProperty = "openLoopMaxThreads";
+    // Mixed workload props
+    public static final String workloadHostsProperty = "workloadHosts";
+    public static final String workloadMetricsPerHostProperty = "workloadMetricsPerHost";
+    public static final String workloadReadRatioProperty = "workloadReadRatio";
+    public static final String workloadDistributionProperty = "workloadDistribution";
+    public static final String workloadRangeMsProperty = "workloadRangeMs";
+    public static final String workloadSecondsProperty = "workloadSeconds";
+    public static final String workloadThreadsProperty = "workloadThreads";
+    // Consistency matrix props
+    public static final String cassandraWriteConsistencyLevelsProperty = "cassandraWriteConsistencyLevels";
+    public static final String cassandraReadConsistencyLevelsProperty = "cassandraReadConsistencyLevels";
+    public static final String mongoWriteConcernsProperty = "mongoWriteConcerns";
+    public static final String mongoReadPreferencesProperty = "mongoReadPreferences";
+    // Trace replay props
+    public static final String traceFileProperty = "traceFile";
+    public static final String traceSpeedProperty = "traceSpeed";
+    public static final String traceThreadsProperty = "traceThreads";
+    // Multi-series fan-out query props
+    public static final String fanOutConcurrencyProperty = "fanOutConcurrency";
+    public static final String mongoFanOutModeProperty = "mongoFanOutMode";
+    public static final String fanOutSeriesProperty = "fanOutSeries";
+    public static final String fanOutQueriesProperty = "fanOutQueries";
+    public static final String fanOutRangeMsProperty = "fanOutRangeMs";
+    public static final String fanOutPointsPerSeriesProperty = "fanOutPointsPerSeries";
+    // Parameter tuner props
+    public static final String tunerBatchSizesProperty = "tunerBatchSizes";
+    public static final String tunerConcurrencyProperty = "tunerConcurrency";
+    public static final String tunerThreadsProperty = "tunerThreads";
+    public static final String tunerTrialSecondsProperty = "tunerTrialSeconds";
+    public static final String tunerP99BudgetMsProperty = "tunerP99BudgetMs";
+    public static final String tunerPlateauPercentProperty = "tunerPlateauPercent";
+
 
     /**
      *
@@ -42,6 +144,23 @@ public class ApplicationProperties {
     }
 
 
+    /**
+     * Overrides properties with those of a file, e.g. a workload spec.
+     *
+     * @param propertiesFile
+     * @throws IOException
+     */
+    public void load(String propertiesFile) throws IOException {
+        InputStream inputStream = new FileInputStream(propertiesFile);
+
+        try {
+            properties.load(inputStream);
+        }
+        finally {
+            inputStream.close();
+        }
+    }
+
     /**
      *
      * @param propertyName
@@ -51,6 +170,31 @@ public class ApplicationProperties {
         return properties.getProperty(propertyName);
     }
 
+    /**
+     *
+     * @param propertyName
+     * @param defaultValue value returned when the property is not set
+     * @return
+     */
+    public String getApplicationProperty(final String propertyName, final String defaultValue) {
+        return properties.getProperty(propertyName, defaultValue);
+    }
+
+    /**
+     *
+     * @param list comma separated list of integers
+     * @return
+     */
+    public static int[] parseIntList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
     /**
      *
      * @param args
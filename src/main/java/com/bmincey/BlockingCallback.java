@@ -0,0 +1,45 @@
+package com.bmincey;
+
+import com.mongodb.MongoException;
+import com.mongodb.async.SingleResultCallback;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Adapts an async driver callback to a blocking call, for the MetricStore methods of the async
+ * MongoDB store that have to return a result.  The write path does not use it.
+ */
+public class BlockingCallback<T> implements SingleResultCallback<T> {
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile T result;
+    private volatile Throwable error;
+
+    @Override
+    public void onResult(T result, Throwable t) {
+        this.result = result;
+        this.error = t;
+        this.done.countDown();
+    }
+
+    /**
+     *
+     * @return the result, null if the operation has none
+     */
+    public T get() {
+        try {
+            this.done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+
+        if (this.error instanceof RuntimeException) {
+            throw (RuntimeException) this.error;
+        }
+        if (this.error != null) {
+            throw new MongoException("Async operation failed", this.error);
+        }
+        return this.result;
+    }
+}
@@ -0,0 +1,189 @@
+package com.bmincey;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares read latency with and without a CachingMetricStore under a mixed workload.  Worker
+ * threads write random points and, in a fraction readRatio of their operations, act as a
+ * dashboard: they read the max and a fixed-length range of one of a few hot series, with the
+ * range ending at the last refresh boundary so concurrent dashboards send identical queries.
+ * The same workload runs for the same time against a fresh schema, first uncached and then cached.
+ */
+public class CachedReadBenchmark {
+
+    private final MetricStore store;
+    private final int numHosts;
+    private final int threads;
+    private final int hotHosts;
+    private final double readRatio;
+    private final long rangeMillis;
+    private final long refreshMillis;
+
+    /**
+     *
+     * @param store uncached store
+     * @param numHosts
+     * @param threads
+     * @param hotHosts number of series read by dashboards
+     * @param readRatio fraction of operations that are dashboard reads
+     * @param rangeMillis length of each dashboard range
+     * @param refreshMillis dashboard ranges end on a multiple of this
+     */
+    public CachedReadBenchmark(MetricStore store, int numHosts, int threads, int hotHosts, double readRatio,
+                               long rangeMillis, long refreshMillis) {
+        this.store = store;
+        this.numHosts = numHosts;
+        this.threads = threads;
+        this.hotHosts = hotHosts;
+        this.readRatio = readRatio;
+        this.rangeMillis = rangeMillis;
+        this.refreshMillis = refreshMillis;
+    }
+
+    /**
+     *
+     * @param seconds duration of each run
+     * @param cache cache in front of the store given to the constructor
+     */
+    public void run(int seconds, CachingMetricStore cache) {
+        System.out.println("Store: " + this.store + ", threads = " + this.threads + ", hot hosts = " + this.hotHosts +
+                ", read ratio = " + this.readRatio + ", range = " + this.rangeMillis + " ms, refresh = " +
+                this.refreshMillis + " ms, seconds = " + seconds);
+
+        System.out.println("Uncached...");
+        this.runMixed(this.store, seconds).print(System.out);
+
+        System.out.println("Cached...");
+        this.runMixed(cache, seconds).print(System.out);
+        System.out.println("Query cache: " + cache.cacheStats());
+    }
+
+    /**
+     *
+     * @param target
+     * @param seconds
+     * @return latencies of the run
+     */
+    private LatencyStats runMixed(final MetricStore target, int seconds) {
+        final LatencyStats latencyStats = new LatencyStats(target.toString(), 0);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+
+        target.createSchema();
+
+        for (int t = 0; t < this.threads; t++) {
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return mix(target, latencyStats, deadline);
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+        long operations = 0;
+        try {
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                operations += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        target.flush();
+
+        System.out.println("Operations = " + operations + ", operations/sec = " + operations / Math.max(1, seconds));
+        return latencyStats;
+    }
+
+    /**
+     *
+     * @param target
+     * @param latencyStats
+     * @param deadline
+     * @return operations executed
+     */
+    private long mix(MetricStore target, LatencyStats latencyStats, long deadline) {
+        SampleDataGenerator generator = new SampleDataGenerator(this.numHosts);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long operations = 0;
+
+        while (System.nanoTime() < deadline) {
+            long now = System.currentTimeMillis();
+
+            if (random.nextDouble() < this.readRatio) {
+                String hostname = "host" + random.nextInt(this.hotHosts);
+                long to = now - now % this.refreshMillis;
+
+                long started = System.nanoTime();
+                target.maxQuery(hostname, "m1");
+                latencyStats.record("max", started);
+
+                started = System.nanoTime();
+                target.rangeQuery(hostname, "m1", to - this.rangeMillis, to);
+                latencyStats.record("range", started);
+                operations += 2;
+            } else {
+                int m = random.nextInt(SampleDataGenerator.METRICS.length);
+
+                long started = System.nanoTime();
+                target.write(generator.nextHost(), SampleDataGenerator.METRICS[m], now,
+                        generator.nextValue() * SampleDataGenerator.MULTIPLIERS[m]);
+                latencyStats.record("insert", started);
+                operations++;
+            }
+        }
+        return operations;
+    }
+
+    /**
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+            int numHosts = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.numHostsProperty, "100"));
+            int threads = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.workerThreadsProperty, "4"));
+            int seconds = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.cacheBenchmarkSecondsProperty, "10"));
+            int hotHosts = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.cacheBenchmarkHotHostsProperty, "10"));
+            double readRatio = Double.parseDouble(appProps.getApplicationProperty(
+                    ApplicationProperties.cacheBenchmarkReadRatioProperty, "0.9"));
+            long rangeMillis = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.cacheBenchmarkRangeMsProperty, "60000"));
+            long refreshMillis = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.cacheBenchmarkRefreshMsProperty, "1000"));
+
+            MetricStore store = MetricStoreFactory.create(storeName, appProps, false);
+            try {
+                new CachedReadBenchmark(store, numHosts, threads, hotHosts, readRatio, rangeMillis, refreshMillis)
+                        .run(seconds, MetricStoreFactory.createCache(store, appProps));
+            } finally {
+                store.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
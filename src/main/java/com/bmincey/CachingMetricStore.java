@@ -0,0 +1,505 @@
+package com.bmincey;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricStore decorator with a bounded read-through cache for max, range and point queries,
+ * keyed by (host, metric, query, range).  The cache is split into segments, each an
+ * access-ordered LinkedHashMap evicting its least recently used entry, so readers of
+ * different series rarely share a lock.
+ *
+ * Writes keep the cache consistent.  A cached max is raised in place, a cached point at the
+ * written time takes the new value, and cached ranges containing the written time are dropped.
+ * Each series has a generation that every write advances.  A reader only caches its result
+ * when the generation did not change while the query ran, so a result read before a
+ * concurrent write is never cached.
+ */
+public class CachingMetricStore implements MetricStore {
+
+    // approximate heap cost of one entry besides its strings: map entry, key, value and boxed result
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+
+    private static final int MAX = 0;
+    private static final int RANGE = 1;
+    private static final int POINT = 2;
+
+    private final MetricStore store;
+    private final int maxEntries;
+    private final Segment[] segments;
+    private final ConcurrentMap<String, SeriesState> series = new ConcurrentHashMap<String, SeriesState>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    /**
+     *
+     * @param store the store queries are read through to
+     * @param maxEntries upper bound on cached results
+     * @param segmentCount number of independently locked LRU segments
+     */
+    public CachingMetricStore(MetricStore store, int maxEntries, int segmentCount) {
+        this.store = store;
+        this.maxEntries = maxEntries;
+        this.segments = new Segment[Math.max(1, segmentCount)];
+
+        for (int i = 0; i < this.segments.length; i++) {
+            this.segments[i] = new Segment(Math.max(1, maxEntries / this.segments.length));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.store.getName() + "+cache";
+    }
+
+    @Override
+    public String toString() {
+        return this.store + ", query cache = " + this.maxEntries + " entries in " + this.segments.length +
+                " segments";
+    }
+
+    @Override
+    public void createSchema() {
+        this.store.createSchema();
+        this.clear();
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        this.store.write(host, metric, time, value);
+
+        SeriesState state = this.seriesState(host, metric);
+        synchronized (state) {
+            state.generation++;
+
+            for (QueryKey key : state.keys) {
+                Segment segment = this.segmentFor(key);
+
+                synchronized (segment) {
+                    Entry entry = segment.get(key);
+                    if (entry == null) {
+                        state.keys.remove(key);
+                    } else if (key.kind == MAX) {
+                        entry.value = entry.value == null ? value : Math.max((Double) entry.value, value);
+                    } else if (key.kind == POINT && key.from == time) {
+                        entry.value = value;
+                    } else if (key.kind == RANGE && time >= key.from && time < key.to) {
+                        segment.remove(key);
+                        this.removed(key);
+                        this.invalidations.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        this.store.flush();
+    }
+
+    @Override
+    public Double pointQuery(final String host, final String metric, final long time) {
+        return (Double) this.readThrough(new QueryKey(POINT, host, metric, time, time), new Loader() {
+            @Override
+            public Object load() {
+                return store.pointQuery(host, metric, time);
+            }
+        });
+    }
+
+    @Override
+    public int rangeQuery(final String host, final String metric, final long from, final long to) {
+        return (Integer) this.readThrough(new QueryKey(RANGE, host, metric, from, to), new Loader() {
+            @Override
+            public Object load() {
+                return store.rangeQuery(host, metric, from, to);
+            }
+        });
+    }
+
+    /**
+     * Pages are not cached: they are meant for long ranges read once, which would only evict
+     * the small results the cache is for.
+     *
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @param limit
+     * @param pagingState
+     * @return
+     */
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        return this.store.readRange(host, metric, from, to, limit, pagingState);
+    }
+
+    /**
+     * Cached ranges are answered from the cache; the remaining series are read from the wrapped
+     * store in one multi-series query and cached individually.
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        int[] counts = new int[series.size()];
+        List<Integer> missed = new ArrayList<Integer>();
+        List<SeriesId> missedSeries = new ArrayList<SeriesId>();
+        List<QueryKey> missedKeys = new ArrayList<QueryKey>();
+        List<Long> generations = new ArrayList<Long>();
+
+        for (int i = 0; i < counts.length; i++) {
+            SeriesId id = series.get(i);
+            QueryKey key = new QueryKey(RANGE, id.getHost(), id.getMetric(), from, to);
+            Entry entry = this.lookup(key);
+
+            if (entry != null) {
+                counts[i] = (Integer) entry.value;
+            } else {
+                missed.add(i);
+                missedSeries.add(id);
+                missedKeys.add(key);
+                generations.add(this.generation(key));
+            }
+        }
+
+        if (!missed.isEmpty()) {
+            int[] loaded = this.store.multiRangeQuery(missedSeries, from, to);
+
+            for (int m = 0; m < loaded.length; m++) {
+                counts[missed.get(m)] = loaded[m];
+                this.cache(missedKeys.get(m), generations.get(m), loaded[m]);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public Double maxQuery(final String host, final String metric) {
+        return (Double) this.readThrough(new QueryKey(MAX, host, metric, 0, 0), new Loader() {
+            @Override
+            public Object load() {
+                return store.maxQuery(host, metric);
+            }
+        });
+    }
+
+    @Override
+    public long scan() {
+        return this.store.scan();
+    }
+
+    @Override
+    public String storageStats() {
+        return this.store.storageStats();
+    }
+
+    /**
+     *
+     * @param key
+     * @param loader
+     * @return the cached result, or the result of loader
+     */
+    private Object readThrough(QueryKey key, Loader loader) {
+        Entry entry = this.lookup(key);
+        if (entry != null) {
+            return entry.value;
+        }
+
+        long generation = this.generation(key);
+        Object value = loader.load();
+        this.cache(key, generation, value);
+        return value;
+    }
+
+    /**
+     * Counts a hit or a miss.
+     *
+     * @param key
+     * @return the cached entry, or null
+     */
+    private Entry lookup(QueryKey key) {
+        Segment segment = this.segmentFor(key);
+
+        synchronized (segment) {
+            Entry entry = segment.get(key);
+            if (entry != null) {
+                this.hits.incrementAndGet();
+                return entry;
+            }
+        }
+        this.misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     *
+     * @param key
+     * @return write generation of the series of key, taken before its query runs
+     */
+    private long generation(QueryKey key) {
+        SeriesState state = this.seriesState(key.host, key.metric);
+        synchronized (state) {
+            return state.generation;
+        }
+    }
+
+    /**
+     * Caches value unless the series was written since generation.
+     *
+     * @param key
+     * @param generation
+     * @param value
+     */
+    private void cache(QueryKey key, long generation, Object value) {
+        Segment segment = this.segmentFor(key);
+        SeriesState state = this.seriesState(key.host, key.metric);
+
+        synchronized (state) {
+            if (state.generation == generation) {
+                synchronized (segment) {
+                    if (segment.put(key, new Entry(value)) == null) {
+                        this.estimatedBytes.addAndGet(key.estimatedBytes());
+                    }
+                }
+                state.keys.add(key);
+            }
+        }
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @return
+     */
+    private SeriesState seriesState(String host, String metric) {
+        String key = InMemoryMetricStore.seriesKey(host, metric);
+        SeriesState state = this.series.get(key);
+
+        if (state == null) {
+            SeriesState created = new SeriesState();
+            state = this.series.putIfAbsent(key, created);
+            if (state == null) {
+                state = created;
+            }
+        }
+        return state;
+    }
+
+    /**
+     *
+     * @param key
+     * @return
+     */
+    private Segment segmentFor(QueryKey key) {
+        return this.segments[(key.hashCode() & 0x7fffffff) % this.segments.length];
+    }
+
+    /**
+     * Accounting for an entry that left its segment.
+     *
+     * @param key
+     */
+    private void removed(QueryKey key) {
+        this.estimatedBytes.addAndGet(-key.estimatedBytes());
+    }
+
+    /**
+     * Drops every cached result and resets the counters.
+     */
+    public void clear() {
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        this.series.clear();
+        this.hits.set(0);
+        this.misses.set(0);
+        this.invalidations.set(0);
+        this.evictions.set(0);
+        this.estimatedBytes.set(0);
+    }
+
+    /**
+     *
+     * @return cached results over all segments
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     *
+     * @return approximate heap used by cached entries
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    /**
+     *
+     * @return hits / (hits + misses), or 0 before the first query
+     */
+    public double getHitRate() {
+        long hits = this.hits.get();
+        long total = hits + this.misses.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    /**
+     *
+     * @return
+     */
+    public String cacheStats() {
+        return String.format("entries = %d, hits = %d, misses = %d, hit rate = %.1f%%, invalidations = %d, " +
+                        "evictions = %d, estimated bytes = %d", this.size(), this.getHits(), this.getMisses(),
+                this.getHitRate() * 100, this.getInvalidations(), this.getEvictions(), this.getEstimatedBytes());
+    }
+
+    @Override
+    public void close() {
+        this.store.close();
+    }
+
+    /**
+     * Reads a result from the wrapped store on a cache miss.
+     */
+    private interface Loader {
+        Object load();
+    }
+
+    /**
+     * Cached result, updated in place by writes while its segment is locked.
+     */
+    private static class Entry {
+
+        private Object value;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * Write generation and cached keys of one series.  Keys of evicted entries are removed
+     * lazily by the next write to the series.
+     */
+    private static class SeriesState {
+
+        private long generation = 0;
+        private final Set<QueryKey> keys = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * One LRU segment; every access must hold the segment's lock.
+     */
+    private class Segment extends LinkedHashMap<QueryKey, Entry> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<QueryKey, Entry> eldest) {
+            if (this.size() <= this.capacity) {
+                return false;
+            }
+            removed(eldest.getKey());
+            evictions.incrementAndGet();
+            return true;
+        }
+    }
+
+    /**
+     * (query, host, metric, from, to); unused bounds are 0.
+     */
+    private static class QueryKey {
+
+        private final int kind;
+        private final String host;
+        private final String metric;
+        private final long from;
+        private final long to;
+        private final int hash;
+
+        QueryKey(int kind, String host, String metric, long from, long to) {
+            this.kind = kind;
+            this.host = host;
+            this.metric = metric;
+            this.from = from;
+            this.to = to;
+
+            int hash = kind;
+            hash = 31 * hash + host.hashCode();
+            hash = 31 * hash + metric.hashCode();
+            hash = 31 * hash + (int) (from ^ (from >>> 32));
+            hash = 31 * hash + (int) (to ^ (to >>> 32));
+            this.hash = hash;
+        }
+
+        long estimatedBytes() {
+            return ENTRY_OVERHEAD_BYTES + 2L * (this.host.length() + this.metric.length());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof QueryKey)) {
+                return false;
+            }
+            QueryKey other = (QueryKey) o;
+            return this.kind == other.kind && this.from == other.from && this.to == other.to &&
+                    this.host.equals(other.host) && this.metric.equals(other.metric);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.bmincey;
+
+import com.datastax.driver.core.BatchStatement;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined Cassandra writer built on executeAsync.  The number of requests in flight is
+ * capped with semaphore permits so the client never queues more work than the pool can take.
+ * Rows that share a (host, metric) partition can optionally be grouped into unlogged batches.
+ */
+public class CassandraAsyncWriter {
+
+    private final Session session;
+    private final PreparedStatement prepared;
+    private final int maxInFlight;
+    private final int batchRows;
+    private final Semaphore permits;
+    private final LatencyStats latencyStats;
+    private final String insertOperation;
+    private final String batchOperation;
+
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Throwable lastError;
+
+    // bind serializes the timestamp, so each writing thread can reuse one Date across writes
+    private final ThreadLocal<Date> dates = new ThreadLocal<Date>() {
+        @Override
+        protected Date initialValue() {
+            return new Date();
+        }
+    };
+
+    // partition key -> rows waiting to be sent as one unlogged batch
+    private final Map<String, BatchStatement> pending = new HashMap<String, BatchStatement>();
+
+    /**
+     * @param session
+     * @param prepared    INSERT statement taking (host, metric, time, value)
+     * @param maxInFlight maximum number of requests outstanding at any time
+     * @param batchRows   rows per partition batch, 1 disables batching
+     */
+    public CassandraAsyncWriter(Session session, PreparedStatement prepared, int maxInFlight, int batchRows) {
+        this(session, prepared, maxInFlight, batchRows, null);
+    }
+
+    /**
+     * @param session
+     * @param prepared     INSERT statement taking (host, metric, time, value)
+     * @param maxInFlight  maximum number of requests outstanding at any time
+     * @param batchRows    rows per partition batch, 1 disables batching
+     * @param latencyStats receives the latency of every request, may be null, under operation
+     *                     names carrying maxInFlight and batchRows
+     */
+    public CassandraAsyncWriter(Session session, PreparedStatement prepared, int maxInFlight, int batchRows,
+                                LatencyStats latencyStats) {
+        this.session = session;
+        this.prepared = prepared;
+        this.maxInFlight = maxInFlight;
+        this.batchRows = Math.max(1, batchRows);
+        this.permits = new Semaphore(maxInFlight);
+        this.latencyStats = latencyStats;
+
+        String settings = "[inFlight=" + maxInFlight + ",batch=" + this.batchRows + "]";
+        this.insertOperation = "asyncInsert" + settings;
+        this.batchOperation = "asyncBatch" + settings;
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time
+     * @param value
+     */
+    public void write(String host, String metric, Date time, double value) {
+        if (this.batchRows == 1) {
+            this.send(this.prepared.bind(host, metric, time, value), 1);
+            return;
+        }
+
+        BatchStatement full = null;
+        String partitionKey = host + ':' + metric;
+
+        synchronized (this.pending) {
+            BatchStatement batch = this.pending.get(partitionKey);
+
+            if (batch == null) {
+                batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+                this.pending.put(partitionKey, batch);
+            }
+
+            batch.add(this.prepared.bind(host, metric, time, value));
+
+            if (batch.size() >= this.batchRows) {
+                full = this.pending.remove(partitionKey);
+            }
+        }
+
+        if (full != null) {
+            this.send(full, full.size());
+        }
+    }
+
+    /**
+     * Same as write(host, metric, Date, value), without a Date per call.
+     *
+     * @param host
+     * @param metric
+     * @param time
+     * @param value
+     */
+    public void write(String host, String metric, long time, double value) {
+        Date date = this.dates.get();
+        date.setTime(time);
+        this.write(host, metric, date, value);
+    }
+
+    /**
+     * Sends any partially filled batches and blocks until every outstanding request completes.
+     */
+    public void flush() {
+        List<BatchStatement> remaining;
+
+        synchronized (this.pending) {
+            remaining = new ArrayList<BatchStatement>(this.pending.values());
+            this.pending.clear();
+        }
+
+        for (BatchStatement batch : remaining) {
+            this.send(batch, batch.size());
+        }
+
+        this.permits.acquireUninterruptibly(this.maxInFlight);
+        this.permits.release(this.maxInFlight);
+    }
+
+    /**
+     *
+     * @param statement
+     * @param rows number of rows carried by the statement
+     */
+    private void send(Statement statement, final int rows) {
+        this.permits.acquireUninterruptibly();
+
+        final String operation = rows == 1 ? this.insertOperation : this.batchOperation;
+        final long started = System.nanoTime();
+        ResultSetFuture future;
+        try {
+            future = this.session.executeAsync(statement);
+        } catch (RuntimeException e) {
+            this.permits.release();
+            this.errors.addAndGet(rows);
+            this.lastError = e;
+            return;
+        }
+
+        Futures.addCallback(future, new FutureCallback<ResultSet>() {
+            @Override
+            public void onSuccess(ResultSet result) {
+                if (latencyStats != null) {
+                    latencyStats.record(operation, started);
+                }
+                rowsWritten.addAndGet(rows);
+                permits.release();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                errors.addAndGet(rows);
+                lastError = t;
+                permits.release();
+            }
+        });
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Throwable getLastError() {
+        return lastError;
+    }
+}
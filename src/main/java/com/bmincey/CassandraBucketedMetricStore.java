@@ -0,0 +1,389 @@
+package com.bmincey;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cassandra MetricStore with bounded partitions: a time bucket is part of the partition key, so
+ * one (host, metric) series is spread over one partition per bucket span instead of growing a
+ * single partition forever.
+ *
+ * <pre>
+ * PRIMARY KEY ((host, metric, bucket), time)
+ * </pre>
+ *
+ * The table uses TimeWindowCompactionStrategy with a window equal to the bucket span, and an
+ * optional default TTL.  Writes and point reads go to the bucket containing the time.  The
+ * buckets a series has written are recorded once each in a small index table.  Range reads look
+ * up the recorded buckets overlapping the range there and query only those, so an open-ended
+ * range such as 0 to Long.MAX_VALUE costs one read per written bucket; the max query fans out
+ * to every recorded bucket.
+ */
+public class CassandraBucketedMetricStore implements MetricStore {
+
+    private final String KEYSPACE;
+    private final String TABLE;
+    private final String INDEX_TABLE;
+    private final long bucketSpanMillis;
+    private final int ttlSeconds;
+
+    private final Cluster cluster;
+    private final Session session;
+    private final CassandraConnectionProfile connectionProfile;
+
+    // buckets already recorded in the index table, keyed host:metric:bucket
+    private final ConcurrentMap<String, Boolean> knownBuckets = new ConcurrentHashMap<String, Boolean>();
+
+    private PreparedStatement insert;
+    private PreparedStatement indexInsert;
+    private PreparedStatement pointSelect;
+    private PreparedStatement rangeSelect;
+    private PreparedStatement rangePageSelect;
+    private PreparedStatement maxSelect;
+    private PreparedStatement bucketSelect;
+    private PreparedStatement bucketRangeSelect;
+    private ConsistencyLevel readConsistency;
+    private ConsistencyLevel writeConsistency;
+
+    private int scanThreads = Runtime.getRuntime().availableProcessors();
+    private int scanFetchSize = 5000;
+    private int scanSplitsPerThread = 4;
+    private CassandraScanner scanner;
+    private DriverMetricsReporter driverMetrics;
+    private int fanOutConcurrency = 32;
+
+    /**
+     *
+     * @param contactPoint
+     * @param keySpace
+     * @param table base table name, _buckets is appended
+     * @param connectionProfile
+     * @param bucketSpanMillis time covered by one partition
+     * @param ttlSeconds default time to live of the table, 0 for none
+     */
+    public CassandraBucketedMetricStore(String contactPoint, String keySpace, String table,
+                                        CassandraConnectionProfile connectionProfile,
+                                        long bucketSpanMillis, int ttlSeconds) {
+        this.KEYSPACE = keySpace;
+        this.TABLE = table + "_buckets";
+        this.INDEX_TABLE = table + "_bucket_index";
+        this.bucketSpanMillis = bucketSpanMillis;
+        this.ttlSeconds = ttlSeconds;
+        this.connectionProfile = connectionProfile;
+
+        this.cluster = connectionProfile.buildCluster(contactPoint);
+        this.session = this.cluster.connect();
+    }
+
+    @Override
+    public String getName() {
+        return "cassandra-bucketed";
+    }
+
+    @Override
+    public String toString() {
+        return this.getName() + " (bucket span = " + this.bucketSpanMillis + " ms, ttl = " +
+                (this.ttlSeconds > 0 ? this.ttlSeconds + " s" : "none") + ", " + this.connectionProfile +
+                CassandraMetricStore.consistencyString(this.readConsistency, this.writeConsistency) + ")";
+    }
+
+    /**
+     * Registers this store's driver metrics with reporter, which is closed with the store.
+     *
+     * @param reporter
+     */
+    public void setDriverMetrics(DriverMetricsReporter reporter) {
+        this.driverMetrics = reporter;
+        reporter.register(new CassandraDriverMetrics(this.getName(), cluster, session));
+    }
+
+    /**
+     * Consistency levels of this store's reads and writes; null keeps the driver default.  The
+     * parallel scan keeps the default.
+     *
+     * @param readConsistency
+     * @param writeConsistency
+     */
+    public void setConsistency(ConsistencyLevel readConsistency, ConsistencyLevel writeConsistency) {
+        this.readConsistency = readConsistency;
+        this.writeConsistency = writeConsistency;
+
+        if (this.insert != null) {
+            this.applyConsistency();
+        }
+    }
+
+    /**
+     *
+     * @param fanOutConcurrency maximum bucket reads outstanding in a multi-series query
+     */
+    public void setFanOutConcurrency(int fanOutConcurrency) {
+        this.fanOutConcurrency = fanOutConcurrency;
+    }
+
+    /**
+     * Settings of the parallel token-range scan used by scan().
+     *
+     * @param scanThreads
+     * @param scanFetchSize
+     * @param scanSplitsPerThread
+     */
+    public void setScanOptions(int scanThreads, int scanFetchSize, int scanSplitsPerThread) {
+        this.scanThreads = scanThreads;
+        this.scanFetchSize = scanFetchSize;
+        this.scanSplitsPerThread = scanSplitsPerThread;
+        this.scanner = null;
+    }
+
+    @Override
+    public void createSchema() {
+        String table = this.KEYSPACE + "." + this.TABLE;
+        String indexTable = this.KEYSPACE + "." + this.INDEX_TABLE;
+        long windowMinutes = Math.max(1, this.bucketSpanMillis / 60000);
+
+        session.execute("CREATE KEYSPACE IF NOT EXISTS " + this.KEYSPACE +
+                " WITH replication = {'class': 'SimpleStrategy', 'replication_factor' : 1}");
+        session.execute("DROP TABLE IF EXISTS " + table);
+        session.execute("DROP TABLE IF EXISTS " + indexTable);
+        session.execute("CREATE TABLE " + table +
+                "(host text, metric text, bucket timestamp, time timestamp, value double, " +
+                "PRIMARY KEY ((host, metric, bucket), time) ) WITH CLUSTERING ORDER BY (time ASC)" +
+                " AND compaction = {'class': 'TimeWindowCompactionStrategy', " +
+                "'compaction_window_unit': 'MINUTES', 'compaction_window_size': " + windowMinutes + "}" +
+                (this.ttlSeconds > 0 ? " AND default_time_to_live = " + this.ttlSeconds : ""));
+        session.execute("CREATE TABLE " + indexTable +
+                "(host text, metric text, bucket timestamp, PRIMARY KEY ((host, metric), bucket) )");
+
+        this.knownBuckets.clear();
+        this.prepareStatements();
+    }
+
+    /**
+     *
+     */
+    private void prepareStatements() {
+        String table = this.KEYSPACE + "." + this.TABLE;
+        String indexTable = this.KEYSPACE + "." + this.INDEX_TABLE;
+
+        this.insert = session.prepare("INSERT INTO " + table +
+                " (host, metric, bucket, time, value) values (?, ?, ?, ?, ?)");
+        this.indexInsert = session.prepare("INSERT INTO " + indexTable + " (host, metric, bucket) values (?, ?, ?)");
+        this.pointSelect = session.prepare("select value from " + table +
+                " where host = ? and metric = ? and bucket = ? and time = ?");
+        this.rangeSelect = session.prepare("select time, value from " + table +
+                " where host = ? and metric = ? and bucket = ? and time >= ? and time < ?");
+        this.rangePageSelect = session.prepare("select time, value from " + table +
+                " where host = ? and metric = ? and bucket = ? and time >= ? and time < ? limit ?");
+        this.maxSelect = session.prepare("select max(value) from " + table +
+                " where host = ? and metric = ? and bucket = ?");
+        this.bucketSelect = session.prepare("select bucket from " + indexTable + " where host = ? and metric = ?");
+        this.bucketRangeSelect = session.prepare("select bucket from " + indexTable +
+                " where host = ? and metric = ? and bucket >= ? and bucket < ?");
+        this.applyConsistency();
+    }
+
+    /**
+     * Sets the consistency levels on the prepared statements, so every bound statement inherits them.
+     */
+    private void applyConsistency() {
+        this.insert.setConsistencyLevel(this.writeConsistency);
+        this.indexInsert.setConsistencyLevel(this.writeConsistency);
+        this.pointSelect.setConsistencyLevel(this.readConsistency);
+        this.rangeSelect.setConsistencyLevel(this.readConsistency);
+        this.rangePageSelect.setConsistencyLevel(this.readConsistency);
+        this.maxSelect.setConsistencyLevel(this.readConsistency);
+        this.bucketSelect.setConsistencyLevel(this.readConsistency);
+        this.bucketRangeSelect.setConsistencyLevel(this.readConsistency);
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        Date bucket = new Date(this.bucketOf(time));
+
+        String bucketKey = host + ':' + metric + ':' + bucket.getTime();
+        if (this.knownBuckets.putIfAbsent(bucketKey, Boolean.TRUE) == null) {
+            try {
+                session.execute(this.indexInsert.bind(host, metric, bucket));
+            } catch (RuntimeException e) {
+                // let the next write to this bucket retry the index entry
+                this.knownBuckets.remove(bucketKey);
+                throw e;
+            }
+        }
+        session.execute(this.insert.bind(host, metric, bucket, new Date(time), value));
+    }
+
+    @Override
+    public void flush() {
+        // writes are synchronous
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        Row row = session.execute(this.pointSelect.bind(host, metric, new Date(this.bucketOf(time)),
+                new Date(time))).one();
+        return row == null ? null : row.getDouble(0);
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+
+        for (Row bucket : session.execute(this.bucketsOverlapping(host, metric, from, to))) {
+            futures.add(session.executeAsync(this.rangeSelect.bind(host, metric, bucket.getTimestamp(0),
+                    new Date(from), new Date(to))));
+        }
+
+        int count = 0;
+        for (ResultSetFuture future : futures) {
+            for (Row row : future.getUninterruptibly()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the recorded buckets overlapping the range one after another until the page is full.
+     *
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @param limit
+     * @param pagingState
+     * @return
+     */
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        SeriesPage page = new SeriesPage(from, limit, pagingState);
+        Date startDate = new Date(page.getStartTime());
+        Date toDate = new Date(to);
+        int skip = page.getSkip();
+
+        for (Row bucket : session.execute(this.bucketsOverlapping(host, metric, page.getStartTime(), to))) {
+            if (page.isFull()) {
+                break;
+            }
+            int rows = skip + limit - page.size() + 1;
+            skip = CassandraMetricStore.readPage(session, this.rangePageSelect.bind(host, metric,
+                    bucket.getTimestamp(0), startDate, toDate, rows).setFetchSize(rows), page, skip);
+        }
+        return page;
+    }
+
+    /**
+     * Looks up the recorded buckets of every series in parallel, then issues one async read per
+     * series and bucket overlapping the range, at most fanOutConcurrency outstanding.
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        List<BoundStatement> reads = new ArrayList<BoundStatement>();
+        List<Integer> seriesOf = new ArrayList<Integer>();
+        Date fromDate = new Date(from);
+        Date toDate = new Date(to);
+
+        List<ResultSetFuture> lookups = new ArrayList<ResultSetFuture>(series.size());
+
+        for (SeriesId id : series) {
+            lookups.add(session.executeAsync(this.bucketsOverlapping(id.getHost(), id.getMetric(), from, to)));
+        }
+        for (int i = 0; i < series.size(); i++) {
+            for (Row bucket : lookups.get(i).getUninterruptibly()) {
+                seriesOf.add(i);
+                reads.add(this.rangeSelect.bind(series.get(i).getHost(), series.get(i).getMetric(),
+                        bucket.getTimestamp(0), fromDate, toDate));
+            }
+        }
+        return CassandraFanOut.count(session, reads, seriesOf, series.size(), this.fanOutConcurrency);
+    }
+
+    @Override
+    public Double maxQuery(String host, String metric) {
+        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+
+        for (Row bucket : session.execute(this.bucketSelect.bind(host, metric))) {
+            futures.add(session.executeAsync(this.maxSelect.bind(host, metric, bucket.getTimestamp(0))));
+        }
+
+        Double max = null;
+        for (ResultSetFuture future : futures) {
+            Row row = future.getUninterruptibly().one();
+            if (row != null && !row.isNull(0) && (max == null || row.getDouble(0) > max)) {
+                max = row.getDouble(0);
+            }
+        }
+        return max;
+    }
+
+    @Override
+    public long scan() {
+        if (this.scanner == null) {
+            this.scanner = new CassandraScanner(session, cluster.getMetadata(), this.KEYSPACE, this.TABLE,
+                    "host, metric, bucket", this.scanFetchSize, this.scanSplitsPerThread);
+        }
+        return this.scanner.scan(this.scanThreads).getRows();
+    }
+
+    @Override
+    public String storageStats() {
+        return CassandraMetricStore.sizeEstimates(session, this.KEYSPACE, this.TABLE);
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @return index lookup of the buckets of the series overlapping the range, in time order
+     */
+    private BoundStatement bucketsOverlapping(String host, String metric, long from, long to) {
+        return this.bucketRangeSelect.bind(host, metric, new Date(this.bucketOf(from)), new Date(to));
+    }
+
+    /**
+     *
+     * @param time
+     * @return start of the bucket containing time
+     */
+    long bucketOf(long time) {
+        return time - Math.floorMod(time, this.bucketSpanMillis);
+    }
+
+    /**
+     *
+     * @return the session of this store, shared with its rollup sink
+     */
+    Session getSession() {
+        return session;
+    }
+
+    @Override
+    public void close() {
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
+        try {
+            session.close();
+        } finally {
+            cluster.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.bmincey;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.PoolingOptions;
+import com.datastax.driver.core.ProtocolOptions;
+import com.datastax.driver.core.SocketOptions;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.LoadBalancingPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+
+/**
+ * Connection settings used to build a Cassandra Cluster: pooling, load balancing, protocol
+ * compression and socket timeouts.  A value of 0 (or an empty local DC) keeps the driver default.
+ * toString() describes the profile so it can be printed next to the results it produced.
+ */
+public class CassandraConnectionProfile {
+
+    private int coreConnectionsPerHost = 0;
+    private int maxConnectionsPerHost = 0;
+    private int maxRequestsPerConnection = 0;
+    private boolean tokenAware = false;
+    private String localDc = "";
+    private ProtocolOptions.Compression compression = ProtocolOptions.Compression.NONE;
+    private int connectTimeoutMillis = 0;
+    private int readTimeoutMillis = 0;
+
+    /**
+     * Driver defaults
+     */
+    public CassandraConnectionProfile() {
+    }
+
+    /**
+     * Profile read from application.properties
+     *
+     * @param appProps
+     */
+    public CassandraConnectionProfile(ApplicationProperties appProps) {
+        this.coreConnectionsPerHost = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraCoreConnectionsPerHostProperty, "0"));
+        this.maxConnectionsPerHost = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraMaxConnectionsPerHostProperty, "0"));
+        this.maxRequestsPerConnection = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraMaxRequestsPerConnectionProperty, "0"));
+        this.tokenAware = Boolean.parseBoolean(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraTokenAwareProperty, "false"));
+        this.localDc = appProps.getApplicationProperty(ApplicationProperties.cassandraLocalDcProperty, "").trim();
+        this.compression = ProtocolOptions.Compression.valueOf(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraCompressionProperty, "none").trim().toUpperCase());
+        this.connectTimeoutMillis = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraConnectTimeoutMsProperty, "0"));
+        this.readTimeoutMillis = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.cassandraReadTimeoutMsProperty, "0"));
+    }
+
+    /**
+     *
+     * @param contactPoint
+     * @return a Cluster configured with this profile, not yet connected
+     */
+    public Cluster buildCluster(String contactPoint) {
+        Cluster.Builder builder = Cluster.builder()
+                .addContactPoint(contactPoint)
+                .withPoolingOptions(this.poolingOptions())
+                .withSocketOptions(this.socketOptions())
+                .withCompression(this.compression);
+
+        LoadBalancingPolicy policy = this.loadBalancingPolicy();
+        if (policy != null) {
+            builder.withLoadBalancingPolicy(policy);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     *
+     * @return
+     */
+    private PoolingOptions poolingOptions() {
+        PoolingOptions poolingOptions = new PoolingOptions();
+
+        if (this.coreConnectionsPerHost > 0 && this.maxConnectionsPerHost > 0) {
+            poolingOptions.setConnectionsPerHost(HostDistance.LOCAL, this.coreConnectionsPerHost,
+                    this.maxConnectionsPerHost);
+        } else if (this.maxConnectionsPerHost > 0) {
+            poolingOptions.setMaxConnectionsPerHost(HostDistance.LOCAL, this.maxConnectionsPerHost);
+        } else if (this.coreConnectionsPerHost > 0) {
+            poolingOptions.setCoreConnectionsPerHost(HostDistance.LOCAL, this.coreConnectionsPerHost);
+        }
+        if (this.maxRequestsPerConnection > 0) {
+            poolingOptions.setMaxRequestsPerConnection(HostDistance.LOCAL, this.maxRequestsPerConnection);
+        }
+        return poolingOptions;
+    }
+
+    /**
+     *
+     * @return
+     */
+    private SocketOptions socketOptions() {
+        SocketOptions socketOptions = new SocketOptions();
+
+        if (this.connectTimeoutMillis > 0) {
+            socketOptions.setConnectTimeoutMillis(this.connectTimeoutMillis);
+        }
+        if (this.readTimeoutMillis > 0) {
+            socketOptions.setReadTimeoutMillis(this.readTimeoutMillis);
+        }
+        return socketOptions;
+    }
+
+    /**
+     *
+     * @return the configured policy, or null for the driver default
+     */
+    private LoadBalancingPolicy loadBalancingPolicy() {
+        if (!this.tokenAware && this.localDc.isEmpty()) {
+            return null;
+        }
+
+        DCAwareRoundRobinPolicy.Builder dcAware = DCAwareRoundRobinPolicy.builder();
+        if (!this.localDc.isEmpty()) {
+            dcAware.withLocalDc(this.localDc);
+        }
+
+        return this.tokenAware ? new TokenAwarePolicy(dcAware.build()) : dcAware.build();
+    }
+
+    @Override
+    public String toString() {
+        return "connections/host = " + describe(this.coreConnectionsPerHost) + ".." +
+                describe(this.maxConnectionsPerHost) +
+                ", requests/connection = " + describe(this.maxRequestsPerConnection) +
+                ", load balancing = " + (this.tokenAware ? "TokenAware(" : "") +
+                (this.tokenAware || !this.localDc.isEmpty() ?
+                        "DCAware(" + (this.localDc.isEmpty() ? "auto" : this.localDc) + ")" : "default") +
+                (this.tokenAware ? ")" : "") +
+                ", compression = " + this.compression.name().toLowerCase() +
+                ", connect timeout = " + describe(this.connectTimeoutMillis) +
+                ", read timeout = " + describe(this.readTimeoutMillis);
+    }
+
+    /**
+     *
+     * @param value
+     * @return
+     */
+    private static String describe(int value) {
+        return value > 0 ? Integer.toString(value) : "default";
+    }
+}
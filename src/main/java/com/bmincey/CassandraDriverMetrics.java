@@ -0,0 +1,174 @@
+package com.bmincey;
+
+import com.codahale.metrics.Snapshot;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Host;
+import com.datastax.driver.core.HostDistance;
+import com.datastax.driver.core.Metrics;
+import com.datastax.driver.core.Session;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cassandra driver statistics from Cluster.getMetrics() and Session.getState().  The request
+ * timer measures client-side latency including time spent queued for a connection; in-flight
+ * requests against the pool's capacity (open connections times max requests per connection)
+ * show when the pool, rather than the server, is the bottleneck.
+ */
+public class CassandraDriverMetrics implements CassandraDriverMetricsMBean, DriverMetricsSource {
+
+    private final String name;
+    private final Cluster cluster;
+    private final Session session;
+
+    /**
+     *
+     * @param name
+     * @param cluster
+     * @param session
+     */
+    public CassandraDriverMetrics(String name, Cluster cluster, Session session) {
+        this.name = name;
+        this.cluster = cluster;
+        this.session = session;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     *
+     * @return the driver metrics, or null when the cluster was built without them
+     */
+    private Metrics metrics() {
+        return this.cluster.getMetrics();
+    }
+
+    @Override
+    public long getRequestCount() {
+        return this.metrics() == null ? 0 : this.metrics().getRequestsTimer().getCount();
+    }
+
+    @Override
+    public double getRequestRatePerSecond() {
+        return this.metrics() == null ? 0 : this.metrics().getRequestsTimer().getOneMinuteRate();
+    }
+
+    @Override
+    public long getRequestP50Micros() {
+        return this.requestPercentileMicros(0.5);
+    }
+
+    @Override
+    public long getRequestP99Micros() {
+        return this.requestPercentileMicros(0.99);
+    }
+
+    /**
+     *
+     * @param quantile
+     * @return
+     */
+    private long requestPercentileMicros(double quantile) {
+        if (this.metrics() == null) {
+            return 0;
+        }
+
+        Snapshot snapshot = this.metrics().getRequestsTimer().getSnapshot();
+        return TimeUnit.NANOSECONDS.toMicros((long) snapshot.getValue(quantile));
+    }
+
+    @Override
+    public int getConnectedHosts() {
+        return this.metrics() == null ? 0 : this.metrics().getConnectedToHosts().getValue();
+    }
+
+    @Override
+    public int getOpenConnections() {
+        return this.metrics() == null ? 0 : this.metrics().getOpenConnections().getValue();
+    }
+
+    @Override
+    public int getTrashedConnections() {
+        return this.metrics() == null ? 0 : this.metrics().getTrashedConnections().getValue();
+    }
+
+    @Override
+    public int getInFlightRequests() {
+        Session.State state = this.session.getState();
+        int inFlight = 0;
+
+        for (Host host : state.getConnectedHosts()) {
+            inFlight += state.getInFlightQueries(host);
+        }
+        return inFlight;
+    }
+
+    @Override
+    public int getInFlightCapacity() {
+        Session.State state = this.session.getState();
+        int maxRequests = this.cluster.getConfiguration().getPoolingOptions()
+                .getMaxRequestsPerConnection(HostDistance.LOCAL);
+        int connections = 0;
+
+        for (Host host : state.getConnectedHosts()) {
+            connections += state.getOpenConnections(host);
+        }
+        return connections * maxRequests;
+    }
+
+    @Override
+    public int getExecutorQueueDepth() {
+        return this.metrics() == null ? 0 : this.metrics().getExecutorQueueDepth().getValue();
+    }
+
+    @Override
+    public int getBlockingExecutorQueueDepth() {
+        return this.metrics() == null ? 0 : this.metrics().getBlockingExecutorQueueDepth().getValue();
+    }
+
+    @Override
+    public long getConnectionErrors() {
+        return this.metrics() == null ? 0 : this.metrics().getErrorMetrics().getConnectionErrors().getCount();
+    }
+
+    @Override
+    public long getReadTimeouts() {
+        return this.metrics() == null ? 0 : this.metrics().getErrorMetrics().getReadTimeouts().getCount();
+    }
+
+    @Override
+    public long getWriteTimeouts() {
+        return this.metrics() == null ? 0 : this.metrics().getErrorMetrics().getWriteTimeouts().getCount();
+    }
+
+    @Override
+    public long getClientTimeouts() {
+        return this.metrics() == null ? 0 : this.metrics().getErrorMetrics().getClientTimeouts().getCount();
+    }
+
+    @Override
+    public long getRetries() {
+        return this.metrics() == null ? 0 : this.metrics().getErrorMetrics().getRetries().getCount();
+    }
+
+    @Override
+    public String getSnapshot() {
+        return this.snapshot();
+    }
+
+    @Override
+    public String snapshot() {
+        return String.format("requests = %d, rate/s = %.1f, p50 = %d us, p99 = %d us, hosts = %d, " +
+                        "open connections = %d, trashed = %d, in-flight = %d/%d, executor queue = %d, " +
+                        "blocking executor queue = %d, connection errors = %d, read timeouts = %d, " +
+                        "write timeouts = %d, client timeouts = %d, retries = %d",
+                this.getRequestCount(), this.getRequestRatePerSecond(), this.getRequestP50Micros(),
+                this.getRequestP99Micros(), this.getConnectedHosts(), this.getOpenConnections(),
+                this.getTrashedConnections(), this.getInFlightRequests(), this.getInFlightCapacity(),
+                this.getExecutorQueueDepth(), this.getBlockingExecutorQueueDepth(), this.getConnectionErrors(),
+                this.getReadTimeouts(), this.getWriteTimeouts(), this.getClientTimeouts(), this.getRetries());
+    }
+}
@@ -0,0 +1,41 @@
+package com.bmincey;
+
+/**
+ * JMX view of CassandraDriverMetrics.  Latencies are in microseconds.
+ */
+public interface CassandraDriverMetricsMBean {
+
+    long getRequestCount();
+
+    double getRequestRatePerSecond();
+
+    long getRequestP50Micros();
+
+    long getRequestP99Micros();
+
+    int getConnectedHosts();
+
+    int getOpenConnections();
+
+    int getTrashedConnections();
+
+    int getInFlightRequests();
+
+    int getInFlightCapacity();
+
+    int getExecutorQueueDepth();
+
+    int getBlockingExecutorQueueDepth();
+
+    long getConnectionErrors();
+
+    long getReadTimeouts();
+
+    long getWriteTimeouts();
+
+    long getClientTimeouts();
+
+    long getRetries();
+
+    String getSnapshot();
+}
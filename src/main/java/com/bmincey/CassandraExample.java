@@ -16,9 +16,24 @@ public class CassandraExample {
     private String KEYSPACE;
     private String TABLE;
 
+    private boolean asyncIngest = false;
+    private int[] asyncMaxInFlight = {128, 512, 1024};
+    private int asyncBatchRows = 1;
+    private boolean parallelScan = false;
+    private int[] scanThreads = {1, 2, 4, 8};
+    private int scanFetchSize = 5000;
+    private int scanSplitsPerThread = 4;
+    private int seriesPageSize = 5000;
+    private CassandraConnectionProfile connectionProfile = new CassandraConnectionProfile();
+    private Warmup warmup = new Warmup(0, 0);
+    private DriverMetricsReporter driverMetrics;
+
     private Cluster cluster;
     private Session session;
+    private CassandraStatementRegistry statements;
     private ResultSet rs;
+    private LatencyStats latencyStats;
+    private ResourceProfiler profiler = new ResourceProfiler("cassandra");
 
 
     /**
@@ -34,6 +49,27 @@ public class CassandraExample {
             this.CONTACT_POINT = appProps.getApplicationProperty(ApplicationProperties.contactPointProperty);
             this.KEYSPACE = appProps.getApplicationProperty(ApplicationProperties.keySpaceProperty);
             this.TABLE = appProps.getApplicationProperty(ApplicationProperties.tableProperty);
+            this.connectionProfile = new CassandraConnectionProfile(appProps);
+            this.warmup = Warmup.fromProperties(appProps);
+            this.driverMetrics = DriverMetricsReporter.fromProperties(appProps);
+
+            this.asyncIngest =
+                    Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.asyncIngestProperty));
+            this.asyncMaxInFlight = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.asyncMaxInFlightProperty, "128,512,1024"));
+            this.asyncBatchRows = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.asyncBatchRowsProperty, "1"));
+
+            this.parallelScan =
+                    Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.parallelScanProperty));
+            this.scanThreads = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.scanThreadsProperty, "1,2,4,8"));
+            this.scanFetchSize = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.scanFetchSizeProperty, "5000"));
+            this.scanSplitsPerThread = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.scanSplitsPerThreadProperty, "4"));
+            this.seriesPageSize = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.seriesPageSizeProperty, "5000"));
 
             this.init();
         }
@@ -60,10 +96,34 @@ public class CassandraExample {
         this.init();
     }
 
+    /**
+     * Overloaded constructor enabling the pipelined async ingest mode
+     *
+     * @param contactPoint
+     * @param keySpace
+     * @param table
+     * @param asyncMaxInFlight in-flight limits to measure, one timed run each
+     * @param asyncBatchRows rows per (host, metric) unlogged batch, 1 disables batching
+     */
+    public CassandraExample(String contactPoint, String keySpace, String table,
+                            int[] asyncMaxInFlight, int asyncBatchRows) {
+        System.out.println("Overloaded constructor.");
+
+        this.CONTACT_POINT = contactPoint;
+        this.KEYSPACE = keySpace;
+        this.TABLE = table;
+        this.asyncIngest = true;
+        this.asyncMaxInFlight = asyncMaxInFlight;
+        this.asyncBatchRows = asyncBatchRows;
+
+        this.init();
+    }
+
     /**
      *
      */
     public void init() {
+        this.latencyStats = new LatencyStats("cassandra (" + this.connectionProfile + ")", 0);
         this.dbInit();
         this.printMetadata();
         this.createTable();
@@ -77,10 +137,12 @@ public class CassandraExample {
     private void dbInit() {
         cluster = null;
         try {
-            cluster = Cluster.builder()
-                    .addContactPoint(this.CONTACT_POINT)
-                    .build();
+            cluster = this.connectionProfile.buildCluster(this.CONTACT_POINT);
             session = cluster.connect();
+
+            if (this.driverMetrics != null) {
+                this.driverMetrics.register(new CassandraDriverMetrics("cassandra", cluster, session));
+            }
         } catch (Exception e) {
             System.err.println(e);
         }
@@ -98,6 +160,7 @@ public class CassandraExample {
         // Print Cassandra metadata
         Metadata metadata = cluster.getMetadata();
         System.out.printf("Connected to cluster: %s\n", metadata.getClusterName());
+        System.out.println("Connection profile: " + this.connectionProfile);
 
         for (Host host : metadata.getAllHosts()) {
             System.out.printf("Datacenter: %s; Host: %s; Rack: %s\n", host.getDatacenter(), host.getAddress(), host.getRack());
@@ -122,6 +185,40 @@ public class CassandraExample {
                 "PRIMARY KEY ((host, metric), time) ) WITH CLUSTERING ORDER BY (time ASC)");
 
         System.out.println("Table " + this.KEYSPACE + "." + this.TABLE + " created!");
+
+        this.statements = CassandraStatementRegistry.forMetricTable(session, this.KEYSPACE, this.TABLE);
+        System.out.println("Prepared statements = " + this.statements.size());
+    }
+
+    /**
+     * Runs the inserts and series queries of generateSampleData untimed, then truncates the table
+     * so the measured run starts from the same empty table.
+     *
+     * @param generator
+     */
+    private void warmUp(final SampleDataGenerator generator) {
+        final PreparedStatement insert = this.statements.get(CassandraStatementRegistry.INSERT);
+        final PreparedStatement max = this.statements.get(CassandraStatementRegistry.MAX);
+        final PreparedStatement series = this.statements.get(CassandraStatementRegistry.SERIES);
+
+        this.warmup.run(1, new Runnable() {
+            @Override
+            public void run() {
+                java.util.Date date = new java.util.Date(System.currentTimeMillis());
+                String hostname = generator.nextHost();
+                double nextValue = generator.nextValue();
+
+                session.execute(insert.bind(hostname, "m1", date, nextValue));
+                session.execute(insert.bind(hostname, "m2", date, nextValue * 10));
+                session.execute(insert.bind(hostname, "m3", date, nextValue * 100));
+                session.execute(max.bind(hostname, "m1")).one();
+                for (Row row : session.execute(series.bind(hostname, "m1"))) {
+                    row.getDouble("value");
+                }
+            }
+        });
+
+        session.execute("TRUNCATE " + this.KEYSPACE + "." + this.TABLE);
     }
 
     /**
@@ -130,61 +227,56 @@ public class CassandraExample {
     private void generateSampleData() {
         StopWatch stopWatch = new StopWatch();
 
-        // Create prepared statement
-        PreparedStatement prepared = session.prepare("INSERT INTO " + this.KEYSPACE + "." + this.TABLE + " " +
-                "(host, metric, time, value) values (?, ?, ?, ?)");
+        // Prepared once in createTable
+        PreparedStatement prepared = this.statements.get(CassandraStatementRegistry.INSERT);
 
-        double startValue = 100; // start value for random walk
-        double nextValue = startValue; // next value in random walk, initially startValue
         int numHosts = 100; // how many host names to generate
+        SampleDataGenerator generator = new SampleDataGenerator(numHosts);
         int toCreate = 1000; // how many times to pick a host name and create all metrics for it
 
+        if (this.warmup.isEnabled()) {
+            this.warmUp(generator);
+        }
+
+        // Rebinds one statement and Date instead of allocating them per insert
+        CassandraPointBinder binder = new CassandraPointBinder(prepared);
+        AllocationMeter allocationMeter = new AllocationMeter();
+
+        this.profiler.start("ingest");
         stopWatch.start();
         System.out.println("Creating data... iterations = " + toCreate);
         for (int r = 1; r <= toCreate; r++) {
 
             long now = System.currentTimeMillis();
-            java.util.Date date = new java.util.Date(now);
 
             // generate a random host name
-            String hostname = "host" + Math.round((Math.random() * numHosts));
+            String hostname = generator.nextHost();
 
             // do a random walk to produce realistic data
-            double rand = Math.random();
-
-            if (rand < 0.5) {
-                // 50% chance that value doesn't change
-            } else if (rand < 0.75) {
-                // 25% chance that value increases by 1
-                nextValue++;
-            } else {
-                // 25% chance that value decreases by 1
-                nextValue--;
-            }
-
-            // never go negative
-            if (nextValue < 0) {
-                nextValue = 0;
-            }
+            double nextValue = generator.nextValue();
 
             // Execute prepared statements
-            session.execute(prepared.bind(hostname , "m1", date, nextValue));
-            session.execute(prepared.bind(hostname , "m2", date, nextValue * 10));
-            session.execute(prepared.bind(hostname , "m3", date, nextValue * 100));
+            this.execute("insert", binder.bind(hostname , "m1", now, nextValue));
+            this.execute("insert", binder.bind(hostname , "m2", now, nextValue * 10));
+            this.execute("insert", binder.bind(hostname , "m3", now, nextValue * 100));
 
         }
 
         stopWatch.stop();
-        System.out.println("Created rows = " + toCreate*3 + " in time = " + stopWatch.toString());
+        this.profiler.stop(toCreate * 3, toCreate * 3);
+        System.out.println("Created rows = " + toCreate*3 + " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(toCreate * 3, stopWatch.getTime()) +
+                ", allocated bytes/row = " + allocationMeter.bytesPerRow(toCreate * 3));
 
         // find the max value for a sample
         System.out.println("Getting max value for sample...");
         stopWatch.reset();
 
+        this.profiler.start("max");
         stopWatch.start();
-        rs = session.execute("select max(value) from " + this.KEYSPACE + "." +
-                this.TABLE + " where host='host1' and metric='m1'");
+        rs = this.execute("max", this.statements.get(CassandraStatementRegistry.MAX).bind("host1", "m1"));
         stopWatch.stop();
+        this.profiler.stop(1, 0);
 
         Row row = rs.one();
         System.out.println("Max value = " + row.toString() + " in time = " + stopWatch.toString());
@@ -193,16 +285,28 @@ public class CassandraExample {
         System.out.println("Getting all rows for sample...");
         stopWatch.reset();
 
+        this.profiler.start("series");
         stopWatch.start();
-        rs = session.execute("select * from " + this.KEYSPACE + "." + this.TABLE +
-                " where host='host1' and metric='m1'");
-
-        for (Row rowN : rs) {
-            System.out.println(rowN.toString());
-        }
+        long started = System.nanoTime();
+        PreparedStatement rangePage = this.statements.get(CassandraStatementRegistry.RANGE_PAGE);
+        String pagingState = null;
+        SeriesPage page;
+        long points = 0;
+        int pages = 0;
+
+        do {
+            page = CassandraMetricStore.readRange(session, rangePage, "host1", "m1", 0, Long.MAX_VALUE,
+                    this.seriesPageSize, pagingState);
+            points += page.size();
+            pages++;
+            pagingState = page.getPagingState();
+        } while (pagingState != null);
+        this.latencyStats.record("series", started);
         stopWatch.stop();
+        this.profiler.stop(pages, points);
 
-        System.out.println("time = " + stopWatch.toString());
+        System.out.println("Read points = " + points + " in pages = " + pages + " of " + this.seriesPageSize +
+                ", last page: " + page + ", time = " + stopWatch.toString());
 
 
         // Note that SELECT * will return all results without limit
@@ -212,8 +316,10 @@ public class CassandraExample {
         System.out.println("Select ALL...");
         stopWatch.reset();
 
+        this.profiler.start("scan");
         stopWatch.start();
-        rs = session.execute("select * from " + this.KEYSPACE + "." + this.TABLE);
+        started = System.nanoTime();
+        rs = session.execute(this.statements.get(CassandraStatementRegistry.SCAN).bind());
         System.out.println("Got rows (without fetching) = " + rs.getAvailableWithoutFetching());
 
         int i = 0;
@@ -224,16 +330,110 @@ public class CassandraExample {
             i++;
             numBytes += rowN.toString().length();
         }
+        this.latencyStats.record("scan", started);
         stopWatch.stop();
+        this.profiler.stop(1, i);
 
         System.out.println("Returned rows = " + i + ", total bytes = " + numBytes +
                 ", in time = " + stopWatch.toString());
+
+        if (this.parallelScan) {
+            CassandraScanner scanner = new CassandraScanner(this.session, this.cluster.getMetadata(),
+                    this.KEYSPACE, this.TABLE, this.scanFetchSize, this.scanSplitsPerThread);
+
+            for (int threads : this.scanThreads) {
+                System.out.println("Parallel token-range scan... threads = " + threads +
+                        ", fetch size = " + this.scanFetchSize);
+                stopWatch.reset();
+                this.profiler.start("parallelScan " + threads);
+                stopWatch.start();
+                started = System.nanoTime();
+                ScanResult result = scanner.scan(threads);
+                this.latencyStats.record("parallelScan", started);
+                stopWatch.stop();
+                this.profiler.stop(1, result.getRows());
+
+                System.out.println("Threads = " + threads + ", " + result.toString(stopWatch.getTime()) +
+                        ", in time = " + stopWatch.toString());
+            }
+        }
+
+        // after the queries, so they measure the sync baseline only
+        if (this.asyncIngest) {
+            for (int maxInFlight : this.asyncMaxInFlight) {
+                this.ingestAsync(prepared, maxInFlight, numHosts, toCreate);
+            }
+        }
+
+        this.latencyStats.print(System.out);
+        this.profiler.print(System.out);
+    }
+
+    /**
+     * Executes a statement and records its latency.
+     *
+     * @param operation
+     * @param statement
+     * @return
+     */
+    private ResultSet execute(String operation, Statement statement) {
+        long started = System.nanoTime();
+        ResultSet resultSet = session.execute(statement);
+        this.latencyStats.record(operation, started);
+        return resultSet;
+    }
+
+    /**
+     * Pipelined version of the insert loop above: the same random walk is written through
+     * executeAsync with at most maxInFlight requests outstanding.  The table is truncated first,
+     * so every in-flight limit writes into the same empty table as the sync baseline.
+     *
+     * @param prepared
+     * @param maxInFlight
+     * @param numHosts
+     * @param toCreate
+     */
+    private void ingestAsync(PreparedStatement prepared, int maxInFlight, int numHosts, int toCreate) {
+        StopWatch stopWatch = new StopWatch();
+        CassandraAsyncWriter writer =
+                new CassandraAsyncWriter(this.session, prepared, maxInFlight, this.asyncBatchRows, this.latencyStats);
+
+        SampleDataGenerator generator = new SampleDataGenerator(numHosts);
+        session.execute("TRUNCATE " + this.KEYSPACE + "." + this.TABLE);
+
+        System.out.println("Creating data async... iterations = " + toCreate + ", in-flight limit = " +
+                maxInFlight + ", batch rows = " + this.asyncBatchRows);
+        this.profiler.start("async " + maxInFlight);
+        stopWatch.start();
+        for (int r = 1; r <= toCreate; r++) {
+            long now = System.currentTimeMillis();
+            String hostname = generator.nextHost();
+            double nextValue = generator.nextValue();
+
+            writer.write(hostname, "m1", now, nextValue);
+            writer.write(hostname, "m2", now, nextValue * 10);
+            writer.write(hostname, "m3", now, nextValue * 100);
+        }
+        writer.flush();
+        stopWatch.stop();
+        this.profiler.stop(writer.getRowsWritten(), writer.getRowsWritten());
+
+        System.out.println("In-flight limit = " + maxInFlight + ", created rows = " + writer.getRowsWritten() +
+                ", errors = " + writer.getErrors() + " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(writer.getRowsWritten(), stopWatch.getTime()));
+
+        if (writer.getLastError() != null) {
+            System.err.println("Last async error: " + writer.getLastError());
+        }
     }
 
     /**
      *
      */
     private void cleanUp() {
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
         try {
             session.close();
             cluster.close();
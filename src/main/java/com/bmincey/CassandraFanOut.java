@@ -0,0 +1,66 @@
+package com.bmincey;
+
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs many partition reads concurrently with executeAsync and adds up the rows read per series.
+ * At most maxConcurrency reads are outstanding: a permit is taken before each read is sent and
+ * returned when its first page arrives, so a large fan-out does not flood the connection pool.
+ * Further pages of a large partition are fetched while the rows are counted.
+ */
+public class CassandraFanOut {
+
+    private CassandraFanOut() {
+    }
+
+    /**
+     *
+     * @param session
+     * @param statements reads to run
+     * @param seriesOf index of the series each statement reads
+     * @param seriesCount
+     * @param maxConcurrency
+     * @return rows read per series
+     */
+    public static int[] count(Session session, List<? extends Statement> statements, List<Integer> seriesOf,
+                              int seriesCount, int maxConcurrency) {
+        final Semaphore permits = new Semaphore(Math.max(1, maxConcurrency));
+        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>(statements.size());
+
+        for (Statement statement : statements) {
+            permits.acquireUninterruptibly();
+
+            ResultSetFuture future = session.executeAsync(statement);
+            Futures.addCallback(future, new FutureCallback<ResultSet>() {
+                @Override
+                public void onSuccess(ResultSet result) {
+                    permits.release();
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    permits.release();
+                }
+            });
+            futures.add(future);
+        }
+
+        int[] counts = new int[seriesCount];
+        for (int s = 0; s < futures.size(); s++) {
+            for (Row row : futures.get(s).getUninterruptibly()) {
+                counts[seriesOf.get(s)]++;
+            }
+        }
+        return counts;
+    }
+}
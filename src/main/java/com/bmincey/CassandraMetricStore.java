@@ -0,0 +1,340 @@
+package com.bmincey;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.ConsistencyLevel;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Cassandra implementation of MetricStore using the same table layout as CassandraExample.
+ */
+public class CassandraMetricStore implements MetricStore {
+
+    private final String KEYSPACE;
+    private final String TABLE;
+
+    private final Cluster cluster;
+    private final Session session;
+    private final CassandraConnectionProfile connectionProfile;
+
+    private CassandraStatementRegistry statements;
+    private ConsistencyLevel readConsistency;
+    private ConsistencyLevel writeConsistency;
+
+    private int scanThreads = Runtime.getRuntime().availableProcessors();
+    private int scanFetchSize = 5000;
+    private int scanSplitsPerThread = 4;
+    private CassandraScanner scanner;
+    private DriverMetricsReporter driverMetrics;
+    private int fanOutConcurrency = 32;
+    private final ThreadLocal<CassandraPointBinder> binders = new ThreadLocal<CassandraPointBinder>();
+
+    /**
+     *
+     * @param contactPoint
+     * @param keySpace
+     * @param table
+     */
+    public CassandraMetricStore(String contactPoint, String keySpace, String table) {
+        this(contactPoint, keySpace, table, new CassandraConnectionProfile());
+    }
+
+    /**
+     *
+     * @param contactPoint
+     * @param keySpace
+     * @param table
+     * @param connectionProfile
+     */
+    public CassandraMetricStore(String contactPoint, String keySpace, String table,
+                                CassandraConnectionProfile connectionProfile) {
+        this.KEYSPACE = keySpace;
+        this.TABLE = table;
+        this.connectionProfile = connectionProfile;
+
+        this.cluster = connectionProfile.buildCluster(contactPoint);
+        this.session = this.cluster.connect();
+    }
+
+    @Override
+    public String getName() {
+        return "cassandra";
+    }
+
+    @Override
+    public String toString() {
+        return this.getName() + " (" + this.connectionProfile + consistencyString(this.readConsistency,
+                this.writeConsistency) + ")";
+    }
+
+    @Override
+    public void createSchema() {
+        session.execute("CREATE KEYSPACE IF NOT EXISTS " + this.KEYSPACE +
+                " WITH replication = {'class': 'SimpleStrategy', 'replication_factor' : 1}");
+        session.execute("DROP TABLE IF EXISTS " + this.KEYSPACE + "." + this.TABLE);
+        session.execute("CREATE TABLE " + this.KEYSPACE + "." + this.TABLE +
+                "(host text, metric text, time timestamp, value double, " +
+                "PRIMARY KEY ((host, metric), time) ) WITH CLUSTERING ORDER BY (time ASC)");
+
+        this.statements = CassandraStatementRegistry.forMetricTable(session, this.KEYSPACE, this.TABLE);
+        this.applyConsistency();
+    }
+
+    /**
+     * Consistency levels of this store's reads and writes; null keeps the driver default.  The
+     * parallel scan keeps the default.
+     *
+     * @param readConsistency
+     * @param writeConsistency
+     */
+    public void setConsistency(ConsistencyLevel readConsistency, ConsistencyLevel writeConsistency) {
+        this.readConsistency = readConsistency;
+        this.writeConsistency = writeConsistency;
+
+        if (this.statements != null) {
+            this.applyConsistency();
+        }
+    }
+
+    /**
+     * Sets the consistency levels on the prepared statements, so every bound statement inherits them.
+     */
+    private void applyConsistency() {
+        this.statements.get(CassandraStatementRegistry.INSERT).setConsistencyLevel(this.writeConsistency);
+        this.statements.get(CassandraStatementRegistry.POINT).setConsistencyLevel(this.readConsistency);
+        this.statements.get(CassandraStatementRegistry.RANGE).setConsistencyLevel(this.readConsistency);
+        this.statements.get(CassandraStatementRegistry.RANGE_PAGE).setConsistencyLevel(this.readConsistency);
+        this.statements.get(CassandraStatementRegistry.MAX).setConsistencyLevel(this.readConsistency);
+    }
+
+    /**
+     * Registers this store's driver metrics with reporter, which is closed with the store.
+     *
+     * @param reporter
+     */
+    public void setDriverMetrics(DriverMetricsReporter reporter) {
+        this.driverMetrics = reporter;
+        reporter.register(new CassandraDriverMetrics(this.getName(), cluster, session));
+    }
+
+    /**
+     * Settings of the parallel token-range scan used by scan().
+     *
+     * @param scanThreads
+     * @param scanFetchSize
+     * @param scanSplitsPerThread
+     */
+    public void setScanOptions(int scanThreads, int scanFetchSize, int scanSplitsPerThread) {
+        this.scanThreads = scanThreads;
+        this.scanFetchSize = scanFetchSize;
+        this.scanSplitsPerThread = scanSplitsPerThread;
+        this.scanner = null;
+    }
+
+    /**
+     *
+     * @param fanOutConcurrency maximum partition reads outstanding in a multi-series query
+     */
+    public void setFanOutConcurrency(int fanOutConcurrency) {
+        this.fanOutConcurrency = fanOutConcurrency;
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        PreparedStatement insert = this.statements.get(CassandraStatementRegistry.INSERT);
+        CassandraPointBinder binder = this.binders.get();
+
+        if (binder == null || !binder.isFor(insert)) {
+            binder = new CassandraPointBinder(insert);
+            this.binders.set(binder);
+        }
+        session.execute(binder.bind(host, metric, time, value));
+    }
+
+    @Override
+    public void flush() {
+        // writes are synchronous
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        Row row = session.execute(this.statements.get(CassandraStatementRegistry.POINT).bind(host, metric, new Date(time))).one();
+        return row == null ? null : row.getDouble(0);
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        ResultSet rs = session.execute(this.statements.get(CassandraStatementRegistry.RANGE).bind(host, metric, new Date(from), new Date(to)));
+
+        int count = 0;
+        for (Row row : rs) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        return readRange(session, this.statements.get(CassandraStatementRegistry.RANGE_PAGE), host, metric,
+                from, to, limit, pagingState);
+    }
+
+    /**
+     *
+     * @param session
+     * @param rangePage the RANGE_PAGE statement of a metric table
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @param limit
+     * @param pagingState
+     * @return
+     */
+    static SeriesPage readRange(Session session, PreparedStatement rangePage, String host, String metric,
+                                long from, long to, int limit, String pagingState) {
+        SeriesPage page = new SeriesPage(from, limit, pagingState);
+        int rows = page.getSkip() + limit + 1;
+
+        readPage(session, rangePage.bind(host, metric, new Date(page.getStartTime()), new Date(to), rows)
+                .setFetchSize(rows), page, page.getSkip());
+        return page;
+    }
+
+    /**
+     * Decodes the (time, value) rows of statement into page.  The timestamp is read from its
+     * serialized bytes rather than as a Date, and the value as a primitive double.
+     *
+     * @param session
+     * @param statement selecting time and value in time order
+     * @param page
+     * @param skip rows to skip first
+     * @return rows still to skip, when statement had fewer
+     */
+    static int readPage(Session session, Statement statement, SeriesPage page, int skip) {
+        for (Row row : session.execute(statement)) {
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+
+            ByteBuffer time = row.getBytesUnsafe(0);
+            if (!page.offer(time.getLong(time.position()), row.getDouble(1))) {
+                break;
+            }
+        }
+        return skip;
+    }
+
+    /**
+     * One async partition read per series, at most fanOutConcurrency outstanding.
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        PreparedStatement range = this.statements.get(CassandraStatementRegistry.RANGE);
+        List<BoundStatement> reads = new ArrayList<BoundStatement>(series.size());
+        List<Integer> seriesOf = new ArrayList<Integer>(series.size());
+        Date fromDate = new Date(from);
+        Date toDate = new Date(to);
+
+        for (int i = 0; i < series.size(); i++) {
+            reads.add(range.bind(series.get(i).getHost(), series.get(i).getMetric(), fromDate, toDate));
+            seriesOf.add(i);
+        }
+        return CassandraFanOut.count(session, reads, seriesOf, series.size(), this.fanOutConcurrency);
+    }
+
+    @Override
+    public Double maxQuery(String host, String metric) {
+        Row row = session.execute(this.statements.get(CassandraStatementRegistry.MAX).bind(host, metric)).one();
+        return row == null || row.isNull(0) ? null : row.getDouble(0);
+    }
+
+    @Override
+    public long scan() {
+        if (this.scanner == null) {
+            this.scanner = new CassandraScanner(session, cluster.getMetadata(), this.KEYSPACE, this.TABLE,
+                    this.scanFetchSize, this.scanSplitsPerThread);
+        }
+        return this.scanner.scan(this.scanThreads).getRows();
+    }
+
+    @Override
+    public String storageStats() {
+        return sizeEstimates(session, this.KEYSPACE, this.TABLE);
+    }
+
+    /**
+     * Reads system.size_estimates, which the server refreshes every few minutes, so a table that
+     * was just written may still report 0.
+     *
+     * @param session
+     * @param keySpace
+     * @param table
+     * @return estimated partition count and bytes of the table
+     */
+    static String sizeEstimates(Session session, String keySpace, String table) {
+        long partitions = 0;
+        long bytes = 0;
+
+        for (Row row : session.execute("select partitions_count, mean_partition_size from system.size_estimates " +
+                "where keyspace_name = ? and table_name = ?", keySpace, table)) {
+            partitions += row.getLong("partitions_count");
+            bytes += row.getLong("partitions_count") * row.getLong("mean_partition_size");
+        }
+        return "estimated partitions = " + partitions + ", estimated size = " + bytes + " bytes";
+    }
+
+    /**
+     *
+     * @param readConsistency
+     * @param writeConsistency
+     * @return the non-default consistency levels, for toString()
+     */
+    static String consistencyString(ConsistencyLevel readConsistency, ConsistencyLevel writeConsistency) {
+        return (readConsistency == null ? "" : ", read consistency = " + readConsistency) +
+                (writeConsistency == null ? "" : ", write consistency = " + writeConsistency);
+    }
+
+    /**
+     *
+     * @return the session of this store, shared with its rollup sink
+     */
+    Session getSession() {
+        return session;
+    }
+
+    /**
+     *
+     * @return the prepared INSERT of this store's table, for writers that bypass write()
+     */
+    PreparedStatement getInsert() {
+        return this.statements.get(CassandraStatementRegistry.INSERT);
+    }
+
+    @Override
+    public void close() {
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
+        try {
+            session.close();
+        } finally {
+            cluster.close();
+        }
+    }
+}
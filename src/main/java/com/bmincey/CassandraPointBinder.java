@@ -0,0 +1,56 @@
+package com.bmincey;
+
+import com.datastax.driver.core.BoundStatement;
+import com.datastax.driver.core.PreparedStatement;
+
+import java.util.Date;
+
+/**
+ * Binds points to one reused BoundStatement and Date instead of allocating both per insert.
+ * Values are serialized when they are set, so the statement can be rebound as soon as a
+ * synchronous execute returns; it must not be rebound while an async execute is outstanding.
+ * One binder per thread.
+ */
+public class CassandraPointBinder {
+
+    private final PreparedStatement prepared;
+    private final BoundStatement statement;
+    private final Date date = new Date(0);
+
+    /**
+     *
+     * @param prepared INSERT statement taking (host, metric, time, value)
+     */
+    public CassandraPointBinder(PreparedStatement prepared) {
+        this.prepared = prepared;
+        this.statement = new BoundStatement(prepared);
+    }
+
+    /**
+     *
+     * @param prepared
+     * @return whether this binder binds prepared
+     */
+    public boolean isFor(PreparedStatement prepared) {
+        return this.prepared == prepared;
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time epoch millis
+     * @param value
+     * @return the reused statement, bound to the point
+     */
+    public BoundStatement bind(String host, String metric, long time, double value) {
+        this.date.setTime(time);
+        this.statement.setConsistencyLevel(this.prepared.getConsistencyLevel()); // may change after creation
+
+        this.statement.setString(0, host);
+        this.statement.setString(1, metric);
+        this.statement.setTimestamp(2, this.date);
+        this.statement.setDouble(3, value);
+        return this.statement;
+    }
+}
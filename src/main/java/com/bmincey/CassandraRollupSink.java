@@ -0,0 +1,103 @@
+package com.bmincey;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSetFuture;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * RollupSink writing to a Cassandra table with one row per window, using the session of the
+ * store it belongs to.
+ *
+ * <pre>
+ * PRIMARY KEY ((host, metric), window_start)
+ * </pre>
+ *
+ * The all-time rollup is the row with window_start = Rollup.ALL_TIME, which sorts first.
+ */
+public class CassandraRollupSink implements RollupSink {
+
+    private static final String COLUMNS = "window_start, min, max, sum, count";
+
+    private final Session session;
+    private final String KEYSPACE;
+    private final String TABLE;
+
+    private PreparedStatement insert;
+    private PreparedStatement windowSelect;
+    private PreparedStatement rangeSelect;
+
+    /**
+     *
+     * @param session
+     * @param keySpace
+     * @param table
+     */
+    public CassandraRollupSink(Session session, String keySpace, String table) {
+        this.session = session;
+        this.KEYSPACE = keySpace;
+        this.TABLE = table;
+    }
+
+    @Override
+    public void createSchema() {
+        String table = this.KEYSPACE + "." + this.TABLE;
+
+        session.execute("DROP TABLE IF EXISTS " + table);
+        session.execute("CREATE TABLE " + table +
+                "(host text, metric text, window_start bigint, min double, max double, sum double, count bigint, " +
+                "PRIMARY KEY ((host, metric), window_start) ) WITH CLUSTERING ORDER BY (window_start ASC)");
+
+        this.insert = session.prepare("INSERT INTO " + table + " (host, metric, " + COLUMNS +
+                ") values (?, ?, ?, ?, ?, ?, ?)");
+        this.windowSelect = session.prepare("select " + COLUMNS + " from " + table +
+                " where host = ? and metric = ? and window_start = ?");
+        this.rangeSelect = session.prepare("select " + COLUMNS + " from " + table +
+                " where host = ? and metric = ? and window_start >= ? and window_start < ?");
+    }
+
+    @Override
+    public void write(Collection<Rollup> rollups) {
+        List<ResultSetFuture> futures = new ArrayList<ResultSetFuture>();
+
+        for (Rollup rollup : rollups) {
+            futures.add(session.executeAsync(this.insert.bind(rollup.getHost(), rollup.getMetric(),
+                    rollup.getWindow(), rollup.getMin(), rollup.getMax(), rollup.getSum(), rollup.getCount())));
+        }
+        for (ResultSetFuture future : futures) {
+            future.getUninterruptibly();
+        }
+    }
+
+    @Override
+    public Rollup read(String host, String metric, long window) {
+        Row row = session.execute(this.windowSelect.bind(host, metric, window)).one();
+        return row == null ? null : toRollup(host, metric, row);
+    }
+
+    @Override
+    public List<Rollup> read(String host, String metric, long fromWindow, long toWindow) {
+        List<Rollup> result = new ArrayList<Rollup>();
+
+        for (Row row : session.execute(this.rangeSelect.bind(host, metric, fromWindow, toWindow))) {
+            result.add(toRollup(host, metric, row));
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param row
+     * @return
+     */
+    private static Rollup toRollup(String host, String metric, Row row) {
+        return new Rollup(host, metric, row.getLong(0), row.getDouble(1), row.getDouble(2), row.getDouble(3),
+                row.getLong(4));
+    }
+}
@@ -0,0 +1,170 @@
+package com.bmincey;
+
+import com.datastax.driver.core.Metadata;
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.TokenRange;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Full-table scan that splits the token ring into ranges and reads them in parallel.  Each range
+ * is paged with an explicit fetch size, and the next page is requested with fetchMoreResults
+ * while the current one is still being consumed, so the client does not stall at page
+ * boundaries.  Byte totals are the serialized size of every column value returned.
+ */
+public class CassandraScanner {
+
+    private static final String COLUMNS = "host, metric, time, value";
+
+    private final Session session;
+    private final Metadata metadata;
+    private final int fetchSize;
+    private final int splitsPerThread;
+
+    private final PreparedStatement rangeSelect;
+    private final PreparedStatement openEndedSelect;
+
+    /**
+     *
+     * @param session
+     * @param metadata cluster metadata providing the token ring
+     * @param keySpace
+     * @param table
+     * @param fetchSize rows per page
+     * @param splitsPerThread token ranges scanned per thread, more ranges balance skew better
+     */
+    public CassandraScanner(Session session, Metadata metadata, String keySpace, String table,
+                            int fetchSize, int splitsPerThread) {
+        this(session, metadata, keySpace, table, "host, metric", fetchSize, splitsPerThread);
+    }
+
+    /**
+     *
+     * @param session
+     * @param metadata cluster metadata providing the token ring
+     * @param keySpace
+     * @param table
+     * @param partitionKey comma separated partition key columns of the table
+     * @param fetchSize rows per page
+     * @param splitsPerThread token ranges scanned per thread, more ranges balance skew better
+     */
+    public CassandraScanner(Session session, Metadata metadata, String keySpace, String table,
+                            String partitionKey, int fetchSize, int splitsPerThread) {
+        this.session = session;
+        this.metadata = metadata;
+        this.fetchSize = fetchSize;
+        this.splitsPerThread = Math.max(1, splitsPerThread);
+
+        String token = "token(" + partitionKey + ")";
+        String select = "select " + COLUMNS + " from " + keySpace + "." + table + " where " + token + " > ?";
+        this.rangeSelect = session.prepare(select + " and " + token + " <= ?");
+        this.openEndedSelect = session.prepare(select);
+    }
+
+    /**
+     *
+     * @param threads
+     * @return totals merged over all ranges
+     */
+    public ScanResult scan(int threads) {
+        final ScanResult result = new ScanResult();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (final TokenRange range : this.split(threads * this.splitsPerThread)) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    scanRange(range, result);
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param splits
+     * @return non-wrapping ranges covering the whole ring, at least splits of them when possible
+     */
+    List<TokenRange> split(int splits) {
+        List<TokenRange> ranges = new ArrayList<TokenRange>();
+
+        for (TokenRange range : this.metadata.getTokenRanges()) {
+            ranges.addAll(range.unwrap());
+        }
+
+        int perRange = (splits + ranges.size() - 1) / Math.max(1, ranges.size());
+        if (perRange <= 1) {
+            return ranges;
+        }
+
+        List<TokenRange> split = new ArrayList<TokenRange>();
+        for (TokenRange range : ranges) {
+            split.addAll(range.splitEvenly(perRange));
+        }
+        return split;
+    }
+
+    /**
+     *
+     * @param range
+     * @param result
+     */
+    private void scanRange(TokenRange range, ScanResult result) {
+        Statement statement;
+
+        // after unwrap, only the range ending at the minimum token has end < start
+        if (range.getEnd().compareTo(range.getStart()) <= 0) {
+            statement = this.openEndedSelect.bind().setToken(0, range.getStart());
+        } else {
+            statement = this.rangeSelect.bind().setToken(0, range.getStart()).setToken(1, range.getEnd());
+        }
+        statement.setFetchSize(this.fetchSize);
+
+        ResultSet rs = this.session.execute(statement);
+        int prefetchAt = Math.max(1, this.fetchSize / 4);
+        long rows = 0;
+        long bytes = 0;
+
+        for (Row row : rs) {
+            if (rs.getAvailableWithoutFetching() == prefetchAt && !rs.isFullyFetched()) {
+                rs.fetchMoreResults();
+            }
+
+            rows++;
+            for (int i = 0; i < 4; i++) {
+                ByteBuffer value = row.getBytesUnsafe(i);
+                if (value != null) {
+                    bytes += value.remaining();
+                }
+            }
+        }
+        result.add(rows, bytes);
+    }
+}
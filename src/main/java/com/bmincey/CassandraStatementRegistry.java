@@ -0,0 +1,103 @@
+package com.bmincey;
+
+import com.datastax.driver.core.PreparedStatement;
+import com.datastax.driver.core.Session;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Prepared statements of one session by name.  Each statement is prepared once, when it is
+ * registered, and every later execution only binds it, so no CQL string is parsed by the
+ * server inside a timed section.
+ */
+public class CassandraStatementRegistry {
+
+    public static final String INSERT = "insert";
+    public static final String POINT = "point";
+    public static final String RANGE = "range";
+    public static final String RANGE_PAGE = "rangePage";
+    public static final String SERIES = "series";
+    public static final String MAX = "max";
+    public static final String SCAN = "scan";
+
+    private final Session session;
+    private final ConcurrentMap<String, PreparedStatement> statements = new ConcurrentHashMap<String, PreparedStatement>();
+
+    /**
+     *
+     * @param session
+     */
+    public CassandraStatementRegistry(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Every statement the examples and stores run against a (host, metric, time, value) table.
+     *
+     * @param session
+     * @param keySpace
+     * @param table
+     * @return
+     */
+    public static CassandraStatementRegistry forMetricTable(Session session, String keySpace, String table) {
+        CassandraStatementRegistry registry = new CassandraStatementRegistry(session);
+        String name = keySpace + "." + table;
+
+        registry.prepare(INSERT, "INSERT INTO " + name + " (host, metric, time, value) values (?, ?, ?, ?)");
+        registry.prepare(POINT, "select value from " + name + " where host = ? and metric = ? and time = ?");
+        registry.prepare(RANGE, "select time, value from " + name +
+                " where host = ? and metric = ? and time >= ? and time < ?");
+        registry.prepare(RANGE_PAGE, "select time, value from " + name +
+                " where host = ? and metric = ? and time >= ? and time < ? limit ?");
+        registry.prepare(SERIES, "select * from " + name + " where host = ? and metric = ?");
+        registry.prepare(MAX, "select max(value) from " + name + " where host = ? and metric = ?");
+        registry.prepare(SCAN, "select * from " + name);
+        return registry;
+    }
+
+    /**
+     *
+     * @param name
+     * @param cql
+     * @return the statement registered under name, prepared now if it is new
+     */
+    public PreparedStatement prepare(String name, String cql) {
+        PreparedStatement statement = this.statements.get(name);
+
+        if (statement == null) {
+            PreparedStatement prepared = this.session.prepare(cql);
+            statement = this.statements.putIfAbsent(name, prepared);
+            if (statement == null) {
+                statement = prepared;
+            }
+        }
+        if (!statement.getQueryString().equals(cql)) {
+            throw new IllegalStateException("Statement " + name + " is already registered as: " +
+                    statement.getQueryString());
+        }
+        return statement;
+    }
+
+    /**
+     *
+     * @param name
+     * @return
+     */
+    public PreparedStatement get(String name) {
+        PreparedStatement statement = this.statements.get(name);
+
+        if (statement == null) {
+            throw new IllegalArgumentException("No prepared statement named: " + name);
+        }
+        return statement;
+    }
+
+    /**
+     *
+     * @return number of prepared statements
+     */
+    public int size() {
+        return this.statements.size();
+    }
+}
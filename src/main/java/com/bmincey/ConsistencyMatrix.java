@@ -0,0 +1,213 @@
+package com.bmincey;
+
+import com.datastax.driver.core.ConsistencyLevel;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the same MixedWorkload once per combination of write and read durability settings and
+ * prints the results side by side: Cassandra write and read consistency levels, or MongoDB
+ * write concerns and read preferences.  Every run reuses the store's connection, only the
+ * settings of its statements or collection change, and starts from a fresh schema.  The first
+ * run is preceded by the configured warmup.
+ */
+public class ConsistencyMatrix {
+
+    private final MetricStore store;
+    private final WorkloadSpec spec;
+    private final List<String> rows = new ArrayList<String>();
+    private Warmup warmup = new Warmup(0, 0);
+
+    /**
+     *
+     * @param store a Cassandra or MongoDB store, not wrapped
+     * @param spec workload run for every combination
+     */
+    public ConsistencyMatrix(MetricStore store, WorkloadSpec spec) {
+        this.store = store;
+        this.spec = spec;
+    }
+
+    /**
+     *
+     * @param warmup untimed phase run before the first combination
+     */
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     *
+     * @param writeLevels
+     * @param readLevels
+     */
+    public void runCassandra(List<ConsistencyLevel> writeLevels, List<ConsistencyLevel> readLevels) {
+        for (ConsistencyLevel writeLevel : writeLevels) {
+            for (ConsistencyLevel readLevel : readLevels) {
+                if (this.store instanceof CassandraMetricStore) {
+                    ((CassandraMetricStore) this.store).setConsistency(readLevel, writeLevel);
+                } else {
+                    ((CassandraBucketedMetricStore) this.store).setConsistency(readLevel, writeLevel);
+                }
+                this.runCell("write " + writeLevel + ", read " + readLevel);
+            }
+        }
+        this.printTable();
+    }
+
+    /**
+     *
+     * @param writeConcerns names as accepted by parseWriteConcern, e.g. w:majority
+     * @param readPreferences
+     */
+    public void runMongo(List<String> writeConcerns, List<ReadPreference> readPreferences) {
+        for (String writeConcern : writeConcerns) {
+            for (ReadPreference readPreference : readPreferences) {
+                if (this.store instanceof MongoDBMetricStore) {
+                    ((MongoDBMetricStore) this.store).setConcerns(parseWriteConcern(writeConcern), readPreference);
+                } else {
+                    ((MongoDBBucketedMetricStore) this.store).setConcerns(parseWriteConcern(writeConcern),
+                            readPreference);
+                }
+                this.runCell(writeConcern + ", " + readPreference.getName());
+            }
+        }
+        this.printTable();
+    }
+
+    /**
+     *
+     * @param setting label of the row
+     */
+    private void runCell(String setting) {
+        System.out.println("Consistency matrix: " + setting);
+
+        MixedWorkload workload = new MixedWorkload(this.store, this.spec);
+        if (this.rows.isEmpty()) {
+            workload.setWarmup(this.warmup);
+        }
+        workload.run();
+
+        Map<String, Histogram> histograms = workload.getLatencyStats().snapshot();
+        Histogram inserts = histograms.containsKey("insert") ? histograms.get("insert") : new Histogram(3);
+        Histogram ranges = histograms.containsKey("range") ? histograms.get("range") : new Histogram(3);
+
+        this.rows.add(String.format("%-40s %10d %10d %10d %10d %10d %10d", setting, workload.getWritesPerSecond(),
+                workload.getReadsPerSecond(), inserts.getValueAtPercentile(50), inserts.getValueAtPercentile(99),
+                ranges.getValueAtPercentile(50), ranges.getValueAtPercentile(99)));
+    }
+
+    /**
+     *
+     */
+    private void printTable() {
+        System.out.println("Consistency matrix for " + this.store.getName() + ", workload: " + this.spec);
+        System.out.printf("%-40s %10s %10s %10s %10s %10s %10s%n", "setting", "writes/s", "reads/s",
+                "insert p50", "insert p99", "range p50", "range p99");
+        for (String row : this.rows) {
+            System.out.println(row);
+        }
+        this.rows.clear();
+    }
+
+    /**
+     * Parses w:&lt;n&gt;, w:majority and j:true, combined with +, e.g. w:majority+j:true.
+     *
+     * @param name
+     * @return the write concern
+     */
+    static WriteConcern parseWriteConcern(String name) {
+        WriteConcern writeConcern = WriteConcern.ACKNOWLEDGED;
+
+        for (String part : name.split("\\+")) {
+            String option = part.trim();
+
+            if (option.equals("w:majority")) {
+                writeConcern = writeConcern.withW("majority");
+            } else if (option.startsWith("w:")) {
+                writeConcern = writeConcern.withW(Integer.parseInt(option.substring(2)));
+            } else if (option.equals("j:true") || option.equals("j:false")) {
+                writeConcern = writeConcern.withJournal(option.equals("j:true"));
+            } else {
+                throw new IllegalArgumentException("Unknown write concern: " + name);
+            }
+        }
+        return writeConcern;
+    }
+
+    /**
+     *
+     * @param list
+     * @return
+     */
+    private static List<String> parseList(String list) {
+        List<String> values = new ArrayList<String>();
+
+        for (String value : list.split(",")) {
+            if (!value.trim().isEmpty()) {
+                values.add(value.trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     *
+     * @param args optional workload spec file overriding application.properties
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+            if (args.length > 0) {
+                appProps.load(args[0]);
+            }
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+
+            MetricStore store = MetricStoreFactory.createStore(storeName, appProps);
+            try {
+                ConsistencyMatrix matrix = new ConsistencyMatrix(store, WorkloadSpec.fromProperties(appProps));
+                matrix.setWarmup(Warmup.fromProperties(appProps));
+
+                if (store instanceof CassandraMetricStore || store instanceof CassandraBucketedMetricStore) {
+                    List<ConsistencyLevel> writeLevels = new ArrayList<ConsistencyLevel>();
+                    for (String level : parseList(appProps.getApplicationProperty(
+                            ApplicationProperties.cassandraWriteConsistencyLevelsProperty, "ONE,LOCAL_QUORUM,QUORUM"))) {
+                        writeLevels.add(ConsistencyLevel.valueOf(level.toUpperCase()));
+                    }
+                    List<ConsistencyLevel> readLevels = new ArrayList<ConsistencyLevel>();
+                    for (String level : parseList(appProps.getApplicationProperty(
+                            ApplicationProperties.cassandraReadConsistencyLevelsProperty, "ONE,LOCAL_QUORUM,QUORUM"))) {
+                        readLevels.add(ConsistencyLevel.valueOf(level.toUpperCase()));
+                    }
+                    matrix.runCassandra(writeLevels, readLevels);
+                }
+                else if (store instanceof MongoDBMetricStore || store instanceof MongoDBBucketedMetricStore) {
+                    List<ReadPreference> readPreferences = new ArrayList<ReadPreference>();
+                    for (String preference : parseList(appProps.getApplicationProperty(
+                            ApplicationProperties.mongoReadPreferencesProperty, "primary"))) {
+                        readPreferences.add(ReadPreference.valueOf(preference));
+                    }
+                    matrix.runMongo(parseList(appProps.getApplicationProperty(
+                            ApplicationProperties.mongoWriteConcernsProperty, "w:0,w:1,w:majority,j:true")),
+                            readPreferences);
+                }
+                else {
+                    System.err.println("Consistency matrix needs a Cassandra or MongoDB store, not " + storeName);
+                }
+            } finally {
+                store.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.bmincey;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers driver metrics sources as MBeans under com.bmincey and appends a snapshot line
+ * per source to a file at a fixed interval, so the driver's view of pool waits, in-flight
+ * requests and command timings can be lined up with the benchmark output.  Closing writes a
+ * final snapshot, prints it, and unregisters the MBeans.
+ */
+public class DriverMetricsReporter implements Closeable {
+
+    private final String snapshotFile;
+    private final long intervalMillis;
+
+    private final List<DriverMetricsSource> sources = new CopyOnWriteArrayList<DriverMetricsSource>();
+    private final List<ObjectName> names = new CopyOnWriteArrayList<ObjectName>();
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     *
+     * @param snapshotFile file snapshots are appended to
+     * @param intervalMillis time between snapshots
+     */
+    public DriverMetricsReporter(String snapshotFile, long intervalMillis) {
+        this.snapshotFile = snapshotFile;
+        this.intervalMillis = intervalMillis;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "driver-metrics");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                writeSnapshot();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     *
+     * @param appProps
+     * @return a reporter configured in application.properties, or null when driver metrics are off
+     */
+    public static DriverMetricsReporter fromProperties(ApplicationProperties appProps) {
+        if (!Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.driverMetricsProperty,
+                "false"))) {
+            return null;
+        }
+
+        return new DriverMetricsReporter(
+                appProps.getApplicationProperty(ApplicationProperties.driverMetricsSnapshotFileProperty,
+                        "driver-metrics.log"),
+                Long.parseLong(appProps.getApplicationProperty(
+                        ApplicationProperties.driverMetricsSnapshotMsProperty, "5000")));
+    }
+
+    /**
+     *
+     * @param source an object implementing its own standard MBean interface
+     */
+    public void register(DriverMetricsSource source) {
+        this.sources.add(source);
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.bmincey:type=" + source.getClass().getSimpleName() +
+                    ",name=" + ObjectName.quote(source.getName()));
+
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(source, name);
+            this.names.add(name);
+        } catch (JMException e) {
+            System.err.println("Driver metrics MBean not registered: " + e);
+        }
+        System.out.println("Driver metrics: " + source.getName() + ", snapshot every " + this.intervalMillis +
+                " ms to " + this.snapshotFile);
+    }
+
+    /**
+     * Appends one line per source to the snapshot file.
+     */
+    synchronized void writeSnapshot() {
+        String timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(new Date());
+
+        PrintWriter writer = null;
+        try {
+            writer = new PrintWriter(new FileWriter(this.snapshotFile, true));
+            for (DriverMetricsSource source : this.sources) {
+                writer.println(timestamp + " " + source.getName() + ": " + source.snapshot());
+            }
+        } catch (IOException e) {
+            System.err.println("Driver metrics snapshot not written: " + e);
+        } catch (RuntimeException e) {
+            // a source whose client is already closed
+            System.err.println("Driver metrics snapshot failed: " + e);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Writes and prints a final snapshot; call before the drivers are closed.
+     */
+    @Override
+    public void close() {
+        this.scheduler.shutdownNow();
+        this.writeSnapshot();
+
+        for (DriverMetricsSource source : this.sources) {
+            System.out.println("Driver metrics for " + source.getName() + ": " + source.snapshot());
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : this.names) {
+            try {
+                server.unregisterMBean(name);
+            } catch (JMException e) {
+                // already unregistered
+            }
+        }
+        this.names.clear();
+        this.sources.clear();
+    }
+}
@@ -0,0 +1,20 @@
+package com.bmincey;
+
+/**
+ * Client driver statistics that DriverMetricsReporter registers as an MBean and writes to its
+ * snapshot file.
+ */
+public interface DriverMetricsSource {
+
+    /**
+     *
+     * @return name of the store or example the driver belongs to
+     */
+    String getName();
+
+    /**
+     *
+     * @return one line describing the current values
+     */
+    String snapshot();
+}
@@ -0,0 +1,175 @@
+package com.bmincey;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures how the latency of a dashboard-style read grows with the number of series.  Series
+ * host0/m1, host1/m1, ... are loaded with evenly spaced points over the last rangeMillis; then,
+ * for each series count, the latest window of that many series is read repeatedly, once with
+ * multiRangeQuery and once as one rangeQuery after another, and the latency percentiles of both
+ * are printed side by side in microseconds.  Each series count starts with one untimed query.
+ */
+public class FanOutBenchmark {
+
+    private final MetricStore store;
+    private final LatencyStats latencyStats;
+    private long loadedUntil;
+
+    /**
+     *
+     * @param store
+     */
+    public FanOutBenchmark(MetricStore store) {
+        this.store = store;
+        this.latencyStats = new LatencyStats(store.toString(), 0);
+    }
+
+    /**
+     * Writes pointsPerSeries points to each of the first seriesCount series, ending now.
+     *
+     * @param seriesCount
+     * @param pointsPerSeries
+     * @param rangeMillis
+     */
+    public void load(int seriesCount, int pointsPerSeries, long rangeMillis) {
+        SampleDataGenerator generator = new SampleDataGenerator(seriesCount);
+        long now = System.currentTimeMillis();
+        long step = Math.max(1, rangeMillis / Math.max(1, pointsPerSeries));
+
+        System.out.println("Loading series = " + seriesCount + ", points per series = " + pointsPerSeries);
+        for (int p = 0; p < pointsPerSeries; p++) {
+            long time = now - rangeMillis + 1 + p * step;
+            for (SeriesId id : series(seriesCount)) {
+                this.store.write(id.getHost(), id.getMetric(), time, generator.nextValue());
+            }
+        }
+        this.store.flush();
+        this.loadedUntil = now;
+    }
+
+    /**
+     *
+     * @param seriesCounts
+     * @param queries timed queries per series count and method
+     * @param rangeMillis window read by every query, ending at the last load
+     */
+    public void run(int[] seriesCounts, int queries, long rangeMillis) {
+        long from = this.loadedUntil - rangeMillis + 1;
+        long to = this.loadedUntil + 1;
+        List<String> rows = new ArrayList<String>();
+
+        for (int seriesCount : seriesCounts) {
+            List<SeriesId> series = series(seriesCount);
+            String fanOut = "fanOut " + seriesCount;
+            String sequential = "sequential " + seriesCount;
+
+            long points = 0;
+            for (int count : this.store.multiRangeQuery(series, from, to)) {
+                points += count;
+            }
+            this.sequentialRangeQuery(series, from, to);
+
+            for (int q = 0; q < queries; q++) {
+                long started = System.nanoTime();
+                this.store.multiRangeQuery(series, from, to);
+                this.latencyStats.record(fanOut, started);
+
+                started = System.nanoTime();
+                this.sequentialRangeQuery(series, from, to);
+                this.latencyStats.record(sequential, started);
+            }
+
+            Map<String, Histogram> histograms = this.latencyStats.snapshot();
+            rows.add(String.format("%10d %10d %12d %12d %14d %14d", seriesCount, points,
+                    histograms.get(fanOut).getValueAtPercentile(50), histograms.get(fanOut).getValueAtPercentile(99),
+                    histograms.get(sequential).getValueAtPercentile(50),
+                    histograms.get(sequential).getValueAtPercentile(99)));
+        }
+
+        System.out.println("Multi-series range queries on " + this.store + ", window = " + rangeMillis +
+                " ms, queries = " + queries + " (latency in micros)");
+        System.out.printf("%10s %10s %12s %12s %14s %14s%n", "series", "points", "fan-out p50", "fan-out p99",
+                "one-by-one p50", "one-by-one p99");
+        for (String row : rows) {
+            System.out.println(row);
+        }
+    }
+
+    /**
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return points read
+     */
+    private long sequentialRangeQuery(List<SeriesId> series, long from, long to) {
+        long points = 0;
+        for (SeriesId id : series) {
+            points += this.store.rangeQuery(id.getHost(), id.getMetric(), from, to);
+        }
+        return points;
+    }
+
+    /**
+     *
+     * @param count
+     * @return host0/m1 .. host(count - 1)/m1
+     */
+    static List<SeriesId> series(int count) {
+        List<SeriesId> series = new ArrayList<SeriesId>(count);
+        for (int i = 0; i < count; i++) {
+            series.add(new SeriesId("host" + i, SampleDataGenerator.METRICS[0]));
+        }
+        return series;
+    }
+
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    /**
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+            int[] seriesCounts = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.fanOutSeriesProperty, "1,10,50,100,500"));
+            int queries = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.fanOutQueriesProperty, "20"));
+            long rangeMillis = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.fanOutRangeMsProperty, "60000"));
+            int pointsPerSeries = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.fanOutPointsPerSeriesProperty, "60"));
+
+            int maxSeries = 1;
+            for (int seriesCount : seriesCounts) {
+                maxSeries = Math.max(maxSeries, seriesCount);
+            }
+
+            MetricStore store = MetricStoreFactory.create(storeName, appProps);
+            try {
+                System.out.println("Store: " + store);
+                store.createSchema();
+
+                FanOutBenchmark benchmark = new FanOutBenchmark(store);
+                benchmark.load(maxSeries, pointsPerSeries, rangeMillis);
+                benchmark.run(seriesCounts, queries, rangeMillis);
+            } finally {
+                store.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
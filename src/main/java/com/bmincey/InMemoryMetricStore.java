@@ -0,0 +1,278 @@
+package com.bmincey;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * In-process MetricStore used as an offline baseline.  Each (host, metric) series keeps its
+ * points in primitive long[] / double[] arrays sorted by time, so a series costs 16 bytes per
+ * point and range reads are two binary searches.  Appends to different series never contend;
+ * appends to the same series are serialized on that series.  As with the Cassandra primary key,
+ * writing an existing (host, metric, time) replaces its value.
+ */
+public class InMemoryMetricStore implements MetricStore {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<String, Series>();
+    // written by scan() so the JIT cannot drop the reads
+    private volatile long scanChecksum;
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public String toString() {
+        return this.getName();
+    }
+
+    @Override
+    public void createSchema() {
+        this.series.clear();
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        String key = seriesKey(host, metric);
+        Series target = this.series.get(key);
+
+        if (target == null) {
+            Series created = new Series();
+            target = this.series.putIfAbsent(key, created);
+            if (target == null) {
+                target = created;
+            }
+        }
+        target.append(time, value);
+    }
+
+    @Override
+    public void flush() {
+        // writes are applied immediately
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        Series target = this.series.get(seriesKey(host, metric));
+        return target == null ? null : target.valueAt(time);
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        Series target = this.series.get(seriesKey(host, metric));
+        return target == null ? 0 : target.countBetween(from, to);
+    }
+
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        SeriesPage page = new SeriesPage(from, limit, pagingState);
+        Series target = this.series.get(seriesKey(host, metric));
+
+        if (target != null) {
+            target.readPage(page, to);
+        }
+        return page;
+    }
+
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        int[] counts = new int[series.size()];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = this.rangeQuery(series.get(i).getHost(), series.get(i).getMetric(), from, to);
+        }
+        return counts;
+    }
+
+    @Override
+    public Double maxQuery(String host, String metric) {
+        Series target = this.series.get(seriesKey(host, metric));
+        return target == null ? null : target.max();
+    }
+
+    /**
+     * Reads the time and value of every point, like the database scans do.
+     *
+     * @return number of points read
+     */
+    @Override
+    public long scan() {
+        long count = 0;
+        long checksum = 0;
+        for (Series target : this.series.values()) {
+            count += target.size();
+            checksum += target.checksum();
+        }
+        this.scanChecksum = checksum;
+        return count;
+    }
+
+    @Override
+    public String storageStats() {
+        long points = 0;
+        for (Series target : this.series.values()) {
+            points += target.size();
+        }
+        return "series = " + this.series.size() + ", points = " + points + ", array bytes = " + points * 16;
+    }
+
+    @Override
+    public void close() {
+        this.series.clear();
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @return
+     */
+    static String seriesKey(String host, String metric) {
+        return host + ':' + metric;
+    }
+
+    /**
+     * One time series kept sorted by time.  In-order appends are the common case and cost an
+     * array store; late points are inserted at their position with an array copy.
+     */
+    static class Series {
+
+        private long[] times = new long[INITIAL_CAPACITY];
+        private double[] values = new double[INITIAL_CAPACITY];
+        private int size = 0;
+
+        /**
+         *
+         * @param time
+         * @param value
+         */
+        synchronized void append(long time, double value) {
+            if (this.size == 0 || time > this.times[this.size - 1]) {
+                this.ensureCapacity();
+                this.times[this.size] = time;
+                this.values[this.size] = value;
+                this.size++;
+                return;
+            }
+
+            int index = Arrays.binarySearch(this.times, 0, this.size, time);
+            if (index >= 0) {
+                this.values[index] = value;
+                return;
+            }
+
+            int insertAt = -index - 1;
+            this.ensureCapacity();
+            System.arraycopy(this.times, insertAt, this.times, insertAt + 1, this.size - insertAt);
+            System.arraycopy(this.values, insertAt, this.values, insertAt + 1, this.size - insertAt);
+            this.times[insertAt] = time;
+            this.values[insertAt] = value;
+            this.size++;
+        }
+
+        /**
+         *
+         * @param time
+         * @return
+         */
+        synchronized Double valueAt(long time) {
+            int index = Arrays.binarySearch(this.times, 0, this.size, time);
+            return index >= 0 ? this.values[index] : null;
+        }
+
+        /**
+         *
+         * @param from inclusive
+         * @param to exclusive
+         * @return
+         */
+        synchronized int countBetween(long from, long to) {
+            return Math.max(0, this.lowerBound(to) - this.lowerBound(from));
+        }
+
+        /**
+         * Copies the points from the page's start time up to to into page.
+         *
+         * @param page
+         * @param to exclusive
+         */
+        synchronized void readPage(SeriesPage page, long to) {
+            int end = this.lowerBound(to);
+
+            for (int i = this.lowerBound(page.getStartTime()) + page.getSkip(); i < end; i++) {
+                if (!page.offer(this.times[i], this.values[i])) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         *
+         * @return
+         */
+        synchronized Double max() {
+            if (this.size == 0) {
+                return null;
+            }
+
+            double max = this.values[0];
+            for (int i = 1; i < this.size; i++) {
+                if (this.values[i] > max) {
+                    max = this.values[i];
+                }
+            }
+            return max;
+        }
+
+        synchronized int size() {
+            return this.size;
+        }
+
+        /**
+         *
+         * @return a hash of every time and value in the series
+         */
+        synchronized long checksum() {
+            long checksum = 0;
+            for (int i = 0; i < this.size; i++) {
+                checksum = 31 * checksum + (this.times[i] ^ Double.doubleToRawLongBits(this.values[i]));
+            }
+            return checksum;
+        }
+
+        /**
+         *
+         * @param time
+         * @return index of the first point at or after time
+         */
+        private int lowerBound(long time) {
+            int low = 0;
+            int high = this.size;
+
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (this.times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        /**
+         *
+         */
+        private void ensureCapacity() {
+            if (this.size == this.times.length) {
+                int capacity = this.times.length * 2;
+                this.times = Arrays.copyOf(this.times, capacity);
+                this.values = Arrays.copyOf(this.values, capacity);
+            }
+        }
+    }
+}
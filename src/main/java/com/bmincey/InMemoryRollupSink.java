@@ -0,0 +1,72 @@
+package com.bmincey;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * RollupSink kept in process, used with the in-memory store.  Each series maps windows to
+ * copies of the last written rollups.
+ */
+public class InMemoryRollupSink implements RollupSink {
+
+    private final ConcurrentMap<String, NavigableMap<Long, Rollup>> series =
+            new ConcurrentHashMap<String, NavigableMap<Long, Rollup>>();
+
+    @Override
+    public void createSchema() {
+        this.series.clear();
+    }
+
+    @Override
+    public void write(Collection<Rollup> rollups) {
+        for (Rollup rollup : rollups) {
+            String key = InMemoryMetricStore.seriesKey(rollup.getHost(), rollup.getMetric());
+            NavigableMap<Long, Rollup> windows = this.series.get(key);
+
+            if (windows == null) {
+                NavigableMap<Long, Rollup> created = new TreeMap<Long, Rollup>();
+                windows = this.series.putIfAbsent(key, created);
+                if (windows == null) {
+                    windows = created;
+                }
+            }
+            synchronized (windows) {
+                windows.put(rollup.getWindow(), rollup.copy());
+            }
+        }
+    }
+
+    @Override
+    public Rollup read(String host, String metric, long window) {
+        NavigableMap<Long, Rollup> windows = this.series.get(InMemoryMetricStore.seriesKey(host, metric));
+        if (windows == null) {
+            return null;
+        }
+
+        synchronized (windows) {
+            Rollup rollup = windows.get(window);
+            return rollup == null ? null : rollup.copy();
+        }
+    }
+
+    @Override
+    public List<Rollup> read(String host, String metric, long fromWindow, long toWindow) {
+        NavigableMap<Long, Rollup> windows = this.series.get(InMemoryMetricStore.seriesKey(host, metric));
+        List<Rollup> result = new ArrayList<Rollup>();
+        if (windows == null) {
+            return result;
+        }
+
+        synchronized (windows) {
+            for (Rollup rollup : windows.subMap(fromWindow, true, toWindow, false).values()) {
+                result.add(rollup.copy());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,168 @@
+package com.bmincey;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation latency histograms.  Each operation type gets an HdrHistogram Recorder, which
+ * any number of threads can record into without locking; the reporting side pulls the interval
+ * histograms and merges them into a running total.  Values are recorded in microseconds.
+ *
+ * When an expected interval is configured, every value is recorded with
+ * recordValueWithExpectedInterval so that a stalled request also accounts for the requests
+ * that would have been issued while it was outstanding (coordinated omission correction).
+ * Without one, a closed-loop run under-reports the tail, and the report says the numbers are
+ * uncorrected unless the caller measures from the intended start of every request.
+ *
+ * An operation name should identify one configuration; a writer that can be run with several
+ * batch sizes or concurrency levels puts them in its operation names, so runs with different
+ * settings never share a histogram.
+ */
+public class LatencyStats {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final String backend;
+    private final long expectedIntervalMicros;
+    private boolean fromIntendedStart;
+
+    private final ConcurrentMap<String, Recorder> recorders = new ConcurrentHashMap<String, Recorder>();
+    private final Map<String, Histogram> totals = new TreeMap<String, Histogram>();
+
+    /**
+     *
+     * @param backend name printed with the report
+     * @param expectedIntervalMicros expected time between requests of one thread, 0 disables the correction
+     */
+    public LatencyStats(String backend, long expectedIntervalMicros) {
+        this.backend = backend;
+        this.expectedIntervalMicros = expectedIntervalMicros;
+    }
+
+    /**
+     * Marks the recorded latencies as measured from the intended start of each request, as an
+     * open-loop generator does, which already accounts for coordinated omission.
+     *
+     * @param fromIntendedStart
+     */
+    public void setFromIntendedStart(boolean fromIntendedStart) {
+        this.fromIntendedStart = fromIntendedStart;
+    }
+
+    /**
+     *
+     * @param operation
+     * @param startNanos System.nanoTime() taken when the operation started
+     */
+    public void record(String operation, long startNanos) {
+        this.recordMicros(operation, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    /**
+     *
+     * @param operation
+     * @param micros
+     */
+    public void recordMicros(String operation, long micros) {
+        Recorder recorder = this.recorders.get(operation);
+
+        if (recorder == null) {
+            Recorder created = new Recorder(SIGNIFICANT_DIGITS);
+            recorder = this.recorders.putIfAbsent(operation, created);
+            if (recorder == null) {
+                recorder = created;
+            }
+        }
+
+        if (this.expectedIntervalMicros > 0) {
+            recorder.recordValueWithExpectedInterval(micros, this.expectedIntervalMicros);
+        } else {
+            recorder.recordValue(micros);
+        }
+    }
+
+    /**
+     * Merges everything recorded so far into the running totals.
+     *
+     * @return operation name -> histogram of all values recorded since creation or reset
+     */
+    public synchronized Map<String, Histogram> snapshot() {
+        for (Map.Entry<String, Recorder> entry : this.recorders.entrySet()) {
+            Histogram total = this.totals.get(entry.getKey());
+
+            if (total == null) {
+                total = new Histogram(SIGNIFICANT_DIGITS);
+                this.totals.put(entry.getKey(), total);
+            }
+            total.add(entry.getValue().getIntervalHistogram());
+        }
+
+        Map<String, Histogram> copy = new TreeMap<String, Histogram>();
+        for (Map.Entry<String, Histogram> entry : this.totals.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().copy());
+        }
+        return copy;
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public synchronized void reset() {
+        for (Recorder recorder : this.recorders.values()) {
+            recorder.reset();
+        }
+        this.totals.clear();
+    }
+
+    /**
+     *
+     * @param out
+     */
+    public void print(PrintStream out) {
+        Map<String, Histogram> histograms = this.snapshot();
+        int width = "operation".length();
+        for (String operation : histograms.keySet()) {
+            width = Math.max(width, operation.length());
+        }
+        String nameFormat = "%-" + Math.max(16, width) + "s";
+
+        out.println("Latency (us) for " + this.backend + ", " + this.correction());
+        out.printf(nameFormat + " %10s %10s %10s %10s %10s %10s%n", "operation", "count", "p50", "p90", "p99",
+                "p99.9", "max");
+
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+
+            out.printf(nameFormat + " %10d %10d %10d %10d %10d %10d%n", entry.getKey(),
+                    histogram.getTotalCount(),
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9),
+                    histogram.getMaxValue());
+        }
+    }
+
+    /**
+     *
+     * @return how the values account for coordinated omission, for the report header
+     */
+    private String correction() {
+        if (this.expectedIntervalMicros > 0) {
+            return "corrected for coordinated omission, expected interval = " + this.expectedIntervalMicros + " us";
+        }
+        return this.fromIntendedStart ? "measured from intended start" :
+                "uncorrected for coordinated omission (closed loop, tail latencies are under-reported)";
+    }
+
+    public String getBackend() {
+        return backend;
+    }
+}
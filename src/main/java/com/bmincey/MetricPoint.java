@@ -0,0 +1,65 @@
+package com.bmincey;
+
+/**
+ * One point of a series, written to MongoDB by MetricPointCodec without building a Document.
+ * Mutable so a single-threaded synchronous writer can reuse one instance; a point handed to a
+ * batching or async writer must not be changed until it has been sent.
+ */
+public class MetricPoint {
+
+    private String host;
+    private String metric;
+    private long time;
+    private double value;
+
+    public MetricPoint() {
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time epoch millis
+     * @param value
+     */
+    public MetricPoint(String host, String metric, long time, double value) {
+        this.set(host, metric, time, value);
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time epoch millis
+     * @param value
+     * @return this point
+     */
+    public MetricPoint set(String host, String metric, long time, double value) {
+        this.host = host;
+        this.metric = metric;
+        this.time = time;
+        this.value = value;
+        return this;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return this.host + "/" + this.metric + " @ " + this.time + " = " + this.value;
+    }
+}
@@ -0,0 +1,66 @@
+package com.bmincey;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+
+/**
+ * Writes a MetricPoint straight to the BsonWriter as {host, metric, time, value}, the same
+ * document the Document based paths insert, without the LinkedHashMap, Date and boxed Double of
+ * a Document or the per-field codec lookups of DocumentCodec.  No _id is written, so the server
+ * assigns one.  Decoding skips fields other than the four.
+ */
+public class MetricPointCodec implements Codec<MetricPoint> {
+
+    public static final CodecRegistry REGISTRY = CodecRegistries.fromRegistries(
+            CodecRegistries.fromCodecs(new MetricPointCodec()), MongoClient.getDefaultCodecRegistry());
+
+    @Override
+    public void encode(BsonWriter writer, MetricPoint point, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeString("host", point.getHost());
+        writer.writeString("metric", point.getMetric());
+        writer.writeDateTime("time", point.getTime());
+        writer.writeDouble("value", point.getValue());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public MetricPoint decode(BsonReader reader, DecoderContext decoderContext) {
+        String host = null;
+        String metric = null;
+        long time = 0;
+        double value = 0;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+
+            if (name.equals("host")) {
+                host = reader.readString();
+            } else if (name.equals("metric")) {
+                metric = reader.readString();
+            } else if (name.equals("time")) {
+                time = reader.readDateTime();
+            } else if (name.equals("value")) {
+                value = reader.readDouble();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return new MetricPoint(host, metric, time, value);
+    }
+
+    @Override
+    public Class<MetricPoint> getEncoderClass() {
+        return MetricPoint.class;
+    }
+}
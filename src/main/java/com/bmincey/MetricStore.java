@@ -0,0 +1,106 @@
+package com.bmincey;
+
+import java.io.Closeable;
+import java.util.List;
+
+/**
+ * Storage operations used by the workload driver.  Every backend stores the same
+ * (host, metric, time, value) schema; times are epoch milliseconds.
+ */
+public interface MetricStore extends Closeable {
+
+    /**
+     *
+     * @return short backend name used in reports
+     */
+    String getName();
+
+    /**
+     * Drops and recreates the table or collection backing this store.
+     */
+    void createSchema();
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time
+     * @param value
+     */
+    void write(String host, String metric, long time, double value);
+
+    /**
+     * Blocks until every write issued so far has been acknowledged.
+     */
+    void flush();
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time
+     * @return the value stored at exactly that time, or null
+     */
+    Double pointQuery(String host, String metric, long time);
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param from inclusive
+     * @param to exclusive
+     * @return number of points read
+     */
+    int rangeQuery(String host, String metric, long from, long to);
+
+    /**
+     * Reads a time range in columnar pages, for charts and exports of long ranges.
+     *
+     * @param host
+     * @param metric
+     * @param from inclusive
+     * @param to exclusive
+     * @param limit maximum points in the page
+     * @param pagingState of the previous page, or null for the first page
+     * @return the points of the page in time order
+     */
+    SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState);
+
+    /**
+     * Range query over many series at once, e.g. the latest window of every host on a dashboard.
+     *
+     * @param series
+     * @param from inclusive
+     * @param to exclusive
+     * @return number of points read per series, in the order of series
+     */
+    int[] multiRangeQuery(List<SeriesId> series, long from, long to);
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @return the maximum value of the series, or null when it is empty
+     */
+    Double maxQuery(String host, String metric);
+
+    /**
+     * Reads every point in the store.
+     *
+     * @return number of points read
+     */
+    long scan();
+
+    /**
+     * Size of the data written so far, as reported by the backend.
+     *
+     * @return a one-line description of documents/rows and bytes stored
+     */
+    String storageStats();
+
+    /**
+     *
+     */
+    @Override
+    void close();
+}
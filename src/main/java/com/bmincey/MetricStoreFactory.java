@@ -0,0 +1,197 @@
+package com.bmincey;
+
+/**
+ * Creates the MetricStore named by the store property from application.properties, wrapped in
+ * a RollupMetricStore when rollups are enabled and in a CachingMetricStore when the query cache
+ * is enabled.
+ */
+public class MetricStoreFactory {
+
+    public static final String CASSANDRA = "cassandra";
+    public static final String CASSANDRA_BUCKETED = "cassandra-bucketed";
+    public static final String MONGODB = "mongodb";
+    public static final String MONGODB_BUCKETED = "mongodb-bucketed";
+    public static final String MONGODB_ASYNC = "mongodb-async";
+    public static final String MEMORY = "memory";
+
+    private MetricStoreFactory() {
+    }
+
+    /**
+     *
+     * @param storeName
+     * @param appProps
+     * @return a connected store
+     */
+    public static MetricStore create(String storeName, ApplicationProperties appProps) {
+        return create(storeName, appProps, Boolean.parseBoolean(appProps.getApplicationProperty(
+                ApplicationProperties.queryCacheProperty, "false")));
+    }
+
+    /**
+     *
+     * @param storeName
+     * @param appProps
+     * @param queryCache whether to wrap the store in a CachingMetricStore
+     * @return a connected store
+     */
+    public static MetricStore create(String storeName, ApplicationProperties appProps, boolean queryCache) {
+        MetricStore store = createStore(storeName, appProps);
+
+        if (Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.rollupsProperty, "false"))) {
+            store = new RollupMetricStore(store, createRollupSink(store, appProps),
+                    Long.parseLong(appProps.getApplicationProperty(ApplicationProperties.rollupWindowMsProperty, "60000")),
+                    Long.parseLong(appProps.getApplicationProperty(ApplicationProperties.rollupFlushMsProperty, "1000")));
+        }
+        if (queryCache) {
+            store = createCache(store, appProps);
+        }
+        return store;
+    }
+
+    /**
+     *
+     * @param store
+     * @param appProps
+     * @return store behind a query cache sized from application.properties
+     */
+    public static CachingMetricStore createCache(MetricStore store, ApplicationProperties appProps) {
+        return new CachingMetricStore(store,
+                Integer.parseInt(appProps.getApplicationProperty(ApplicationProperties.queryCacheMaxEntriesProperty,
+                        "10000")),
+                Integer.parseInt(appProps.getApplicationProperty(ApplicationProperties.queryCacheSegmentsProperty,
+                        "16")));
+    }
+
+    /**
+     *
+     * @param store
+     * @param appProps
+     * @return a sink sharing the connection of store
+     */
+    private static RollupSink createRollupSink(MetricStore store, ApplicationProperties appProps) {
+        String keySpace = appProps.getApplicationProperty(ApplicationProperties.keySpaceProperty);
+        String rollupTable = appProps.getApplicationProperty(ApplicationProperties.tableProperty) + "_rollups";
+        String rollupCollection = appProps.getApplicationProperty(ApplicationProperties.collectionProperty) + "_rollups";
+
+        if (store instanceof CassandraMetricStore) {
+            return new CassandraRollupSink(((CassandraMetricStore) store).getSession(), keySpace, rollupTable);
+        }
+        else if (store instanceof CassandraBucketedMetricStore) {
+            return new CassandraRollupSink(((CassandraBucketedMetricStore) store).getSession(), keySpace, rollupTable);
+        }
+        else if (store instanceof MongoDBMetricStore) {
+            return new MongoDBRollupSink(((MongoDBMetricStore) store).getDatabase(), rollupCollection);
+        }
+        else if (store instanceof MongoDBBucketedMetricStore) {
+            return new MongoDBRollupSink(((MongoDBBucketedMetricStore) store).getDatabase(), rollupCollection);
+        }
+        return new InMemoryRollupSink();
+    }
+
+    /**
+     *
+     * @param storeName
+     * @param appProps
+     * @return a connected store
+     */
+    static MetricStore createStore(String storeName, ApplicationProperties appProps) {
+        int scanThreads = 1;
+        for (int threads : ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                ApplicationProperties.scanThreadsProperty, "1,2,4,8"))) {
+            scanThreads = Math.max(scanThreads, threads);
+        }
+        int scanFetchSize = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.scanFetchSizeProperty, "5000"));
+        int scanSplitsPerThread = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.scanSplitsPerThreadProperty, "4"));
+        int fanOutConcurrency = Integer.parseInt(appProps.getApplicationProperty(
+                ApplicationProperties.fanOutConcurrencyProperty, "32"));
+
+        if (CASSANDRA.equalsIgnoreCase(storeName)) {
+            CassandraMetricStore store = new CassandraMetricStore(
+                    appProps.getApplicationProperty(ApplicationProperties.contactPointProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.keySpaceProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.tableProperty),
+                    new CassandraConnectionProfile(appProps));
+
+            store.setScanOptions(scanThreads, scanFetchSize, scanSplitsPerThread);
+            store.setFanOutConcurrency(fanOutConcurrency);
+            DriverMetricsReporter driverMetrics = DriverMetricsReporter.fromProperties(appProps);
+            if (driverMetrics != null) {
+                store.setDriverMetrics(driverMetrics);
+            }
+            return store;
+        }
+        else if (CASSANDRA_BUCKETED.equalsIgnoreCase(storeName)) {
+            CassandraBucketedMetricStore store = new CassandraBucketedMetricStore(
+                    appProps.getApplicationProperty(ApplicationProperties.contactPointProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.keySpaceProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.tableProperty),
+                    new CassandraConnectionProfile(appProps),
+                    Long.parseLong(appProps.getApplicationProperty(
+                            ApplicationProperties.cassandraBucketSpanMsProperty, "86400000")),
+                    Integer.parseInt(appProps.getApplicationProperty(
+                            ApplicationProperties.cassandraTtlSecondsProperty, "0")));
+
+            store.setScanOptions(scanThreads, scanFetchSize, scanSplitsPerThread);
+            store.setFanOutConcurrency(fanOutConcurrency);
+            DriverMetricsReporter driverMetrics = DriverMetricsReporter.fromProperties(appProps);
+            if (driverMetrics != null) {
+                store.setDriverMetrics(driverMetrics);
+            }
+            return store;
+        }
+        else if (MONGODB.equalsIgnoreCase(storeName)) {
+            MongoDBMetricStore store = new MongoDBMetricStore(
+                    appProps.getApplicationProperty(ApplicationProperties.mongoDBUriProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.databaseProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.collectionProperty),
+                    DriverMetricsReporter.fromProperties(appProps));
+
+            store.setScanOptions(scanThreads, scanFetchSize, scanSplitsPerThread,
+                    appProps.getApplicationProperty(ApplicationProperties.mongoScanSplitFieldProperty,
+                            MongoScanner.SPLIT_ON_ID));
+            store.setFanOutOptions(appProps.getApplicationProperty(ApplicationProperties.mongoFanOutModeProperty,
+                    MongoDBMetricStore.FAN_OUT_IN), fanOutConcurrency);
+            return store;
+        }
+        else if (MONGODB_BUCKETED.equalsIgnoreCase(storeName)) {
+            return new MongoDBBucketedMetricStore(
+                    appProps.getApplicationProperty(ApplicationProperties.mongoDBUriProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.databaseProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.collectionProperty),
+                    Long.parseLong(appProps.getApplicationProperty(
+                            ApplicationProperties.mongoBucketSpanMsProperty, "3600000")),
+                    Integer.parseInt(appProps.getApplicationProperty(
+                            ApplicationProperties.mongoBucketMaxPointsProperty, "1000")),
+                    DriverMetricsReporter.fromProperties(appProps));
+        }
+        else if (MONGODB_ASYNC.equalsIgnoreCase(storeName)) {
+            int maxInFlight = 1;
+            for (int limit : ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.mongoAsyncMaxInFlightProperty, "1,4,16"))) {
+                maxInFlight = Math.max(maxInFlight, limit);
+            }
+
+            MongoDBAsyncMetricStore store = new MongoDBAsyncMetricStore(
+                    appProps.getApplicationProperty(ApplicationProperties.mongoDBUriProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.databaseProperty),
+                    appProps.getApplicationProperty(ApplicationProperties.collectionProperty),
+                    Integer.parseInt(appProps.getApplicationProperty(
+                            ApplicationProperties.mongoAsyncBatchSizeProperty, "1000")),
+                    Long.parseLong(appProps.getApplicationProperty(
+                            ApplicationProperties.mongoAsyncLingerMsProperty, "50")),
+                    maxInFlight,
+                    DriverMetricsReporter.fromProperties(appProps));
+
+            store.setScanBatchSize(scanFetchSize);
+            return store;
+        }
+        else if (MEMORY.equalsIgnoreCase(storeName)) {
+            return new InMemoryMetricStore();
+        }
+
+        throw new IllegalArgumentException("Unknown store: " + storeName);
+    }
+}
@@ -0,0 +1,166 @@
+package com.bmincey;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Memory-mapped read access to a trace written by MetricTraceWriter.  Records are read in place
+ * with absolute gets on the mapped buffers, so nothing is copied or allocated per record and any
+ * number of threads can read concurrently.  A mapping is limited to 2 GB, so larger traces are
+ * mapped as several segments of whole records.
+ */
+public class MetricTraceReader implements Closeable {
+
+    private static final int RECORDS_PER_SEGMENT = Integer.MAX_VALUE / MetricTraceWriter.RECORD_SIZE;
+
+    private final RandomAccessFile file;
+    private final long records;
+    private final int recordsPerSegment;
+    private final MappedByteBuffer[] segments;
+    private final String[] hosts;
+    private final String[] metrics;
+
+    /**
+     *
+     * @param traceFile
+     * @throws IOException
+     */
+    public MetricTraceReader(String traceFile) throws IOException {
+        this(traceFile, RECORDS_PER_SEGMENT);
+    }
+
+    /**
+     *
+     * @param traceFile
+     * @param recordsPerSegment records per mapping
+     * @throws IOException
+     */
+    MetricTraceReader(String traceFile, int recordsPerSegment) throws IOException {
+        this.file = new RandomAccessFile(traceFile, "r");
+        this.recordsPerSegment = recordsPerSegment;
+        FileChannel channel = this.file.getChannel();
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MetricTraceWriter.HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != MetricTraceWriter.MAGIC || header.getInt(4) != MetricTraceWriter.VERSION) {
+            this.file.close();
+            throw new IOException("Not a version " + MetricTraceWriter.VERSION + " metric trace: " + traceFile);
+        }
+        this.records = header.getLong(8);
+        long dictionaryOffset = header.getLong(16);
+
+        this.segments = new MappedByteBuffer[(int) ((this.records + recordsPerSegment - 1) / recordsPerSegment)];
+        for (int s = 0; s < this.segments.length; s++) {
+            long first = (long) s * recordsPerSegment;
+            long count = Math.min(recordsPerSegment, this.records - first);
+
+            this.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    MetricTraceWriter.HEADER_SIZE + first * MetricTraceWriter.RECORD_SIZE,
+                    count * MetricTraceWriter.RECORD_SIZE);
+            this.segments[s].order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        ByteBuffer dictionary = channel.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset,
+                channel.size() - dictionaryOffset).order(ByteOrder.LITTLE_ENDIAN);
+        this.hosts = readNames(dictionary);
+        this.metrics = readNames(dictionary);
+    }
+
+    /**
+     *
+     * @param dictionary positioned at a name count
+     * @return the names, dictionary positioned after them
+     */
+    private static String[] readNames(ByteBuffer dictionary) {
+        String[] names = new String[dictionary.getInt()];
+
+        for (int i = 0; i < names.length; i++) {
+            byte[] bytes = new byte[dictionary.getInt()];
+            dictionary.get(bytes);
+            names[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     *
+     * @param record
+     * @return the segment holding record
+     */
+    private MappedByteBuffer segment(long record) {
+        return this.segments[(int) (record / this.recordsPerSegment)];
+    }
+
+    /**
+     *
+     * @param record
+     * @return offset of record in its segment
+     */
+    private int offset(long record) {
+        return (int) (record % this.recordsPerSegment) * MetricTraceWriter.RECORD_SIZE;
+    }
+
+    /**
+     *
+     * @param record
+     * @return
+     */
+    public String host(long record) {
+        return this.hosts[this.segment(record).getInt(this.offset(record))];
+    }
+
+    /**
+     *
+     * @param record
+     * @return
+     */
+    public String metric(long record) {
+        return this.metrics[this.segment(record).getInt(this.offset(record) + 4)];
+    }
+
+    /**
+     *
+     * @param record
+     * @return epoch millis
+     */
+    public long time(long record) {
+        return this.segment(record).getLong(this.offset(record) + 8);
+    }
+
+    /**
+     *
+     * @param record
+     * @return
+     */
+    public double value(long record) {
+        return this.segment(record).getDouble(this.offset(record) + 16);
+    }
+
+    public int getHostCount() {
+        return hosts.length;
+    }
+
+    public int getMetricCount() {
+        return metrics.length;
+    }
+
+    /**
+     * Closes the file; the mappings stay valid until they are garbage collected.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        this.file.close();
+    }
+}
@@ -0,0 +1,159 @@
+package com.bmincey;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a binary metric trace.  The file is a fixed header, fixed-width records and a name
+ * dictionary at the end, all little-endian:
+ *
+ * <pre>
+ * header     int magic, int version, long record count, long dictionary offset
+ * record     int host id, int metric id, long epoch millis, double value
+ * dictionary int host count, host names, int metric count, metric names; each name is an int
+ *            byte length followed by UTF-8 bytes, ids are positions in these lists
+ * </pre>
+ *
+ * Keeping the dictionary at the end lets a trace be written in one pass; the header is filled
+ * in by close().  Not thread-safe.
+ */
+public class MetricTraceWriter implements Closeable {
+
+    public static final int MAGIC = 0x4D545243; // "MTRC"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+    public static final int RECORD_SIZE = 24;
+
+    private static final int BUFFER_RECORDS = 4096;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_RECORDS * RECORD_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+
+    private final Map<String, Integer> hostIds = new HashMap<String, Integer>();
+    private final List<String> hosts = new ArrayList<String>();
+    private final Map<String, Integer> metricIds = new HashMap<String, Integer>();
+    private final List<String> metrics = new ArrayList<String>();
+    private long records = 0;
+
+    /**
+     *
+     * @param traceFile created or truncated
+     * @throws IOException
+     */
+    public MetricTraceWriter(String traceFile) throws IOException {
+        this.file = new RandomAccessFile(traceFile, "rw");
+        this.file.setLength(0);
+        this.channel = this.file.getChannel();
+        this.channel.position(HEADER_SIZE);
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param time epoch millis
+     * @param value
+     * @throws IOException
+     */
+    public void append(String host, String metric, long time, double value) throws IOException {
+        if (this.buffer.remaining() < RECORD_SIZE) {
+            this.drain();
+        }
+
+        this.buffer.putInt(id(host, this.hostIds, this.hosts));
+        this.buffer.putInt(id(metric, this.metricIds, this.metrics));
+        this.buffer.putLong(time);
+        this.buffer.putDouble(value);
+        this.records++;
+    }
+
+    /**
+     *
+     * @param name
+     * @param ids
+     * @param names
+     * @return id of name, added to the dictionary if it is new
+     */
+    private static int id(String name, Map<String, Integer> ids, List<String> names) {
+        Integer id = ids.get(name);
+
+        if (id == null) {
+            id = names.size();
+            ids.put(name, id);
+            names.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Writes out the buffered records.
+     *
+     * @throws IOException
+     */
+    private void drain() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     *
+     * @param names
+     * @throws IOException
+     */
+    private void writeNames(List<String> names) throws IOException {
+        ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        count.putInt(names.size()).flip();
+        this.channel.write(count);
+
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer entry = ByteBuffer.allocate(4 + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+            entry.putInt(bytes.length).put(bytes).flip();
+            while (entry.hasRemaining()) {
+                this.channel.write(entry);
+            }
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * Writes the remaining records, the dictionary and the header.
+     *
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.drain();
+            long dictionaryOffset = this.channel.position();
+            this.writeNames(this.hosts);
+            this.writeNames(this.metrics);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putLong(this.records).putLong(dictionaryOffset).flip();
+            this.channel.position(0);
+            while (header.hasRemaining()) {
+                this.channel.write(header);
+            }
+        } finally {
+            this.file.close();
+        }
+    }
+}
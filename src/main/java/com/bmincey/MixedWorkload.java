@@ -0,0 +1,218 @@
+package com.bmincey;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a WorkloadSpec against any MetricStore: reader and writer threads start together and
+ * run for the spec's duration, so read latency is measured while the store is taking writes
+ * rather than after ingest has finished as in WorkloadDriver.  Writers append the current
+ * time to one series per operation; readers issue a range read ending now.
+ */
+public class MixedWorkload {
+
+    private final MetricStore store;
+    private final WorkloadSpec spec;
+    private final LatencyStats latencyStats;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private Warmup warmup = new Warmup(0, 0);
+    private long elapsedMillis;
+
+    /**
+     *
+     * @param store
+     * @param spec
+     */
+    public MixedWorkload(MetricStore store, WorkloadSpec spec) {
+        this.store = store;
+        this.spec = spec;
+        this.latencyStats = new LatencyStats(store.toString(), 0);
+    }
+
+    /**
+     *
+     * @param warmup untimed phase run on all threads before the measured run
+     */
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     *
+     */
+    public void run() {
+        System.out.println("Store: " + this.store + ", workload: " + this.spec);
+
+        this.store.createSchema();
+        if (this.warmup.isEnabled()) {
+            this.warmUp();
+        }
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.spec.getSeconds());
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (int w = 0; w < this.spec.getWriterThreads(); w++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    SampleDataGenerator generator = new SampleDataGenerator(spec.getHosts());
+                    while (System.nanoTime() - deadline < 0) {
+                        write(generator);
+                        writes.incrementAndGet();
+                    }
+                    return null;
+                }
+            });
+        }
+        for (int r = 0; r < this.spec.getReaderThreads(); r++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    while (System.nanoTime() - deadline < 0) {
+                        read();
+                        reads.incrementAndGet();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        System.out.println("Running mixed workload...");
+        long started = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(this.spec.getThreads());
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        this.store.flush();
+        this.elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        long total = this.writes.get() + this.reads.get();
+        System.out.println("Writes = " + this.writes.get() + ", writes/sec = " + this.getWritesPerSecond() +
+                ", reads = " + this.reads.get() + ", reads/sec = " + this.getReadsPerSecond() +
+                ", achieved read ratio = " + String.format("%.3f", total == 0 ? 0.0 : (double) this.reads.get() / total) +
+                ", rows per read = " + (this.reads.get() == 0 ? 0 : this.rowsRead.get() / this.reads.get()));
+        System.out.println("Storage: " + this.store.storageStats());
+        this.latencyStats.print(System.out);
+    }
+
+    /**
+     *
+     * @return writes per second of the last run
+     */
+    public long getWritesPerSecond() {
+        return SampleDataGenerator.rowsPerSecond(this.writes.get(), this.elapsedMillis);
+    }
+
+    /**
+     *
+     * @return reads per second of the last run
+     */
+    public long getReadsPerSecond() {
+        return SampleDataGenerator.rowsPerSecond(this.reads.get(), this.elapsedMillis);
+    }
+
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    /**
+     * Runs writes and reads on throwaway generators, then recreates the schema and clears the
+     * latency histograms.
+     */
+    private void warmUp() {
+        final ThreadLocal<SampleDataGenerator> generators = new ThreadLocal<SampleDataGenerator>() {
+            @Override
+            protected SampleDataGenerator initialValue() {
+                return new SampleDataGenerator(spec.getHosts());
+            }
+        };
+
+        this.warmup.run(this.spec.getThreads(), new Runnable() {
+            @Override
+            public void run() {
+                write(generators.get());
+                read();
+            }
+        });
+
+        this.store.createSchema();
+        this.latencyStats.reset();
+        this.rowsRead.set(0);
+    }
+
+    /**
+     *
+     * @param generator random walk of the calling writer
+     */
+    private void write(SampleDataGenerator generator) {
+        long series = this.spec.nextWriteSeries(ThreadLocalRandom.current());
+
+        long started = System.nanoTime();
+        this.store.write(this.spec.hostOf(series), this.spec.metricOf(series), System.currentTimeMillis(),
+                generator.nextValue());
+        this.latencyStats.record("insert", started);
+    }
+
+    /**
+     *
+     */
+    private void read() {
+        long series = this.spec.nextReadSeries(ThreadLocalRandom.current());
+        long now = System.currentTimeMillis();
+
+        long started = System.nanoTime();
+        int rows = this.store.rangeQuery(this.spec.hostOf(series), this.spec.metricOf(series),
+                now - this.spec.getRangeMillis(), now + 1);
+        this.latencyStats.record("range", started);
+        this.rowsRead.addAndGet(rows);
+    }
+
+    /**
+     *
+     * @param args optional workload spec file overriding application.properties
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+            if (args.length > 0) {
+                appProps.load(args[0]);
+            }
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+
+            MetricStore store = MetricStoreFactory.create(storeName, appProps);
+            try {
+                MixedWorkload workload = new MixedWorkload(store, WorkloadSpec.fromProperties(appProps));
+                workload.setWarmup(Warmup.fromProperties(appProps));
+                workload.run();
+            } finally {
+                store.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.bmincey;
+
+import com.mongodb.async.SingleResultCallback;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pipelined MongoDB writer built on the async driver: documents are collected into batches and
+ * each batch is sent with a non-blocking insertMany.  The number of batches in flight is capped
+ * with semaphore permits, so a producer that outruns the server blocks in insert instead of
+ * queueing unbounded work, and no thread waits on a round-trip.  A batch is sent once it
+ * reaches batchSize documents or once its oldest document is lingerMillis old.
+ */
+public class MongoAsyncWriter<TDocument> {
+
+    private final MongoCollection<TDocument> collection;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxInFlight;
+    private final Semaphore permits;
+    private final InsertManyOptions insertManyOptions;
+    private final ScheduledExecutorService lingerTimer;
+    private final LatencyStats latencyStats;
+    private final String operation;
+
+    private List<TDocument> buffer;
+    private long bufferStarted;
+
+    private final AtomicLong documentsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Throwable lastError;
+
+    /**
+     * @param collection
+     * @param batchSize    documents per insertMany
+     * @param lingerMillis maximum time a document waits in the buffer, 0 disables the timer
+     * @param maxInFlight  maximum number of insertMany requests outstanding at any time
+     * @param ordered      whether each insertMany is ordered
+     * @param latencyStats receives the latency of every insertMany, may be null, under an operation
+     *                     name carrying batchSize and maxInFlight
+     */
+    public MongoAsyncWriter(MongoCollection<TDocument> collection, int batchSize, long lingerMillis, int maxInFlight,
+                            boolean ordered, LatencyStats latencyStats) {
+        this.collection = collection;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = lingerMillis;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+        this.insertManyOptions = new InsertManyOptions().ordered(ordered);
+        this.buffer = new ArrayList<TDocument>(this.batchSize);
+        this.latencyStats = latencyStats;
+        this.operation = "insertMany[batch=" + this.batchSize + ",inFlight=" + maxInFlight + "]";
+
+        if (lingerMillis > 0) {
+            this.lingerTimer = Executors.newSingleThreadScheduledExecutor();
+            this.lingerTimer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushIfLingering();
+                }
+            }, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.lingerTimer = null;
+        }
+    }
+
+    /**
+     * Blocks while maxInFlight batches are outstanding and this document fills the buffer.
+     *
+     * @param document
+     */
+    public void insert(TDocument document) {
+        List<TDocument> full = null;
+
+        synchronized (this) {
+            if (this.buffer.isEmpty()) {
+                this.bufferStarted = System.currentTimeMillis();
+            }
+            this.buffer.add(document);
+
+            if (this.buffer.size() >= this.batchSize) {
+                full = this.takeBatch();
+            }
+        }
+
+        if (full != null) {
+            this.send(full);
+        }
+    }
+
+    /**
+     * Sends the partially filled buffer and blocks until every outstanding batch completes.
+     */
+    public void flush() {
+        List<TDocument> remaining = null;
+
+        synchronized (this) {
+            if (!this.buffer.isEmpty()) {
+                remaining = this.takeBatch();
+            }
+        }
+
+        if (remaining != null) {
+            this.send(remaining);
+        }
+
+        this.permits.acquireUninterruptibly(this.maxInFlight);
+        this.permits.release(this.maxInFlight);
+    }
+
+    /**
+     * Stops the linger timer, waiting for a running linger flush to send its batch, then flushes.
+     */
+    public void close() {
+        if (this.lingerTimer != null) {
+            this.lingerTimer.shutdownNow();
+            try {
+                this.lingerTimer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.flush();
+    }
+
+    /**
+     *
+     */
+    private void flushIfLingering() {
+        List<TDocument> lingering = null;
+
+        synchronized (this) {
+            if (!this.buffer.isEmpty() &&
+                    System.currentTimeMillis() - this.bufferStarted >= this.lingerMillis) {
+                lingering = this.takeBatch();
+            }
+        }
+
+        if (lingering != null) {
+            this.send(lingering);
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on this writer.  Takes the batch's in-flight permit
+     * before swapping, so flush() also waits for a batch that has not been sent yet.
+     *
+     * @return the current buffer, replaced with an empty one
+     */
+    private List<TDocument> takeBatch() {
+        this.permits.acquireUninterruptibly();
+
+        List<TDocument> full = this.buffer;
+        this.buffer = new ArrayList<TDocument>(this.batchSize);
+        return full;
+    }
+
+    /**
+     * Sends a batch from takeBatch(); its permit is released when insertMany completes.
+     *
+     * @param batch
+     */
+    private void send(final List<TDocument> batch) {
+        final long started = System.nanoTime();
+        try {
+            this.collection.insertMany(batch, this.insertManyOptions, new SingleResultCallback<Void>() {
+                @Override
+                public void onResult(Void result, Throwable t) {
+                    if (t == null) {
+                        if (latencyStats != null) {
+                            latencyStats.record(operation, started);
+                        }
+                        documentsWritten.addAndGet(batch.size());
+                        batchesWritten.incrementAndGet();
+                    } else {
+                        errors.incrementAndGet();
+                        lastError = t;
+                    }
+                    permits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            this.permits.release();
+            this.errors.incrementAndGet();
+            this.lastError = e;
+        }
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public long getDocumentsWritten() {
+        return documentsWritten.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Throwable getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,227 @@
+package com.bmincey;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.WriteModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects documents across iterations and sends them as bulkWrite batches.  A batch is sent once it
+ * reaches batchSize documents or once the oldest buffered document is lingerMillis old, whichever
+ * comes first.  Batches are spread over a fixed pool of writer threads; at most two batches per
+ * writer are queued before insert blocks.
+ */
+public class MongoBulkWriter<TDocument> {
+
+    private final MongoCollection<TDocument> collection;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final BulkWriteOptions bulkWriteOptions;
+
+    private final ExecutorService writers;
+    private final ScheduledExecutorService lingerTimer;
+    private final int maxPendingBatches;
+    private final Semaphore pendingBatches;
+    private final LatencyStats latencyStats;
+    private final String operation;
+
+    private List<WriteModel<TDocument>> buffer;
+    private long bufferStarted;
+
+    private final AtomicLong documentsWritten = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile Throwable lastError;
+
+    /**
+     * @param collection
+     * @param batchSize     documents per bulkWrite
+     * @param lingerMillis  maximum time a document waits in the buffer, 0 disables the timer
+     * @param ordered       whether each bulkWrite is ordered
+     * @param writerThreads number of threads issuing bulkWrite calls
+     */
+    public MongoBulkWriter(MongoCollection<TDocument> collection, int batchSize, long lingerMillis,
+                           boolean ordered, int writerThreads) {
+        this(collection, batchSize, lingerMillis, ordered, writerThreads, null);
+    }
+
+    /**
+     * @param collection
+     * @param batchSize     documents per bulkWrite
+     * @param lingerMillis  maximum time a document waits in the buffer, 0 disables the timer
+     * @param ordered       whether each bulkWrite is ordered
+     * @param writerThreads number of threads issuing bulkWrite calls
+     * @param latencyStats  receives the latency of every bulkWrite, may be null, under an operation
+     *                      name carrying batchSize and writerThreads
+     */
+    public MongoBulkWriter(MongoCollection<TDocument> collection, int batchSize, long lingerMillis,
+                           boolean ordered, int writerThreads, LatencyStats latencyStats) {
+        this.collection = collection;
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = lingerMillis;
+        this.bulkWriteOptions = new BulkWriteOptions().ordered(ordered);
+
+        this.writers = Executors.newFixedThreadPool(writerThreads);
+        this.maxPendingBatches = writerThreads * 2;
+        this.pendingBatches = new Semaphore(this.maxPendingBatches);
+        this.buffer = new ArrayList<WriteModel<TDocument>>(this.batchSize);
+        this.latencyStats = latencyStats;
+        this.operation = "bulkWrite[batch=" + this.batchSize + ",threads=" + writerThreads + "]";
+
+        if (lingerMillis > 0) {
+            this.lingerTimer = Executors.newSingleThreadScheduledExecutor();
+            this.lingerTimer.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushIfLingering();
+                }
+            }, lingerMillis, lingerMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.lingerTimer = null;
+        }
+    }
+
+    /**
+     *
+     * @param document
+     */
+    public void insert(TDocument document) {
+        List<WriteModel<TDocument>> full = null;
+
+        synchronized (this) {
+            if (this.buffer.isEmpty()) {
+                this.bufferStarted = System.currentTimeMillis();
+            }
+            this.buffer.add(new InsertOneModel<TDocument>(document));
+
+            if (this.buffer.size() >= this.batchSize) {
+                full = this.takeBatch();
+            }
+        }
+
+        if (full != null) {
+            this.submit(full);
+        }
+    }
+
+    /**
+     * Sends the partially filled buffer and blocks until every submitted batch completes.
+     */
+    public void flush() {
+        List<WriteModel<TDocument>> remaining = null;
+
+        synchronized (this) {
+            if (!this.buffer.isEmpty()) {
+                remaining = this.takeBatch();
+            }
+        }
+
+        if (remaining != null) {
+            this.submit(remaining);
+        }
+
+        this.pendingBatches.acquireUninterruptibly(this.maxPendingBatches);
+        this.pendingBatches.release(this.maxPendingBatches);
+    }
+
+    /**
+     * Flushes and stops the writer and linger threads.  Waits for a running linger flush to hand
+     * off its batch first, so nothing is submitted after the writers shut down.
+     */
+    public void close() {
+        if (this.lingerTimer != null) {
+            this.lingerTimer.shutdownNow();
+            try {
+                this.lingerTimer.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        this.flush();
+        this.writers.shutdown();
+    }
+
+    /**
+     *
+     */
+    private void flushIfLingering() {
+        List<WriteModel<TDocument>> lingering = null;
+
+        synchronized (this) {
+            if (!this.buffer.isEmpty() &&
+                    System.currentTimeMillis() - this.bufferStarted >= this.lingerMillis) {
+                lingering = this.takeBatch();
+            }
+        }
+
+        if (lingering != null) {
+            this.submit(lingering);
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on this writer.  Reserves the batch's pending permit
+     * before swapping, so a concurrent flush() waits for a batch that is not yet submitted.
+     *
+     * @return the current buffer, replaced with an empty one
+     */
+    private List<WriteModel<TDocument>> takeBatch() {
+        this.pendingBatches.acquireUninterruptibly();
+
+        List<WriteModel<TDocument>> full = this.buffer;
+        this.buffer = new ArrayList<WriteModel<TDocument>>(this.batchSize);
+        return full;
+    }
+
+    /**
+     * Hands a batch from takeBatch() to the writer threads, which release its permit.
+     *
+     * @param batch
+     */
+    private void submit(final List<WriteModel<TDocument>> batch) {
+        this.writers.execute(new Runnable() {
+            @Override
+            public void run() {
+                long started = System.nanoTime();
+                try {
+                    collection.bulkWrite(batch, bulkWriteOptions);
+                    if (latencyStats != null) {
+                        latencyStats.record(operation, started);
+                    }
+                    documentsWritten.addAndGet(batch.size());
+                    batchesWritten.incrementAndGet();
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                    lastError = e;
+                } finally {
+                    pendingBatches.release();
+                }
+            }
+        });
+    }
+
+    public long getDocumentsWritten() {
+        return documentsWritten.get();
+    }
+
+    public long getBatchesWritten() {
+        return batchesWritten.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    public Throwable getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,288 @@
+package com.bmincey;
+
+import com.mongodb.Block;
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.async.client.MongoClient;
+import com.mongodb.async.client.MongoClients;
+import com.mongodb.async.client.MongoCollection;
+import com.mongodb.async.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Sorts.descending;
+
+/**
+ * MongoDB implementation of MetricStore on the async driver, with the same documents and index
+ * as MongoDBMetricStore.  Writes go through a MongoAsyncWriter, so write() returns once the
+ * point is buffered and callers only block when maxInFlight batches are outstanding; flush()
+ * waits for everything written so far.  Queries block on their callback, and scan() reads one
+ * cursor rather than splitting the collection.
+ */
+public class MongoDBAsyncMetricStore implements MetricStore {
+
+    private final String COLLECTION;
+
+    private final MongoClient mongoClient;
+    private final DriverMetricsReporter driverMetrics;
+    private final MongoDatabase mongoDatabase;
+    private MongoCollection<Document> mongoCollection;
+
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxInFlight;
+    private MongoAsyncWriter<Document> writer;
+
+    private int scanBatchSize = 5000;
+
+    /**
+     *
+     * @param mongoDBUri
+     * @param database
+     * @param collection
+     * @param batchSize documents per insertMany
+     * @param lingerMillis maximum time a written point waits for its batch to fill
+     * @param maxInFlight maximum number of insertMany requests outstanding
+     * @param driverMetrics reporter for this store's driver metrics, closed with the store, or null
+     */
+    public MongoDBAsyncMetricStore(String mongoDBUri, String database, String collection, int batchSize,
+                                   long lingerMillis, int maxInFlight, DriverMetricsReporter driverMetrics) {
+        this.COLLECTION = collection;
+        this.batchSize = batchSize;
+        this.lingerMillis = lingerMillis;
+        this.maxInFlight = maxInFlight;
+        this.driverMetrics = driverMetrics;
+
+        MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(mongoDBUri));
+        if (driverMetrics != null) {
+            MongoDriverMetrics metrics = new MongoDriverMetrics(this.getName());
+            metrics.addTo(settings);
+            driverMetrics.register(metrics);
+        }
+        this.mongoClient = MongoClients.create(settings.build());
+        this.mongoDatabase = this.mongoClient.getDatabase(database);
+        this.mongoCollection = this.mongoDatabase.getCollection(this.COLLECTION);
+    }
+
+    @Override
+    public String getName() {
+        return "mongodb-async";
+    }
+
+    @Override
+    public String toString() {
+        return this.getName() + " (batch size = " + this.batchSize + ", linger = " + this.lingerMillis +
+                " ms, max in flight = " + this.maxInFlight + ")";
+    }
+
+    /**
+     *
+     * @param scanBatchSize cursor batch size of scan()
+     */
+    public void setScanBatchSize(int scanBatchSize) {
+        this.scanBatchSize = scanBatchSize;
+    }
+
+    @Override
+    public void createSchema() {
+        if (this.writer != null) {
+            this.writer.close();
+        }
+
+        BlockingCallback<Void> dropped = new BlockingCallback<Void>();
+        this.mongoCollection.drop(dropped);
+        dropped.get();
+
+        this.mongoCollection = this.mongoDatabase.getCollection(this.COLLECTION);
+        BlockingCallback<String> indexed = new BlockingCallback<String>();
+        this.mongoCollection.createIndex(Indexes.ascending("host", "metric", "time", "_id"), indexed);
+        indexed.get();
+
+        this.writer = new MongoAsyncWriter<Document>(this.mongoCollection, this.batchSize, this.lingerMillis,
+                this.maxInFlight, false, null);
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        this.writer.insert(new Document("host", host)
+                .append("metric", metric)
+                .append("time", new Date(time))
+                .append("value", value));
+    }
+
+    @Override
+    public void flush() {
+        this.writer.flush();
+
+        if (this.writer.getLastError() != null) {
+            System.err.println("Async insert failures = " + this.writer.getErrors() + ", last error: " +
+                    this.writer.getLastError());
+        }
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        BlockingCallback<Document> callback = new BlockingCallback<Document>();
+        this.mongoCollection.find(and(eq("host", host), eq("metric", metric), eq("time", new Date(time))))
+                .projection(fields(include("value"), excludeId()))
+                .first(callback);
+
+        Document document = callback.get();
+        return document == null ? null : document.getDouble("value");
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        final AtomicLong count = new AtomicLong();
+        BlockingCallback<Void> callback = new BlockingCallback<Void>();
+
+        this.mongoCollection.find(and(eq("host", host), eq("metric", metric),
+                gte("time", new Date(from)), lt("time", new Date(to))))
+                .projection(fields(include("time", "value"), excludeId()))
+                .forEach(new Block<Document>() {
+                    @Override
+                    public void apply(Document document) {
+                        count.incrementAndGet();
+                    }
+                }, callback);
+
+        callback.get();
+        return (int) count.get();
+    }
+
+    /**
+     * Same query as MongoDBMetricStore.readRange, decoded by SeriesPageCodec on the driver's
+     * callback thread.
+     *
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @param limit
+     * @param pagingState
+     * @return
+     */
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        SeriesPage page = new SeriesPage(from, limit, pagingState);
+        BlockingCallback<Void> callback = new BlockingCallback<Void>();
+
+        this.mongoCollection.withDocumentClass(SeriesPage.class)
+                .withCodecRegistry(SeriesPageCodec.registryFor(page))
+                .find(MongoDBMetricStore.pageFilter(host, metric, page, to))
+                .projection(include("time", "value"))
+                .sort(ascending("time", "_id"))
+                .limit(limit + 1)
+                .batchSize(limit + 1)
+                .forEach(new Block<SeriesPage>() {
+                    @Override
+                    public void apply(SeriesPage decoded) {
+                        // the codec has already added the point
+                    }
+                }, callback);
+
+        callback.get();
+        return page;
+    }
+
+    /**
+     * One query with $in on host and metric; the documents are counted on the driver's callback
+     * thread.
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        final Map<SeriesId, int[]> counters = SeriesId.counters(series);
+        BlockingCallback<Void> callback = new BlockingCallback<Void>();
+
+        this.mongoCollection.find(and(MongoDBMetricStore.seriesFilter(series),
+                gte("time", new Date(from)), lt("time", new Date(to))))
+                .projection(fields(include("host", "metric"), excludeId()))
+                .forEach(new Block<Document>() {
+                    @Override
+                    public void apply(Document document) {
+                        int[] counter = counters.get(new SeriesId(document.getString("host"),
+                                document.getString("metric")));
+                        if (counter != null) {
+                            counter[0]++;
+                        }
+                    }
+                }, callback);
+
+        callback.get();
+        return SeriesId.counts(series, counters);
+    }
+
+    @Override
+    public Double maxQuery(String host, String metric) {
+        BlockingCallback<Document> callback = new BlockingCallback<Document>();
+        this.mongoCollection.find(and(eq("host", host), eq("metric", metric)))
+                .projection(fields(include("value"), excludeId()))
+                .sort(descending("value"))
+                .limit(1)
+                .first(callback);
+
+        Document document = callback.get();
+        return document == null ? null : document.getDouble("value");
+    }
+
+    @Override
+    public long scan() {
+        final AtomicLong count = new AtomicLong();
+        BlockingCallback<Void> callback = new BlockingCallback<Void>();
+
+        this.mongoCollection.find().batchSize(this.scanBatchSize).forEach(new Block<Document>() {
+            @Override
+            public void apply(Document document) {
+                count.incrementAndGet();
+            }
+        }, callback);
+
+        callback.get();
+        return count.get();
+    }
+
+    /**
+     *
+     * @return the collection of this store, for writers other than the store's own
+     */
+    MongoCollection<Document> getCollection() {
+        return this.mongoCollection;
+    }
+
+    @Override
+    public String storageStats() {
+        BlockingCallback<Document> callback = new BlockingCallback<Document>();
+        this.mongoDatabase.runCommand(new Document("collStats", this.COLLECTION), callback);
+        return MongoDBMetricStore.collectionStats(callback.get());
+    }
+
+    @Override
+    public void close() {
+        if (this.writer != null) {
+            this.writer.close();
+        }
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
+        this.mongoClient.close();
+    }
+}
@@ -0,0 +1,405 @@
+package com.bmincey;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOptions;
+import org.bson.BsonArray;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Projections.elemMatch;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Sorts.descending;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.inc;
+import static com.mongodb.client.model.Updates.max;
+import static com.mongodb.client.model.Updates.min;
+import static com.mongodb.client.model.Updates.push;
+
+/**
+ * MongoDB MetricStore using a time-bucketed layout: one document per (host, metric, time bucket)
+ * holding up to bucketMaxPoints points in a points array.
+ *
+ * <pre>
+ * { host, metric, bucket: start of bucket, count, min, max, points: [ { t, v }, ... ] }
+ * </pre>
+ *
+ * Points are appended with a $push upsert that only matches buckets below the size cap, so a
+ * full bucket is continued in a new document for the same bucket start.  The running min and
+ * max are kept on each bucket, which turns the max query into an index-ordered read of one
+ * bucket per series instead of a sort over every point.  Uses its own collection, named after
+ * the configured collection with a _buckets suffix, so both layouts can be compared side by side.
+ */
+public class MongoDBBucketedMetricStore implements MetricStore {
+
+    private final String COLLECTION;
+    private final long bucketSpanMillis;
+    private final int bucketMaxPoints;
+
+    private final MongoClient mongoClient;
+    private final DriverMetricsReporter driverMetrics;
+    private final MongoDatabase mongoDatabase;
+    private MongoCollection<Document> mongoCollection;
+    private WriteConcern writeConcern;
+    private ReadPreference readPreference;
+
+    private final UpdateOptions upsert = new UpdateOptions().upsert(true);
+
+    /**
+     *
+     * @param mongoDBUri
+     * @param database
+     * @param collection base collection name, _buckets is appended
+     * @param bucketSpanMillis time covered by one bucket
+     * @param bucketMaxPoints maximum points per bucket document
+     */
+    public MongoDBBucketedMetricStore(String mongoDBUri, String database, String collection,
+                                      long bucketSpanMillis, int bucketMaxPoints) {
+        this(mongoDBUri, database, collection, bucketSpanMillis, bucketMaxPoints, null);
+    }
+
+    /**
+     *
+     * @param mongoDBUri
+     * @param database
+     * @param collection base collection name, _buckets is appended
+     * @param bucketSpanMillis time covered by one bucket
+     * @param bucketMaxPoints maximum points per bucket document
+     * @param driverMetrics reporter for this store's driver metrics, closed with the store, or null
+     */
+    public MongoDBBucketedMetricStore(String mongoDBUri, String database, String collection,
+                                      long bucketSpanMillis, int bucketMaxPoints,
+                                      DriverMetricsReporter driverMetrics) {
+        this.COLLECTION = collection + "_buckets";
+        this.bucketSpanMillis = bucketSpanMillis;
+        this.bucketMaxPoints = bucketMaxPoints;
+        this.driverMetrics = driverMetrics;
+
+        MongoClientOptions.Builder options = MongoClientOptions.builder();
+        if (driverMetrics != null) {
+            MongoDriverMetrics metrics = new MongoDriverMetrics(this.getName());
+            metrics.addTo(options);
+            driverMetrics.register(metrics);
+        }
+        this.mongoClient = new MongoClient(new MongoClientURI(mongoDBUri, options));
+        this.mongoDatabase = this.mongoClient.getDatabase(database);
+        this.mongoCollection = this.mongoDatabase.getCollection(this.COLLECTION);
+    }
+
+    @Override
+    public String getName() {
+        return "mongodb-bucketed";
+    }
+
+    @Override
+    public String toString() {
+        return this.getName() + " (bucket span = " + this.bucketSpanMillis + " ms, max points = " +
+                this.bucketMaxPoints + MongoDBMetricStore.concernsString(this.writeConcern, this.readPreference) + ")";
+    }
+
+    /**
+     * Write concern and read preference of this store's collection; null keeps the client default.
+     *
+     * @param writeConcern
+     * @param readPreference
+     */
+    public void setConcerns(WriteConcern writeConcern, ReadPreference readPreference) {
+        this.writeConcern = writeConcern;
+        this.readPreference = readPreference;
+        this.mongoCollection = this.withConcerns(this.mongoDatabase.getCollection(this.COLLECTION));
+    }
+
+    /**
+     *
+     * @param collection
+     * @return collection with this store's write concern and read preference
+     */
+    private MongoCollection<Document> withConcerns(MongoCollection<Document> collection) {
+        if (this.writeConcern != null) {
+            collection = collection.withWriteConcern(this.writeConcern);
+        }
+        if (this.readPreference != null) {
+            collection = collection.withReadPreference(this.readPreference);
+        }
+        return collection;
+    }
+
+    @Override
+    public void createSchema() {
+        this.mongoCollection.drop();
+        this.mongoCollection = this.withConcerns(this.mongoDatabase.getCollection(this.COLLECTION));
+        this.mongoCollection.createIndex(Indexes.ascending("host", "metric", "bucket"));
+        this.mongoCollection.createIndex(Indexes.compoundIndex(Indexes.ascending("host", "metric"),
+                Indexes.descending("max")));
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        Date bucket = new Date(this.bucketOf(time));
+
+        this.mongoCollection.updateOne(
+                and(eq("host", host), eq("metric", metric), eq("bucket", bucket), lt("count", this.bucketMaxPoints)),
+                combine(push("points", new Document("t", new Date(time)).append("v", value)),
+                        inc("count", 1),
+                        min("min", value),
+                        max("max", value)),
+                this.upsert);
+    }
+
+    @Override
+    public void flush() {
+        // writes are synchronous
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        Date at = new Date(time);
+        Document bucket = this.mongoCollection.find(and(eq("host", host), eq("metric", metric),
+                eq("bucket", new Date(this.bucketOf(time))), eq("points.t", at)))
+                .projection(fields(elemMatch("points", eq("t", at)), excludeId()))
+                .first();
+
+        if (bucket == null) {
+            return null;
+        }
+
+        List<?> points = (List<?>) bucket.get("points");
+        return ((Document) points.get(0)).getDouble("v");
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        Iterable<RawBsonDocument> buckets = this.mongoCollection.withDocumentClass(RawBsonDocument.class)
+                .find(and(eq("host", host), eq("metric", metric),
+                        gte("bucket", new Date(this.bucketOf(from))), lt("bucket", new Date(to))))
+                .projection(fields(include("points"), excludeId()));
+
+        int count = 0;
+        for (RawBsonDocument bucket : buckets) {
+            for (BsonValue point : bucket.getArray("points")) {
+                long time = point.asDocument().getDateTime("t").getValue();
+                if (time >= from && time < to) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the buckets overlapping the range in bucket order.  Points inside a bucket are kept
+     * in arrival order, so the in-range points of all documents of a bucket are sorted by time
+     * before they are added to the page.
+     *
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @param limit
+     * @param pagingState
+     * @return
+     */
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        SeriesPage page = new SeriesPage(from, limit, pagingState);
+        long start = page.getStartTime();
+        int skip = page.getSkip();
+        BucketPoints points = new BucketPoints();
+
+        MongoCursor<RawBsonDocument> buckets = this.mongoCollection.withDocumentClass(RawBsonDocument.class)
+                .find(and(eq("host", host), eq("metric", metric),
+                        gte("bucket", new Date(this.bucketOf(start))), lt("bucket", new Date(to))))
+                .projection(fields(include("bucket", "points"), excludeId()))
+                .sort(ascending("bucket"))
+                .iterator();
+        try {
+            long current = Long.MIN_VALUE;
+
+            while (buckets.hasNext() && !page.isFull()) {
+                RawBsonDocument bucket = buckets.next();
+                long bucketStart = bucket.getDateTime("bucket").getValue();
+
+                if (bucketStart != current) {
+                    skip = points.drainTo(page, skip);
+                    current = bucketStart;
+                }
+                for (BsonValue point : bucket.getArray("points")) {
+                    long time = point.asDocument().getDateTime("t").getValue();
+                    if (time >= start && time < to) {
+                        points.add(time, point.asDocument().getDouble("v").getValue());
+                    }
+                }
+            }
+            points.drainTo(page, skip);
+        } finally {
+            buckets.close();
+        }
+        return page;
+    }
+
+    /**
+     * The in-range points of one bucket, collected from its documents.
+     */
+    private static class BucketPoints {
+
+        private long[] times = new long[64];
+        private double[] values = new double[64];
+        private int size;
+
+        /**
+         *
+         * @param time
+         * @param value
+         */
+        void add(long time, double value) {
+            if (this.size == this.times.length) {
+                this.times = Arrays.copyOf(this.times, this.size * 2);
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.times[this.size] = time;
+            this.values[this.size] = value;
+            this.size++;
+        }
+
+        /**
+         * Sorts the points by time, keeping the arrival order of equal times, skips the first
+         * skip of them, offers the rest to page and empties the buffer.
+         *
+         * @param page
+         * @param skip
+         * @return points still to skip
+         */
+        int drainTo(SeriesPage page, int skip) {
+            // insertion sort: points mostly arrive in time order
+            for (int i = 1; i < this.size; i++) {
+                long time = this.times[i];
+                double value = this.values[i];
+                int j = i - 1;
+
+                while (j >= 0 && this.times[j] > time) {
+                    this.times[j + 1] = this.times[j];
+                    this.values[j + 1] = this.values[j];
+                    j--;
+                }
+                this.times[j + 1] = time;
+                this.values[j + 1] = value;
+            }
+
+            for (int i = 0; i < this.size; i++) {
+                if (skip > 0) {
+                    skip--;
+                } else if (!page.offer(this.times[i], this.values[i])) {
+                    break;
+                }
+            }
+            this.size = 0;
+            return skip;
+        }
+    }
+
+    /**
+     * One query with $in on host and metric over the buckets overlapping the range.
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return
+     */
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        Map<SeriesId, int[]> counters = SeriesId.counters(series);
+        Iterable<RawBsonDocument> buckets = this.mongoCollection.withDocumentClass(RawBsonDocument.class)
+                .find(and(MongoDBMetricStore.seriesFilter(series),
+                        gte("bucket", new Date(this.bucketOf(from))), lt("bucket", new Date(to))))
+                .projection(fields(include("host", "metric", "points"), excludeId()));
+
+        for (RawBsonDocument bucket : buckets) {
+            int[] counter = counters.get(new SeriesId(bucket.getString("host").getValue(),
+                    bucket.getString("metric").getValue()));
+            if (counter == null) {
+                continue;
+            }
+            for (BsonValue point : bucket.getArray("points")) {
+                long time = point.asDocument().getDateTime("t").getValue();
+                if (time >= from && time < to) {
+                    counter[0]++;
+                }
+            }
+        }
+        return SeriesId.counts(series, counters);
+    }
+
+    @Override
+    public Double maxQuery(String host, String metric) {
+        Document bucket = this.mongoCollection.find(and(eq("host", host), eq("metric", metric)))
+                .projection(fields(include("max"), excludeId()))
+                .sort(descending("max"))
+                .limit(1)
+                .first();
+        return bucket == null ? null : bucket.getDouble("max");
+    }
+
+    @Override
+    public long scan() {
+        Iterable<RawBsonDocument> buckets = this.mongoCollection.withDocumentClass(RawBsonDocument.class)
+                .find()
+                .projection(fields(include("host", "metric", "points"), excludeId()));
+
+        long count = 0;
+        for (RawBsonDocument bucket : buckets) {
+            BsonArray points = bucket.getArray("points");
+            count += points.size();
+        }
+        return count;
+    }
+
+    @Override
+    public String storageStats() {
+        return MongoDBMetricStore.collectionStats(this.mongoDatabase, this.COLLECTION);
+    }
+
+    /**
+     *
+     * @param time
+     * @return start of the bucket containing time
+     */
+    long bucketOf(long time) {
+        return time - Math.floorMod(time, this.bucketSpanMillis);
+    }
+
+    /**
+     *
+     * @return the database of this store, shared with its rollup sink
+     */
+    MongoDatabase getDatabase() {
+        return this.mongoDatabase;
+    }
+
+    @Override
+    public void close() {
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
+        this.mongoClient.close();
+    }
+}
@@ -1,7 +1,11 @@
 package com.bmincey;
 
+import com.mongodb.ConnectionString;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.MongoClientURI;
+import com.mongodb.async.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.BulkWriteOptions;
@@ -9,8 +13,11 @@ import com.mongodb.client.model.InsertOneModel;
 import com.mongodb.client.model.WriteModel;
 import org.apache.commons.lang3.time.StopWatch;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,8 +38,35 @@ public class MongoDBExample {
 
     private boolean useBulkInsert;
 
+    private boolean bulkIngest = false;
+    private int[] bulkBatchSize = {100, 1000, 10000};
+    private long bulkLingerMs = 50;
+    private boolean bulkOrdered = false;
+    private int bulkWriterThreads = 4;
+
+    private boolean asyncIngest = false;
+    private int[] asyncMaxInFlight = {1, 4, 16};
+    private int asyncBatchSize = 1000;
+    private long asyncLingerMs = 50;
+
+    private boolean pointCodec = false;
+
+    private boolean parallelScan = false;
+    private int[] scanThreads = {1, 2, 4, 8};
+    private int scanFetchSize = 5000;
+    private int scanSplitsPerThread = 4;
+    private int seriesPageSize = 5000;
+    private String scanSplitField = MongoScanner.SPLIT_ON_ID;
+
+    private Warmup warmup = new Warmup(0, 0);
+    private DriverMetricsReporter driverMetrics;
+
     private MongoDatabase mongoDatabase = null;
     private MongoCollection<Document> mongoCollection = null;
+    private LatencyStats latencyStats = new LatencyStats("mongodb", 0);
+    // one bulkWrite per iteration with its three documents, apart from MongoBulkWriter's batches
+    private static final String ITERATION_BULK_WRITE = "bulkWrite[batch=3]";
+    private ResourceProfiler profiler = new ResourceProfiler("mongodb");
 
     /**
      *
@@ -49,6 +83,43 @@ public class MongoDBExample {
             this.COLLECTION = appProps.getApplicationProperty(ApplicationProperties.collectionProperty);
             this.useBulkInsert =
                     Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.useBulkInsertProperty));
+            this.warmup = Warmup.fromProperties(appProps);
+            this.driverMetrics = DriverMetricsReporter.fromProperties(appProps);
+
+            this.bulkIngest =
+                    Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.bulkIngestProperty));
+            this.bulkBatchSize = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.bulkBatchSizeProperty, "100,1000,10000"));
+            this.bulkLingerMs = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.bulkLingerMsProperty, "50"));
+            this.bulkOrdered = Boolean.parseBoolean(appProps.getApplicationProperty(
+                    ApplicationProperties.bulkOrderedProperty, "false"));
+            this.bulkWriterThreads = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.bulkWriterThreadsProperty, "4"));
+
+            this.asyncIngest = Boolean.parseBoolean(appProps.getApplicationProperty(
+                    ApplicationProperties.mongoAsyncIngestProperty, "false"));
+            this.asyncMaxInFlight = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.mongoAsyncMaxInFlightProperty, "1,4,16"));
+            this.asyncBatchSize = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.mongoAsyncBatchSizeProperty, "1000"));
+            this.asyncLingerMs = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.mongoAsyncLingerMsProperty, "50"));
+            this.pointCodec = Boolean.parseBoolean(appProps.getApplicationProperty(
+                    ApplicationProperties.mongoPointCodecProperty, "false"));
+
+            this.parallelScan =
+                    Boolean.parseBoolean(appProps.getApplicationProperty(ApplicationProperties.parallelScanProperty));
+            this.scanThreads = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.scanThreadsProperty, "1,2,4,8"));
+            this.scanFetchSize = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.scanFetchSizeProperty, "5000"));
+            this.scanSplitsPerThread = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.scanSplitsPerThreadProperty, "4"));
+            this.seriesPageSize = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.seriesPageSizeProperty, "5000"));
+            this.scanSplitField = appProps.getApplicationProperty(
+                    ApplicationProperties.mongoScanSplitFieldProperty, MongoScanner.SPLIT_ON_ID);
 
             this.init();
         }
@@ -74,6 +145,34 @@ public class MongoDBExample {
         this.init();
     }
 
+    /**
+     * Overloaded constructor enabling the cross-iteration bulk ingest mode
+     *
+     * @param mongoDBUri
+     * @param database
+     * @param collection
+     * @param bulkBatchSize batch sizes to measure, one timed run each
+     * @param bulkLingerMs maximum time a document waits for its batch to fill
+     * @param bulkOrdered
+     * @param bulkWriterThreads
+     */
+    public MongoDBExample(String mongoDBUri, String database, String collection, int[] bulkBatchSize,
+                          long bulkLingerMs, boolean bulkOrdered, int bulkWriterThreads) {
+        System.out.println("Using overloaded constructor.");
+
+        this.MONGODB_URI = mongoDBUri;
+        this.DATABASE = database;
+        this.COLLECTION = collection;
+        this.useBulkInsert = true;
+        this.bulkIngest = true;
+        this.bulkBatchSize = bulkBatchSize;
+        this.bulkLingerMs = bulkLingerMs;
+        this.bulkOrdered = bulkOrdered;
+        this.bulkWriterThreads = bulkWriterThreads;
+
+        this.init();
+    }
+
 
 
     /**
@@ -83,13 +182,24 @@ public class MongoDBExample {
         this.dbInit();
         this.printMetadata();
         this.generateSampleData();
+
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
     }
 
     /**
      *
      */
     private void dbInit() {
-        MongoClientURI uri = new MongoClientURI(this.MONGODB_URI);
+        MongoClientOptions.Builder options = MongoClientOptions.builder();
+        if (this.driverMetrics != null) {
+            MongoDriverMetrics metrics = new MongoDriverMetrics("mongodb");
+            metrics.addTo(options);
+            this.driverMetrics.register(metrics);
+        }
+
+        MongoClientURI uri = new MongoClientURI(this.MONGODB_URI, options);
         MongoClient mongoClient = new MongoClient(uri);
 
         this.mongoDatabase = mongoClient.getDatabase(this.DATABASE);
@@ -112,6 +222,16 @@ public class MongoDBExample {
         System.out.println("Database: " + this.DATABASE);
         System.out.println("Collection: " + this.COLLECTION);
         System.out.println("useBulkInsert: " + useBulkInsert);
+
+        if (this.bulkIngest) {
+            System.out.println("bulkBatchSize: " + java.util.Arrays.toString(this.bulkBatchSize) +
+                    ", bulkLingerMs: " + this.bulkLingerMs + ", bulkOrdered: " + this.bulkOrdered +
+                    ", bulkWriterThreads: " + this.bulkWriterThreads);
+        }
+        if (this.asyncIngest) {
+            System.out.println("mongoAsyncMaxInFlight: " + java.util.Arrays.toString(this.asyncMaxInFlight) +
+                    ", mongoAsyncBatchSize: " + this.asyncBatchSize + ", mongoAsyncLingerMs: " + this.asyncLingerMs);
+        }
     }
 
     /**
@@ -120,11 +240,18 @@ public class MongoDBExample {
     private void generateSampleData() {
         StopWatch stopWatch = new StopWatch();
 
-        double startValue = 100; // start value for random walk
-        double nextValue = startValue; // next value in random walk, initially startValue
         int numHosts = 100; // how many host names to generate
+        SampleDataGenerator generator = new SampleDataGenerator(numHosts);
         int toCreate = 1000; // how many times to pick a host name and create metrics
 
+        if (this.warmup.isEnabled()) {
+            this.warmUp(generator);
+        }
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        AllocationMeter allocationMeter = new AllocationMeter();
+        this.profiler.start("ingest");
         stopWatch.start();
 
         System.out.println("Creating data... iterations = " + toCreate);
@@ -133,26 +260,10 @@ public class MongoDBExample {
             java.util.Date date = new java.util.Date(now);
 
             // generate a random host name
-            String hostname = "host" + Math.round((Math.random() * numHosts));
+            String hostname = generator.nextHost();
 
             // do a random walk to produce realistic data
-            // do a random walk to produce realistic data
-            double rand = Math.random();
-
-            if (rand < 0.5) {
-                // 50% chance that value doesn't change
-            } else if (rand < 0.75) {
-                // 25% chance that value increases by 1
-                nextValue++;
-            } else {
-                // 25% chance that value decreases by 1
-                nextValue--;
-            }
-
-            // never go negative
-            if (nextValue < 0) {
-                nextValue = 0;
-            }
+            double nextValue = generator.nextValue();
 
             Document document1 = new Document("host", hostname)
                     .append("metric", "m1")
@@ -175,23 +286,31 @@ public class MongoDBExample {
                 writes.add(new InsertOneModel<>(document2));
                 writes.add(new InsertOneModel<>(document3));
 
+                long started = System.nanoTime();
                 this.mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(true));
+                this.latencyStats.record(ITERATION_BULK_WRITE, started);
             } else {
 
-                this.mongoCollection.insertOne(document1);
-                this.mongoCollection.insertOne(document2);
-                this.mongoCollection.insertOne(document3);
+                this.insertOne(document1);
+                this.insertOne(document2);
+                this.insertOne(document3);
             }
 
         }
 
         stopWatch.stop();
-        System.out.println("Created rows = " + toCreate * 3 + " in time = " + stopWatch.toString());
+        this.profiler.stop(useBulkInsert ? toCreate : toCreate * 3, toCreate * 3);
+        System.out.println("Created rows = " + toCreate * 3 + " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(toCreate * 3, stopWatch.getTime()) +
+                ", peak threads = " + threadBean.getPeakThreadCount() +
+                ", allocated bytes/row = " + allocationMeter.bytesPerRow(toCreate * 3));
 
         // find the max value for a sample
         System.out.println("Getting max value for sample...");
         stopWatch.reset();
+        this.profiler.start("max");
         stopWatch.start();
+        long started = System.nanoTime();
 
         Iterable<Document> documents =
                 this.mongoCollection.find((and(eq("host", "host1"),
@@ -202,49 +321,318 @@ public class MongoDBExample {
 
         Document maxValueDocument = documents.iterator().next();
 
+        this.latencyStats.record("max", started);
         stopWatch.stop();
+        this.profiler.stop(1, 0);
 
         System.out.println("Max value = " + maxValueDocument.get("value") + " in time = " + stopWatch.toString());
 
         // get all the values for a sample
         System.out.println("Getting all rows for sample...");
         stopWatch.reset();
+        this.profiler.start("series");
         stopWatch.start();
-
-        Iterable<Document> sampleDocuments =
-                this.mongoCollection.find((and(eq("host", "host1"),
-                        eq("metric", "m1"))))
-                        .projection(fields(include("host", "metric", "time", "value"), excludeId()));
-
-
-        for (Document document : sampleDocuments) {
-            System.out.println(document.toString());
-        }
-
+        started = System.nanoTime();
+
+        String pagingState = null;
+        SeriesPage page;
+        long points = 0;
+        int pages = 0;
+
+        do {
+            page = MongoDBMetricStore.readRange(this.mongoCollection, "host1", "m1", 0, Long.MAX_VALUE,
+                    this.seriesPageSize, pagingState);
+            points += page.size();
+            pages++;
+            pagingState = page.getPagingState();
+        } while (pagingState != null);
+
+        this.latencyStats.record("series", started);
         stopWatch.stop();
-        System.out.println("time = " + stopWatch.toString());
+        this.profiler.stop(pages, points);
+        System.out.println("Read points = " + points + " in pages = " + pages + " of " + this.seriesPageSize +
+                ", last page: " + page + ", time = " + stopWatch.toString());
 
         // select all
         System.out.println("Select ALL...");
         stopWatch.reset();
+        this.profiler.start("scan");
         stopWatch.start();
+        started = System.nanoTime();
 
-        Iterable<Document> allDocuments =
-                this.mongoCollection.find()
+        Iterable<RawBsonDocument> allDocuments =
+                this.mongoCollection.withDocumentClass(RawBsonDocument.class).find()
                         .projection(fields(include("host", "metric", "time", "value"), excludeId()));
 
         int counter = 0;
         long numBytes = 0;
 
-        for (Document document : allDocuments) {
+        for (RawBsonDocument document : allDocuments) {
             counter++;
-            numBytes += document.size();
+            // encoded size of the document, comparable to the bytes of the Cassandra scan
+            numBytes += document.getByteBuffer().remaining();
 
         }
 
+        this.latencyStats.record("scan", started);
         stopWatch.stop();
+        this.profiler.stop(1, counter);
         System.out.println("Returned rows = " + counter +
                 ", totalBytes = " + numBytes + ", in time = " + stopWatch.toString());
+
+        if (this.parallelScan) {
+            MongoScanner.createSplitIndex(this.mongoCollection, this.scanSplitField);
+            MongoScanner scanner = new MongoScanner(this.mongoCollection, this.scanFetchSize,
+                    this.scanSplitsPerThread, this.scanSplitField);
+
+            for (int threads : this.scanThreads) {
+                System.out.println("Raw BSON scan... threads = " + threads + ", batch size = " +
+                        this.scanFetchSize + ", split on = " + this.scanSplitField);
+                stopWatch.reset();
+                this.profiler.start("parallelScan " + threads);
+                stopWatch.start();
+                started = System.nanoTime();
+                ScanResult result = scanner.scan(threads);
+                this.latencyStats.record("parallelScan", started);
+                stopWatch.stop();
+                this.profiler.stop(1, result.getRows());
+
+                System.out.println("Threads = " + threads + ", " + result.toString(stopWatch.getTime()) +
+                        ", in time = " + stopWatch.toString());
+            }
+        }
+
+        // after the queries, so they measure the sync baseline only
+        if (this.pointCodec) {
+            this.ingestPoints(numHosts, toCreate);
+        }
+
+        if (this.bulkIngest) {
+            for (int batchSize : this.bulkBatchSize) {
+                this.ingestBulk(batchSize, numHosts, toCreate);
+            }
+        }
+
+        if (this.asyncIngest) {
+            MongoClientSettings.Builder settings = MongoClientSettings.builder()
+                    .applyConnectionString(new ConnectionString(this.MONGODB_URI));
+            if (this.driverMetrics != null) {
+                MongoDriverMetrics metrics = new MongoDriverMetrics("mongodb-async");
+                metrics.addTo(settings);
+                this.driverMetrics.register(metrics);
+            }
+            com.mongodb.async.client.MongoClient asyncClient = MongoClients.create(settings.build());
+            try {
+                com.mongodb.async.client.MongoCollection<Document> asyncCollection =
+                        asyncClient.getDatabase(this.DATABASE).getCollection(this.COLLECTION);
+
+                for (int maxInFlight : this.asyncMaxInFlight) {
+                    this.ingestAsync(asyncCollection, maxInFlight, numHosts, toCreate);
+                }
+            } finally {
+                asyncClient.close();
+            }
+        }
+
+        this.latencyStats.print(System.out);
+        this.profiler.print(System.out);
+    }
+
+    /**
+     * Runs the inserts and series queries of generateSampleData untimed, then deletes what they
+     * wrote so the measured run starts from the same empty collection.
+     *
+     * @param generator
+     */
+    private void warmUp(final SampleDataGenerator generator) {
+        this.warmup.run(1, new Runnable() {
+            @Override
+            public void run() {
+                java.util.Date date = new java.util.Date(System.currentTimeMillis());
+                String hostname = generator.nextHost();
+                double nextValue = generator.nextValue();
+
+                for (int m = 0; m < SampleDataGenerator.METRICS.length; m++) {
+                    mongoCollection.insertOne(new Document("host", hostname)
+                            .append("metric", SampleDataGenerator.METRICS[m])
+                            .append("time", date)
+                            .append("value", nextValue * SampleDataGenerator.MULTIPLIERS[m]));
+                }
+                mongoCollection.find(and(eq("host", hostname), eq("metric", "m1")))
+                        .projection(fields(include("host", "metric", "time", "value"), excludeId()))
+                        .sort(descending("value"))
+                        .first();
+                for (Document document : mongoCollection.find(and(eq("host", hostname), eq("metric", "m1")))) {
+                    document.get("value");
+                }
+            }
+        });
+
+        this.mongoCollection.deleteMany(new Document());
+    }
+
+    /**
+     * Inserts a single document and records its latency.
+     *
+     * @param document
+     */
+    private void insertOne(Document document) {
+        long started = System.nanoTime();
+        this.mongoCollection.insertOne(document);
+        this.latencyStats.record("insert", started);
+    }
+
+    /**
+     * Drops the collection before an extra ingest pass, so every pass writes into the same empty
+     * collection as the sync insert loop.  The collection has no indexes to recreate.
+     */
+    private void clearCollection() {
+        this.mongoCollection.drop();
+        this.mongoCollection = this.mongoDatabase.getCollection(this.COLLECTION);
+    }
+
+    /**
+     * Same workload as the insert loop above, with one reused MetricPoint encoded by
+     * MetricPointCodec instead of three Documents per iteration.
+     *
+     * @param numHosts
+     * @param toCreate
+     */
+    private void ingestPoints(int numHosts, int toCreate) {
+        StopWatch stopWatch = new StopWatch();
+        this.clearCollection();
+        MongoCollection<MetricPoint> pointCollection = this.mongoCollection.withDocumentClass(MetricPoint.class)
+                .withCodecRegistry(MetricPointCodec.REGISTRY);
+        MetricPoint point = new MetricPoint();
+
+        SampleDataGenerator generator = new SampleDataGenerator(numHosts);
+        AllocationMeter allocationMeter = new AllocationMeter();
+
+        System.out.println("Creating data with MetricPointCodec... iterations = " + toCreate);
+        this.profiler.start("ingest codec");
+        stopWatch.start();
+        for (int r = 1; r <= toCreate; r++) {
+            long now = System.currentTimeMillis();
+            String hostname = generator.nextHost();
+            double nextValue = generator.nextValue();
+
+            long started = System.nanoTime();
+            pointCollection.insertOne(point.set(hostname, "m1", now, nextValue));
+            this.latencyStats.record("insertPoint", started);
+
+            started = System.nanoTime();
+            pointCollection.insertOne(point.set(hostname, "m2", now, nextValue * 10));
+            this.latencyStats.record("insertPoint", started);
+
+            started = System.nanoTime();
+            pointCollection.insertOne(point.set(hostname, "m3", now, nextValue * 100));
+            this.latencyStats.record("insertPoint", started);
+        }
+        stopWatch.stop();
+        this.profiler.stop(toCreate * 3, toCreate * 3);
+
+        System.out.println("Created rows = " + toCreate * 3 + " with MetricPointCodec in time = " +
+                stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(toCreate * 3, stopWatch.getTime()) +
+                ", allocated bytes/row = " + allocationMeter.bytesPerRow(toCreate * 3));
+    }
+
+    /**
+     * Same workload as the insert loop above, but documents are collected across iterations
+     * and written in bulk by the writer threads.
+     *
+     * @param batchSize
+     * @param numHosts
+     * @param toCreate
+     */
+    private void ingestBulk(int batchSize, int numHosts, int toCreate) {
+        StopWatch stopWatch = new StopWatch();
+        this.clearCollection();
+        MongoBulkWriter<Document> writer = new MongoBulkWriter<Document>(this.mongoCollection, batchSize,
+                this.bulkLingerMs, this.bulkOrdered, this.bulkWriterThreads, this.latencyStats);
+
+        SampleDataGenerator generator = new SampleDataGenerator(numHosts);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        System.out.println("Creating data in bulk... iterations = " + toCreate + ", batch size = " + batchSize);
+        this.profiler.start("bulk " + batchSize);
+        stopWatch.start();
+        for (int r = 1; r <= toCreate; r++) {
+            java.util.Date date = new java.util.Date(System.currentTimeMillis());
+            String hostname = generator.nextHost();
+            double nextValue = generator.nextValue();
+
+            writer.insert(new Document("host", hostname).append("metric", "m1")
+                    .append("time", date).append("value", nextValue));
+            writer.insert(new Document("host", hostname).append("metric", "m2")
+                    .append("time", date).append("value", nextValue * 10));
+            writer.insert(new Document("host", hostname).append("metric", "m3")
+                    .append("time", date).append("value", nextValue * 100));
+        }
+        writer.close();
+        stopWatch.stop();
+        this.profiler.stop(writer.getBatchesWritten(), writer.getDocumentsWritten());
+
+        System.out.println("Batch size = " + batchSize + ", created rows = " + writer.getDocumentsWritten() +
+                ", batches = " + writer.getBatchesWritten() + ", failed batches = " + writer.getErrors() +
+                " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(writer.getDocumentsWritten(), stopWatch.getTime()) +
+                ", peak threads = " + threads.getPeakThreadCount());
+
+        if (writer.getLastError() != null) {
+            System.err.println("Last bulk write error: " + writer.getLastError());
+        }
+    }
+
+    /**
+     * Same workload as the insert loop above on the async driver: documents are batched and sent
+     * with insertMany from this thread without waiting for replies, up to maxInFlight batches.
+     *
+     * @param asyncCollection the collection, opened with the async driver
+     * @param maxInFlight
+     * @param numHosts
+     * @param toCreate
+     */
+    private void ingestAsync(com.mongodb.async.client.MongoCollection<Document> asyncCollection, int maxInFlight,
+                             int numHosts, int toCreate) {
+        StopWatch stopWatch = new StopWatch();
+        this.clearCollection();
+        MongoAsyncWriter<Document> writer = new MongoAsyncWriter<Document>(asyncCollection, this.asyncBatchSize,
+                this.asyncLingerMs, maxInFlight, false, this.latencyStats);
+
+        SampleDataGenerator generator = new SampleDataGenerator(numHosts);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+
+        System.out.println("Creating data async... iterations = " + toCreate + ", max in flight = " + maxInFlight);
+        this.profiler.start("async " + maxInFlight);
+        stopWatch.start();
+        for (int r = 1; r <= toCreate; r++) {
+            java.util.Date date = new java.util.Date(System.currentTimeMillis());
+            String hostname = generator.nextHost();
+            double nextValue = generator.nextValue();
+
+            writer.insert(new Document("host", hostname).append("metric", "m1")
+                    .append("time", date).append("value", nextValue));
+            writer.insert(new Document("host", hostname).append("metric", "m2")
+                    .append("time", date).append("value", nextValue * 10));
+            writer.insert(new Document("host", hostname).append("metric", "m3")
+                    .append("time", date).append("value", nextValue * 100));
+        }
+        writer.close();
+        stopWatch.stop();
+        this.profiler.stop(writer.getBatchesWritten(), writer.getDocumentsWritten());
+
+        System.out.println("Max in flight = " + maxInFlight + ", created rows = " + writer.getDocumentsWritten() +
+                ", batches = " + writer.getBatchesWritten() + ", failed batches = " + writer.getErrors() +
+                " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(writer.getDocumentsWritten(), stopWatch.getTime()) +
+                ", peak threads = " + threads.getPeakThreadCount());
+
+        if (writer.getLastError() != null) {
+            System.err.println("Last async insert error: " + writer.getLastError());
+        }
     }
 
     /**
@@ -0,0 +1,453 @@
+package com.bmincey;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Indexes;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Sorts.descending;
+
+/**
+ * MongoDB implementation of MetricStore using one document per point, as in MongoDBExample.
+ * A (host, metric, time, _id) index is created so series queries do not scan the collection,
+ * matching what the Cassandra primary key provides; _id orders points sharing a time for paged
+ * reads.
+ */
+public class MongoDBMetricStore implements MetricStore {
+
+    public static final String FAN_OUT_IN = "in";
+    public static final String FAN_OUT_PARALLEL = "parallel";
+
+    private final String COLLECTION;
+
+    private final MongoClient mongoClient;
+    private final DriverMetricsReporter driverMetrics;
+    private final MongoDatabase mongoDatabase;
+    private MongoCollection<Document> mongoCollection;
+    private MongoCollection<MetricPoint> pointCollection;
+    private final ThreadLocal<MetricPoint> points = new ThreadLocal<MetricPoint>() {
+        @Override
+        protected MetricPoint initialValue() {
+            return new MetricPoint();
+        }
+    };
+    private WriteConcern writeConcern;
+    private ReadPreference readPreference;
+
+    private int scanThreads = Runtime.getRuntime().availableProcessors();
+    private int scanBatchSize = 5000;
+    private int scanSplitsPerThread = 4;
+    private String scanSplitField = MongoScanner.SPLIT_ON_ID;
+
+    private String fanOutMode = FAN_OUT_IN;
+    private int fanOutConcurrency = 32;
+    private ExecutorService fanOutExecutor;
+
+    /**
+     *
+     * @param mongoDBUri
+     * @param database
+     * @param collection
+     */
+    public MongoDBMetricStore(String mongoDBUri, String database, String collection) {
+        this(mongoDBUri, database, collection, null);
+    }
+
+    /**
+     *
+     * @param mongoDBUri
+     * @param database
+     * @param collection
+     * @param driverMetrics reporter for this store's driver metrics, closed with the store, or null
+     */
+    public MongoDBMetricStore(String mongoDBUri, String database, String collection,
+                              DriverMetricsReporter driverMetrics) {
+        this.COLLECTION = collection;
+        this.driverMetrics = driverMetrics;
+
+        MongoClientOptions.Builder options = MongoClientOptions.builder();
+        if (driverMetrics != null) {
+            MongoDriverMetrics metrics = new MongoDriverMetrics(this.getName());
+            metrics.addTo(options);
+            driverMetrics.register(metrics);
+        }
+        this.mongoClient = new MongoClient(new MongoClientURI(mongoDBUri, options));
+        this.mongoDatabase = this.mongoClient.getDatabase(database);
+        this.setCollection(this.mongoDatabase.getCollection(this.COLLECTION));
+    }
+
+    @Override
+    public String getName() {
+        return "mongodb";
+    }
+
+    /**
+     * Settings of the raw BSON scan used by scan().
+     *
+     * @param scanThreads
+     * @param scanBatchSize
+     * @param scanSplitsPerThread
+     * @param scanSplitField
+     */
+    public void setScanOptions(int scanThreads, int scanBatchSize, int scanSplitsPerThread, String scanSplitField) {
+        this.scanThreads = scanThreads;
+        this.scanBatchSize = scanBatchSize;
+        this.scanSplitsPerThread = scanSplitsPerThread;
+        this.scanSplitField = scanSplitField;
+    }
+
+    /**
+     * How multiRangeQuery reads its series: FAN_OUT_IN runs one query with $in on host and
+     * metric, FAN_OUT_PARALLEL runs one range query per series on up to fanOutConcurrency threads.
+     *
+     * @param fanOutMode
+     * @param fanOutConcurrency
+     */
+    public synchronized void setFanOutOptions(String fanOutMode, int fanOutConcurrency) {
+        if (!FAN_OUT_IN.equals(fanOutMode) && !FAN_OUT_PARALLEL.equals(fanOutMode)) {
+            throw new IllegalArgumentException("Unknown fan-out mode: " + fanOutMode);
+        }
+        this.fanOutMode = fanOutMode;
+        this.fanOutConcurrency = fanOutConcurrency;
+
+        if (this.fanOutExecutor != null) {
+            this.fanOutExecutor.shutdown();
+            this.fanOutExecutor = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        String concerns = concernsString(this.writeConcern, this.readPreference);
+        return concerns.isEmpty() ? this.getName() : this.getName() + " (" + concerns.substring(2) + ")";
+    }
+
+    /**
+     * Write concern and read preference of this store's collection; null keeps the client default.
+     *
+     * @param writeConcern
+     * @param readPreference
+     */
+    public void setConcerns(WriteConcern writeConcern, ReadPreference readPreference) {
+        this.writeConcern = writeConcern;
+        this.readPreference = readPreference;
+        this.setCollection(this.withConcerns(this.mongoDatabase.getCollection(this.COLLECTION)));
+    }
+
+    /**
+     * Writes go through a MetricPoint view of the same collection.
+     *
+     * @param collection
+     */
+    private void setCollection(MongoCollection<Document> collection) {
+        this.mongoCollection = collection;
+        this.pointCollection = collection.withDocumentClass(MetricPoint.class)
+                .withCodecRegistry(MetricPointCodec.REGISTRY);
+    }
+
+    /**
+     *
+     * @param collection
+     * @return collection with this store's write concern and read preference
+     */
+    private MongoCollection<Document> withConcerns(MongoCollection<Document> collection) {
+        if (this.writeConcern != null) {
+            collection = collection.withWriteConcern(this.writeConcern);
+        }
+        if (this.readPreference != null) {
+            collection = collection.withReadPreference(this.readPreference);
+        }
+        return collection;
+    }
+
+    /**
+     *
+     * @param writeConcern
+     * @param readPreference
+     * @return the non-default concerns, for toString()
+     */
+    static String concernsString(WriteConcern writeConcern, ReadPreference readPreference) {
+        return (writeConcern == null ? "" : ", write concern = " + writeConcern.asDocument().toJson()) +
+                (readPreference == null ? "" : ", read preference = " + readPreference.getName());
+    }
+
+    @Override
+    public void createSchema() {
+        this.mongoCollection.drop();
+        this.setCollection(this.withConcerns(this.mongoDatabase.getCollection(this.COLLECTION)));
+        this.mongoCollection.createIndex(Indexes.ascending("host", "metric", "time", "_id"));
+        MongoScanner.createSplitIndex(this.mongoCollection, this.scanSplitField);
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        this.pointCollection.insertOne(this.points.get().set(host, metric, time, value));
+    }
+
+    @Override
+    public void flush() {
+        // writes are synchronous
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        Document document = this.mongoCollection.find(and(eq("host", host), eq("metric", metric),
+                eq("time", new Date(time))))
+                .projection(fields(include("value"), excludeId()))
+                .first();
+        return document == null ? null : document.getDouble("value");
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        Iterable<Document> documents = this.mongoCollection.find(and(eq("host", host), eq("metric", metric),
+                gte("time", new Date(from)), lt("time", new Date(to))))
+                .projection(fields(include("time", "value"), excludeId()));
+
+        int count = 0;
+        for (Document document : documents) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        return readRange(this.mongoCollection, host, metric, from, to, limit, pagingState);
+    }
+
+    /**
+     * Reads the page with SeriesPageCodec, which decodes the time and value of every document
+     * straight into the page.  Points are ordered by (time, _id), following the (host, metric,
+     * time, _id) index, so points sharing a time keep one order across pages, and a later page
+     * starts after the (time, _id) of the previous one instead of skipping over it.
+     *
+     * @param collection of one document per point
+     * @param host
+     * @param metric
+     * @param from
+     * @param to
+     * @param limit
+     * @param pagingState
+     * @return
+     */
+    static SeriesPage readRange(MongoCollection<Document> collection, String host, String metric, long from,
+                                long to, int limit, String pagingState) {
+        SeriesPage page = new SeriesPage(from, limit, pagingState);
+        MongoCursor<SeriesPage> cursor = collection.withDocumentClass(SeriesPage.class)
+                .withCodecRegistry(SeriesPageCodec.registryFor(page))
+                .find(pageFilter(host, metric, page, to))
+                .projection(include("time", "value"))
+                .sort(ascending("time", "_id"))
+                .limit(limit + 1)
+                .batchSize(limit + 1)
+                .iterator();
+
+        try {
+            while (cursor.hasNext()) {
+                cursor.next();
+            }
+        } finally {
+            cursor.close();
+        }
+        return page;
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param page
+     * @param to
+     * @return filter of the points of page, from its start time or after its (time, _id) key
+     */
+    static Bson pageFilter(String host, String metric, SeriesPage page, long to) {
+        Date start = new Date(page.getStartTime());
+        Bson after = page.getAfterKey() == null ? gte("time", start) :
+                or(gt("time", start), and(eq("time", start), gt("_id", new ObjectId(page.getAfterKey()))));
+
+        return and(eq("host", host), eq("metric", metric), after, lt("time", new Date(to)));
+    }
+
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        if (FAN_OUT_PARALLEL.equals(this.fanOutMode)) {
+            return this.parallelRangeQuery(series, from, to);
+        }
+
+        Map<SeriesId, int[]> counters = SeriesId.counters(series);
+        Iterable<Document> documents = this.mongoCollection.find(and(seriesFilter(series),
+                gte("time", new Date(from)), lt("time", new Date(to))))
+                .projection(fields(include("host", "metric"), excludeId()))
+                .batchSize(this.scanBatchSize);
+
+        for (Document document : documents) {
+            int[] counter = counters.get(new SeriesId(document.getString("host"), document.getString("metric")));
+            if (counter != null) {
+                counter[0]++;
+            }
+        }
+        return SeriesId.counts(series, counters);
+    }
+
+    /**
+     *
+     * @param series
+     * @param from
+     * @param to
+     * @return points read per series, one range query per series on the fan-out threads
+     */
+    private int[] parallelRangeQuery(List<SeriesId> series, final long from, final long to) {
+        ExecutorService executor;
+        synchronized (this) {
+            if (this.fanOutExecutor == null) {
+                this.fanOutExecutor = Executors.newFixedThreadPool(this.fanOutConcurrency);
+            }
+            executor = this.fanOutExecutor;
+        }
+
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(series.size());
+        for (final SeriesId id : series) {
+            futures.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return rangeQuery(id.getHost(), id.getMetric(), from, to);
+                }
+            }));
+        }
+
+        int[] counts = new int[futures.size()];
+        try {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return counts;
+    }
+
+    /**
+     * Matches every requested host with every requested metric, a superset of series when the
+     * hosts do not all ask for the same metrics; callers drop the pairs they did not ask for.
+     *
+     * @param series
+     * @return filter on host and metric with $in
+     */
+    static Bson seriesFilter(List<SeriesId> series) {
+        Set<String> hosts = new LinkedHashSet<String>();
+        Set<String> metrics = new LinkedHashSet<String>();
+
+        for (SeriesId id : series) {
+            hosts.add(id.getHost());
+            metrics.add(id.getMetric());
+        }
+        return and(in("host", hosts), in("metric", metrics));
+    }
+
+    @Override
+    public Double maxQuery(String host, String metric) {
+        Document document = this.mongoCollection.find(and(eq("host", host), eq("metric", metric)))
+                .projection(fields(include("value"), excludeId()))
+                .sort(descending("value"))
+                .limit(1)
+                .first();
+        return document == null ? null : document.getDouble("value");
+    }
+
+    @Override
+    public long scan() {
+        return new MongoScanner(this.mongoCollection, this.scanBatchSize, this.scanSplitsPerThread,
+                this.scanSplitField).scan(this.scanThreads).getRows();
+    }
+
+    @Override
+    public String storageStats() {
+        return collectionStats(this.mongoDatabase, this.COLLECTION);
+    }
+
+    /**
+     *
+     * @param database
+     * @param collection
+     * @return document count, data, storage and index sizes from the collStats command
+     */
+    static String collectionStats(MongoDatabase database, String collection) {
+        return collectionStats(database.runCommand(new Document("collStats", collection)));
+    }
+
+    /**
+     *
+     * @param stats result of the collStats command
+     * @return document count, data, storage and index sizes
+     */
+    static String collectionStats(Document stats) {
+        return "documents = " + ((Number) stats.get("count")).longValue() +
+                ", data size = " + ((Number) stats.get("size")).longValue() +
+                " bytes, storage size = " + ((Number) stats.get("storageSize")).longValue() +
+                " bytes, index size = " + ((Number) stats.get("totalIndexSize")).longValue() + " bytes";
+    }
+
+    /**
+     *
+     * @return the database of this store, shared with its rollup sink
+     */
+    MongoDatabase getDatabase() {
+        return this.mongoDatabase;
+    }
+
+    /**
+     *
+     * @return the collection of this store with its concerns, for writers that bypass write()
+     */
+    MongoCollection<Document> getCollection() {
+        return this.mongoCollection;
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.fanOutExecutor != null) {
+                this.fanOutExecutor.shutdown();
+            }
+        }
+        if (this.driverMetrics != null) {
+            this.driverMetrics.close();
+        }
+        this.mongoClient.close();
+    }
+}
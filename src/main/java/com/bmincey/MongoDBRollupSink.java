@@ -0,0 +1,104 @@
+package com.bmincey;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Sorts.ascending;
+
+/**
+ * RollupSink writing one document per (host, metric, window) to a MongoDB collection, using the
+ * database of the store it belongs to.  Changed rollups are replaced with one unordered
+ * bulkWrite of upserts.
+ */
+public class MongoDBRollupSink implements RollupSink {
+
+    private final MongoDatabase mongoDatabase;
+    private final String COLLECTION;
+    private MongoCollection<Document> mongoCollection;
+
+    /**
+     *
+     * @param mongoDatabase
+     * @param collection
+     */
+    public MongoDBRollupSink(MongoDatabase mongoDatabase, String collection) {
+        this.mongoDatabase = mongoDatabase;
+        this.COLLECTION = collection;
+        this.mongoCollection = mongoDatabase.getCollection(collection);
+    }
+
+    @Override
+    public void createSchema() {
+        this.mongoCollection.drop();
+        this.mongoCollection = this.mongoDatabase.getCollection(this.COLLECTION);
+        this.mongoCollection.createIndex(Indexes.ascending("host", "metric", "window"));
+    }
+
+    @Override
+    public void write(Collection<Rollup> rollups) {
+        List<WriteModel<Document>> requests = new ArrayList<WriteModel<Document>>();
+        ReplaceOptions upsert = new ReplaceOptions().upsert(true);
+
+        for (Rollup rollup : rollups) {
+            requests.add(new ReplaceOneModel<Document>(
+                    and(eq("host", rollup.getHost()), eq("metric", rollup.getMetric()), eq("window", rollup.getWindow())),
+                    new Document("host", rollup.getHost())
+                            .append("metric", rollup.getMetric())
+                            .append("window", rollup.getWindow())
+                            .append("min", rollup.getMin())
+                            .append("max", rollup.getMax())
+                            .append("sum", rollup.getSum())
+                            .append("count", rollup.getCount()),
+                    upsert));
+        }
+        this.mongoCollection.bulkWrite(requests, new BulkWriteOptions().ordered(false));
+    }
+
+    @Override
+    public Rollup read(String host, String metric, long window) {
+        Document document = this.mongoCollection.find(and(eq("host", host), eq("metric", metric),
+                eq("window", window)))
+                .projection(excludeId())
+                .first();
+        return document == null ? null : toRollup(document);
+    }
+
+    @Override
+    public List<Rollup> read(String host, String metric, long fromWindow, long toWindow) {
+        List<Rollup> result = new ArrayList<Rollup>();
+
+        for (Document document : this.mongoCollection.find(and(eq("host", host), eq("metric", metric),
+                gte("window", fromWindow), lt("window", toWindow)))
+                .projection(excludeId())
+                .sort(ascending("window"))) {
+            result.add(toRollup(document));
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param document
+     * @return
+     */
+    private static Rollup toRollup(Document document) {
+        return new Rollup(document.getString("host"), document.getString("metric"), document.getLong("window"),
+                document.getDouble("min"), document.getDouble("max"), document.getDouble("sum"),
+                document.getLong("count"));
+    }
+}
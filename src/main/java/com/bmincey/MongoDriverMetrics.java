@@ -0,0 +1,237 @@
+package com.bmincey;
+
+import com.mongodb.Block;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.connection.ConnectionPoolSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MongoDB driver statistics collected from CommandListener and ConnectionPoolListener events.
+ * Command durations are the driver's own round-trip times per command name.  Checkout waits
+ * are timed from entering to leaving the pool's wait queue, which the synchronous driver does
+ * on the requesting thread, so a growing wait shows the pool rather than the server is slow.
+ * The async driver may leave the wait queue on another thread, and such waits are not timed.
+ */
+public class MongoDriverMetrics implements MongoDriverMetricsMBean, CommandListener, ConnectionPoolListener,
+        DriverMetricsSource {
+
+    private static final String CHECKOUT_WAIT = "checkoutWait";
+
+    private final String name;
+    private final LatencyStats commands;
+    private final LatencyStats pool;
+
+    private final AtomicLong failedCommands = new AtomicLong();
+    private final AtomicInteger poolSize = new AtomicInteger();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicInteger waitQueueSize = new AtomicInteger();
+    private final ThreadLocal<Long> waitStarted = new ThreadLocal<Long>();
+
+    /**
+     *
+     * @param name
+     */
+    public MongoDriverMetrics(String name) {
+        this.name = name;
+        this.commands = new LatencyStats(name + " commands", 0);
+        this.pool = new LatencyStats(name + " pool", 0);
+    }
+
+    /**
+     *
+     * @param builder
+     * @return builder with this registered as command and connection pool listener
+     */
+    public MongoClientOptions.Builder addTo(MongoClientOptions.Builder builder) {
+        return builder.addCommandListener(this).addConnectionPoolListener(this);
+    }
+
+    /**
+     *
+     * @param builder settings of an async client
+     * @return builder with this registered as command and connection pool listener
+     */
+    public MongoClientSettings.Builder addTo(MongoClientSettings.Builder builder) {
+        return builder.addCommandListener(this)
+                .applyToConnectionPoolSettings(new Block<ConnectionPoolSettings.Builder>() {
+                    @Override
+                    public void apply(ConnectionPoolSettings.Builder pool) {
+                        pool.addConnectionPoolListener(MongoDriverMetrics.this);
+                    }
+                });
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        // timed from the succeeded and failed events
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        this.commands.recordMicros(event.getCommandName(), event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        this.failedCommands.incrementAndGet();
+        this.commands.recordMicros(event.getCommandName(), event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        this.checkedOut.incrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        this.checkedOut.decrementAndGet();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        this.waitQueueSize.incrementAndGet();
+        this.waitStarted.set(System.nanoTime());
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        this.waitQueueSize.decrementAndGet();
+
+        Long started = this.waitStarted.get();
+        if (started != null) {
+            this.pool.record(CHECKOUT_WAIT, started);
+            this.waitStarted.remove();
+        }
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        this.poolSize.incrementAndGet();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        this.poolSize.decrementAndGet();
+    }
+
+    /**
+     *
+     * @return every command merged into one histogram
+     */
+    private Histogram allCommands() {
+        Histogram all = new Histogram(3);
+        for (Histogram histogram : this.commands.snapshot().values()) {
+            all.add(histogram);
+        }
+        return all;
+    }
+
+    /**
+     *
+     * @return
+     */
+    private Histogram checkoutWaits() {
+        Histogram waits = this.pool.snapshot().get(CHECKOUT_WAIT);
+        return waits == null ? new Histogram(3) : waits;
+    }
+
+    @Override
+    public long getCommandCount() {
+        return this.allCommands().getTotalCount();
+    }
+
+    @Override
+    public long getFailedCommands() {
+        return this.failedCommands.get();
+    }
+
+    @Override
+    public long getCommandP50Micros() {
+        return this.allCommands().getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getCommandP99Micros() {
+        return this.allCommands().getValueAtPercentile(99);
+    }
+
+    @Override
+    public int getPoolSize() {
+        return this.poolSize.get();
+    }
+
+    @Override
+    public int getCheckedOutConnections() {
+        return this.checkedOut.get();
+    }
+
+    @Override
+    public int getWaitQueueSize() {
+        return this.waitQueueSize.get();
+    }
+
+    @Override
+    public long getCheckoutWaits() {
+        return this.checkoutWaits().getTotalCount();
+    }
+
+    @Override
+    public long getCheckoutWaitP99Micros() {
+        return this.checkoutWaits().getValueAtPercentile(99);
+    }
+
+    @Override
+    public String getSnapshot() {
+        return this.snapshot();
+    }
+
+    @Override
+    public String snapshot() {
+        Histogram all = this.allCommands();
+        Histogram waits = this.checkoutWaits();
+        StringBuilder line = new StringBuilder(String.format("commands = %d, failed = %d, p50 = %d us, " +
+                        "p99 = %d us, pool size = %d, checked out = %d, wait queue = %d, checkout waits = %d, " +
+                        "checkout wait p99 = %d us", all.getTotalCount(), this.getFailedCommands(),
+                all.getValueAtPercentile(50), all.getValueAtPercentile(99), this.getPoolSize(),
+                this.getCheckedOutConnections(), this.getWaitQueueSize(), waits.getTotalCount(),
+                waits.getValueAtPercentile(99)));
+
+        for (Map.Entry<String, Histogram> command : this.commands.snapshot().entrySet()) {
+            line.append(String.format(", %s = %d @ p99 %d us", command.getKey(), command.getValue().getTotalCount(),
+                    command.getValue().getValueAtPercentile(99)));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.bmincey;
+
+/**
+ * JMX view of MongoDriverMetrics.  Latencies are in microseconds.
+ */
+public interface MongoDriverMetricsMBean {
+
+    long getCommandCount();
+
+    long getFailedCommands();
+
+    long getCommandP50Micros();
+
+    long getCommandP99Micros();
+
+    int getPoolSize();
+
+    int getCheckedOutConnections();
+
+    int getWaitQueueSize();
+
+    long getCheckoutWaits();
+
+    long getCheckoutWaitP99Micros();
+
+    String getSnapshot();
+}
@@ -0,0 +1,205 @@
+package com.bmincey;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Indexes;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Sorts.ascending;
+import static com.mongodb.client.model.Sorts.descending;
+
+/**
+ * Streaming full-collection scan that reads RawBsonDocument results, so documents are never
+ * decoded into Document maps and the byte totals are the real BSON size of each result.  The
+ * collection can be split on _id or time into contiguous ranges, each read by its own cursor
+ * on a thread pool.  Splitting on time needs an index with a time prefix, see createSplitIndex.
+ */
+public class MongoScanner {
+
+    public static final String SPLIT_ON_ID = "_id";
+    public static final String SPLIT_ON_TIME = "time";
+
+    private final MongoCollection<RawBsonDocument> collection;
+    private final int batchSize;
+    private final int splitsPerThread;
+    private final String splitField;
+
+    /**
+     *
+     * @param collection
+     * @param batchSize documents per cursor batch
+     * @param splitsPerThread ranges scanned per thread
+     * @param splitField _id or time
+     */
+    public MongoScanner(MongoCollection<Document> collection, int batchSize, int splitsPerThread, String splitField) {
+        if (!SPLIT_ON_ID.equals(splitField) && !SPLIT_ON_TIME.equals(splitField)) {
+            throw new IllegalArgumentException("Unknown split field: " + splitField);
+        }
+
+        this.collection = collection.withDocumentClass(RawBsonDocument.class);
+        this.batchSize = batchSize;
+        this.splitsPerThread = Math.max(1, splitsPerThread);
+        this.splitField = splitField;
+    }
+
+    /**
+     * Creates the {time: 1} index a time split needs to find its bounds and ranges without
+     * collection scans; _id is always indexed.  Call it outside the timed scan.
+     *
+     * @param collection
+     * @param splitField _id or time
+     */
+    public static void createSplitIndex(MongoCollection<?> collection, String splitField) {
+        if (SPLIT_ON_TIME.equals(splitField)) {
+            collection.createIndex(Indexes.ascending(SPLIT_ON_TIME));
+        }
+    }
+
+    /**
+     *
+     * @param threads
+     * @return totals merged over all ranges
+     */
+    public ScanResult scan(int threads) {
+        final ScanResult result = new ScanResult();
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (final Bson filter : this.split(threads == 1 ? 1 : threads * this.splitsPerThread)) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    scanRange(filter, result);
+                    return null;
+                }
+            });
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    /**
+     *
+     * @param splits
+     * @return contiguous filters covering the whole collection
+     */
+    List<Bson> split(int splits) {
+        RawBsonDocument first = this.collection.find().sort(ascending(this.splitField))
+                .projection(include(this.splitField)).first();
+        RawBsonDocument last = this.collection.find().sort(descending(this.splitField))
+                .projection(include(this.splitField)).first();
+
+        if (splits <= 1 || first == null || last == null) {
+            return Arrays.asList((Bson) new BsonDocument());
+        }
+
+        List<Object> boundaries = SPLIT_ON_ID.equals(this.splitField) ?
+                idBoundaries(first.getObjectId("_id").getValue(), last.getObjectId("_id").getValue(), splits) :
+                timeBoundaries(first.getDateTime("time").getValue(), last.getDateTime("time").getValue(), splits);
+
+        List<Bson> filters = new ArrayList<Bson>();
+        for (int i = 0; i <= boundaries.size(); i++) {
+            if (i == 0) {
+                filters.add(lt(this.splitField, boundaries.get(0)));
+            } else if (i == boundaries.size()) {
+                filters.add(gte(this.splitField, boundaries.get(i - 1)));
+            } else {
+                filters.add(and(gte(this.splitField, boundaries.get(i - 1)), lt(this.splitField, boundaries.get(i))));
+            }
+        }
+        return filters;
+    }
+
+    /**
+     *
+     * @param filter
+     * @param result
+     */
+    private void scanRange(Bson filter, ScanResult result) {
+        Iterable<RawBsonDocument> documents = this.collection.find(filter)
+                .projection(fields(include("host", "metric", "time", "value"), excludeId()))
+                .batchSize(this.batchSize);
+
+        long rows = 0;
+        long bytes = 0;
+
+        for (RawBsonDocument document : documents) {
+            rows++;
+            bytes += document.getByteBuffer().remaining();
+        }
+        result.add(rows, bytes);
+    }
+
+    /**
+     * Interpolates over the 12-byte ObjectId value, which orders by creation time then counter.
+     *
+     * @param min
+     * @param max
+     * @param splits
+     * @return splits - 1 increasing boundaries between min and max
+     */
+    private static List<Object> idBoundaries(ObjectId min, ObjectId max, int splits) {
+        BigInteger low = new BigInteger(1, min.toByteArray());
+        BigInteger span = new BigInteger(1, max.toByteArray()).subtract(low);
+        List<Object> boundaries = new ArrayList<Object>();
+
+        for (int i = 1; i < splits; i++) {
+            byte[] value = low.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(splits)))
+                    .toByteArray();
+            byte[] id = new byte[12];
+            // BigInteger may add a sign byte or drop leading zeros
+            int copy = Math.min(value.length, 12);
+            System.arraycopy(value, value.length - copy, id, 12 - copy, copy);
+            boundaries.add(new ObjectId(id));
+        }
+        return boundaries;
+    }
+
+    /**
+     *
+     * @param min
+     * @param max
+     * @param splits
+     * @return splits - 1 increasing boundaries between min and max
+     */
+    private static List<Object> timeBoundaries(long min, long max, int splits) {
+        List<Object> boundaries = new ArrayList<Object>();
+
+        for (int i = 1; i < splits; i++) {
+            boundaries.add(new Date(min + (max - min) * i / splits));
+        }
+        return boundaries;
+    }
+}
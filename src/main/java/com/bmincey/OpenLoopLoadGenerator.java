@@ -0,0 +1,200 @@
+package com.bmincey;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator.  Operations are scheduled at a fixed target rate regardless of how
+ * long earlier operations take, and run on an executor that grows up to maxThreads on demand.
+ * Latency is measured from the intended start time, so time spent waiting in the executor queue
+ * shows up in the numbers the way it would for real clients arriving at that rate.
+ *
+ * Each rate step reports the achieved vs. intended rate, queueing delay, and response and service
+ * time percentiles, which makes the saturation knee of a backend visible.
+ */
+public class OpenLoopLoadGenerator {
+
+    private static final long RANGE_MILLIS = 10000; // span of each read
+
+    private final MetricStore store;
+    private final int numHosts;
+    private final double readRatio;
+    private final int maxThreads;
+
+    private final ThreadLocal<SampleDataGenerator> generators = new ThreadLocal<SampleDataGenerator>() {
+        @Override
+        protected SampleDataGenerator initialValue() {
+            return new SampleDataGenerator(numHosts);
+        }
+    };
+
+    /**
+     *
+     * @param store
+     * @param numHosts
+     * @param readRatio fraction of operations that are range reads
+     * @param maxThreads upper bound on executor threads
+     */
+    public OpenLoopLoadGenerator(MetricStore store, int numHosts, double readRatio, int maxThreads) {
+        this.store = store;
+        this.numHosts = numHosts;
+        this.readRatio = readRatio;
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     *
+     * @param rates target operations per second, one step each
+     * @param stepSeconds duration of each step
+     */
+    public void run(int[] rates, int stepSeconds) {
+        System.out.println("Store: " + this.store + ", open-loop rate steps, step seconds = " +
+                stepSeconds + ", read ratio = " + this.readRatio + ", max threads = " + this.maxThreads);
+
+        this.store.createSchema();
+
+        System.out.printf("%10s %10s %10s %8s %10s %10s %10s %10s %10s%n", "target/s", "achieved/s", "completed",
+                "errors", "queue p50", "queue p99", "resp p50", "resp p99", "resp p99.9");
+
+        for (int rate : rates) {
+            this.runStep(rate, stepSeconds);
+        }
+    }
+
+    /**
+     *
+     * @param rate
+     * @param stepSeconds
+     */
+    private void runStep(int rate, int stepSeconds) {
+        final LatencyStats latencyStats = new LatencyStats(this.store + " @ " + rate + "/s", 0);
+        latencyStats.setFromIntendedStart(true);
+        final AtomicLong completed = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong lastCompletion = new AtomicLong();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(this.maxThreads, this.maxThreads,
+                10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * stepSeconds;
+        final long stepStarted = System.nanoTime();
+
+        for (long i = 0; i < total; i++) {
+            final long intended = stepStarted + i * intervalNanos;
+            long wait = intended - System.nanoTime();
+
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long started = System.nanoTime();
+                    latencyStats.recordMicros("queueDelay", TimeUnit.NANOSECONDS.toMicros(started - intended));
+
+                    boolean read = ThreadLocalRandom.current().nextDouble() < readRatio;
+                    try {
+                        if (read) {
+                            read();
+                        } else {
+                            write();
+                        }
+                        long finished = System.nanoTime();
+                        latencyStats.recordMicros("response", TimeUnit.NANOSECONDS.toMicros(finished - intended));
+                        latencyStats.recordMicros(read ? "readService" : "writeService",
+                                TimeUnit.NANOSECONDS.toMicros(finished - started));
+                        completed.incrementAndGet();
+                        lastCompletion.set(finished);
+                    } catch (RuntimeException e) {
+                        errors.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.HOURS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.store.flush();
+
+        long elapsedNanos = Math.max(1, lastCompletion.get() - stepStarted);
+        long achieved = completed.get() * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+
+        Map<String, Histogram> histograms = latencyStats.snapshot();
+        Histogram queue = histograms.containsKey("queueDelay") ? histograms.get("queueDelay") : new Histogram(3);
+        Histogram response = histograms.containsKey("response") ? histograms.get("response") : new Histogram(3);
+
+        System.out.printf("%10d %10d %10d %8d %10d %10d %10d %10d %10d%n", rate, achieved, completed.get(),
+                errors.get(), queue.getValueAtPercentile(50), queue.getValueAtPercentile(99),
+                response.getValueAtPercentile(50), response.getValueAtPercentile(99),
+                response.getValueAtPercentile(99.9));
+        latencyStats.print(System.out);
+    }
+
+    /**
+     *
+     */
+    private void write() {
+        SampleDataGenerator generator = this.generators.get();
+        String hostname = generator.nextHost();
+        int m = ThreadLocalRandom.current().nextInt(SampleDataGenerator.METRICS.length);
+
+        this.store.write(hostname, SampleDataGenerator.METRICS[m], System.currentTimeMillis(),
+                generator.nextValue() * SampleDataGenerator.MULTIPLIERS[m]);
+    }
+
+    /**
+     *
+     */
+    private void read() {
+        long now = System.currentTimeMillis();
+        this.store.rangeQuery(this.generators.get().nextHost(), "m1", now - RANGE_MILLIS, now + 1);
+    }
+
+    /**
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+            int numHosts = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.numHostsProperty, "100"));
+            int[] rates = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.openLoopRatesProperty, "1000,5000,10000,50000"));
+            int stepSeconds = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.openLoopStepSecondsProperty, "10"));
+            double readRatio = Double.parseDouble(appProps.getApplicationProperty(
+                    ApplicationProperties.openLoopReadRatioProperty, "0.1"));
+            int maxThreads = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.openLoopMaxThreadsProperty, "64"));
+
+            MetricStore store = MetricStoreFactory.create(storeName, appProps);
+            try {
+                new OpenLoopLoadGenerator(store, numHosts, readRatio, maxThreads).run(rates, stepSeconds);
+            } finally {
+                store.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
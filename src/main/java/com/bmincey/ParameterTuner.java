@@ -0,0 +1,437 @@
+package com.bmincey;
+
+import org.HdrHistogram.Histogram;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sweeps ingest settings on one open connection instead of editing application.properties and
+ * rerunning an example per setting.  Every trial writes random-walk points for a fixed time from
+ * the given number of producer threads through the store's pipelined writer, configured with
+ * the trial's batch size and concurrency:
+ *
+ * <ul>
+ *     <li>cassandra: CassandraAsyncWriter, batch size = rows per partition batch, concurrency =
+ *     requests in flight</li>
+ *     <li>mongodb: MongoBulkWriter, batch size = documents per bulk write, concurrency = bulk
+ *     writer threads</li>
+ *     <li>mongodb-async: MongoAsyncWriter, batch size = documents per insertMany, concurrency =
+ *     insertMany requests in flight</li>
+ *     <li>any other store: its own write method, so only the thread count is swept</li>
+ * </ul>
+ *
+ * The grid is walked batch size, then concurrency, then threads, each in the configured order.
+ * An axis stops growing once its best throughput improves by less than plateauPercent over the
+ * previous value, or once p99 latency exceeds the budget, since more of the same only adds
+ * queueing.  The schema is created once; trials append to it.
+ */
+public class ParameterTuner {
+
+    private static final long LINGER_MILLIS = 50;
+
+    private final MetricStore store;
+    private final long trialMillis;
+    private final long p99BudgetMicros;
+    private final double plateauPercent;
+    private final List<Trial> trials = new ArrayList<Trial>();
+    private Warmup warmup = new Warmup(0, 0);
+
+    /**
+     *
+     * @param store a store from MetricStoreFactory.createStore, not wrapped
+     * @param trialMillis duration of every trial
+     * @param p99BudgetMillis highest acceptable p99 write latency
+     * @param plateauPercent smallest throughput gain worth growing an axis for
+     */
+    public ParameterTuner(MetricStore store, long trialMillis, long p99BudgetMillis, double plateauPercent) {
+        this.store = store;
+        this.trialMillis = trialMillis;
+        this.p99BudgetMicros = TimeUnit.MILLISECONDS.toMicros(p99BudgetMillis);
+        this.plateauPercent = plateauPercent;
+    }
+
+    /**
+     *
+     * @param warmup untimed writes before the first trial
+     */
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     *
+     * @param batchSizes
+     * @param concurrencies
+     * @param threadCounts
+     * @return the trial with the highest throughput within the latency budget, or null
+     */
+    public Trial tune(int[] batchSizes, int[] concurrencies, int[] threadCounts) {
+        if (!this.isPipelined()) {
+            System.out.println("Store " + this.store.getName() + " has no pipelined writer, sweeping threads only");
+            batchSizes = new int[] {1};
+            concurrencies = new int[] {1};
+        }
+
+        this.store.createSchema();
+        if (this.warmup.isEnabled()) {
+            final ThreadLocal<SampleDataGenerator> generators = new ThreadLocal<SampleDataGenerator>() {
+                @Override
+                protected SampleDataGenerator initialValue() {
+                    return new SampleDataGenerator(100);
+                }
+            };
+
+            this.warmup.run(threadCounts[0], new Runnable() {
+                @Override
+                public void run() {
+                    SampleDataGenerator generator = generators.get();
+                    store.write(generator.nextHost(), SampleDataGenerator.METRICS[0], System.currentTimeMillis(),
+                            generator.nextValue());
+                }
+            });
+        }
+
+        Trial best = null;
+        long previousBatchBest = 0;
+
+        for (int batchSize : batchSizes) {
+            long batchBest = 0;
+            long previousConcurrencyBest = 0;
+
+            for (int concurrency : concurrencies) {
+                long concurrencyBest = 0;
+                long previousThreads = 0;
+
+                for (int threads : threadCounts) {
+                    Trial trial = this.runTrial(batchSize, concurrency, threads);
+                    this.trials.add(trial);
+                    System.out.println("Trial: " + trial);
+
+                    if (trial.getP99Micros() > this.p99BudgetMicros) {
+                        trial.note = "over budget";
+                        break;
+                    }
+                    if (best == null || trial.getRowsPerSecond() > best.getRowsPerSecond()) {
+                        best = trial;
+                    }
+                    concurrencyBest = Math.max(concurrencyBest, trial.getRowsPerSecond());
+
+                    if (this.plateaued(previousThreads, trial.getRowsPerSecond())) {
+                        trial.note = "threads plateau";
+                        break;
+                    }
+                    previousThreads = trial.getRowsPerSecond();
+                }
+
+                batchBest = Math.max(batchBest, concurrencyBest);
+                if (this.plateaued(previousConcurrencyBest, concurrencyBest)) {
+                    this.trials.get(this.trials.size() - 1).note += " (concurrency plateau)";
+                    break;
+                }
+                previousConcurrencyBest = concurrencyBest;
+            }
+
+            if (this.plateaued(previousBatchBest, batchBest)) {
+                this.trials.get(this.trials.size() - 1).note += " (batch size plateau)";
+                break;
+            }
+            previousBatchBest = batchBest;
+        }
+
+        this.printTable(best);
+        return best;
+    }
+
+    /**
+     *
+     * @param previous
+     * @param current
+     * @return whether current is less than plateauPercent above previous
+     */
+    private boolean plateaued(long previous, long current) {
+        return previous > 0 && current < previous * (1 + this.plateauPercent / 100);
+    }
+
+    /**
+     *
+     * @param batchSize
+     * @param concurrency
+     * @param threads
+     * @return
+     */
+    private Trial runTrial(int batchSize, int concurrency, int threads) {
+        LatencyStats latencyStats = new LatencyStats(this.store.getName(), 0);
+        final TrialWriter writer = this.openWriter(batchSize, concurrency, latencyStats);
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.trialMillis);
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+
+        for (int t = 0; t < threads; t++) {
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    SampleDataGenerator generator = new SampleDataGenerator(100);
+                    long rows = 0;
+
+                    while (deadline - System.nanoTime() > 0) {
+                        long now = System.currentTimeMillis();
+                        String hostname = generator.nextHost();
+                        double nextValue = generator.nextValue();
+
+                        for (int m = 0; m < SampleDataGenerator.METRICS.length; m++) {
+                            writer.write(hostname, SampleDataGenerator.METRICS[m], now,
+                                    nextValue * SampleDataGenerator.MULTIPLIERS[m]);
+                            rows++;
+                        }
+                    }
+                    return rows;
+                }
+            });
+        }
+
+        long started = System.nanoTime();
+        long rows = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                rows += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+            writer.close();
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        Histogram latencies = new Histogram(3);
+        for (Histogram histogram : latencyStats.snapshot().values()) {
+            latencies.add(histogram);
+        }
+        return new Trial(batchSize, concurrency, threads, SampleDataGenerator.rowsPerSecond(rows, elapsedMillis),
+                latencies.getValueAtPercentile(99));
+    }
+
+    /**
+     *
+     * @return whether the store has a writer taking a batch size and concurrency
+     */
+    private boolean isPipelined() {
+        return this.store instanceof CassandraMetricStore || this.store instanceof MongoDBMetricStore ||
+                this.store instanceof MongoDBAsyncMetricStore;
+    }
+
+    /**
+     *
+     * @param batchSize
+     * @param concurrency
+     * @param latencyStats receives the latency of every request
+     * @return a writer for one trial
+     */
+    private TrialWriter openWriter(int batchSize, int concurrency, final LatencyStats latencyStats) {
+        if (this.store instanceof CassandraMetricStore) {
+            CassandraMetricStore cassandra = (CassandraMetricStore) this.store;
+            final CassandraAsyncWriter writer = new CassandraAsyncWriter(cassandra.getSession(),
+                    cassandra.getInsert(), concurrency, batchSize, latencyStats);
+
+            return new TrialWriter() {
+                @Override
+                public void write(String host, String metric, long time, double value) {
+                    writer.write(host, metric, time, value);
+                }
+
+                @Override
+                public void close() {
+                    writer.flush();
+                }
+            };
+        }
+        else if (this.store instanceof MongoDBMetricStore) {
+            final MongoBulkWriter<Document> writer = new MongoBulkWriter<Document>(
+                    ((MongoDBMetricStore) this.store).getCollection(), batchSize, LINGER_MILLIS, false, concurrency,
+                    latencyStats);
+
+            return new TrialWriter() {
+                @Override
+                public void write(String host, String metric, long time, double value) {
+                    writer.insert(new Document("host", host).append("metric", metric)
+                            .append("time", new Date(time)).append("value", value));
+                }
+
+                @Override
+                public void close() {
+                    writer.close();
+                }
+            };
+        }
+        else if (this.store instanceof MongoDBAsyncMetricStore) {
+            final MongoAsyncWriter<Document> writer = new MongoAsyncWriter<Document>(
+                    ((MongoDBAsyncMetricStore) this.store).getCollection(), batchSize, LINGER_MILLIS, concurrency,
+                    false, latencyStats);
+
+            return new TrialWriter() {
+                @Override
+                public void write(String host, String metric, long time, double value) {
+                    writer.insert(new Document("host", host).append("metric", metric)
+                            .append("time", new Date(time)).append("value", value));
+                }
+
+                @Override
+                public void close() {
+                    writer.close();
+                }
+            };
+        }
+
+        return new TrialWriter() {
+            @Override
+            public void write(String host, String metric, long time, double value) {
+                long started = System.nanoTime();
+                store.write(host, metric, time, value);
+                latencyStats.record("insert", started);
+            }
+
+            @Override
+            public void close() {
+                store.flush();
+            }
+        };
+    }
+
+    /**
+     *
+     * @param best
+     */
+    private void printTable(Trial best) {
+        System.out.println("Parameter sweep for " + this.store + ", trial = " + this.trialMillis +
+                " ms, p99 budget = " + TimeUnit.MICROSECONDS.toMillis(this.p99BudgetMicros) + " ms, plateau = " +
+                this.plateauPercent + "%");
+        System.out.printf("%10s %12s %8s %12s %10s  %s%n", "batch", "concurrency", "threads", "rows/sec",
+                "p99 us", "stopped");
+        for (Trial trial : this.trials) {
+            System.out.printf("%10d %12d %8d %12d %10d  %s%n", trial.getBatchSize(), trial.getConcurrency(),
+                    trial.getThreads(), trial.getRowsPerSecond(), trial.getP99Micros(), trial.note);
+        }
+
+        if (best == null) {
+            System.out.println("Best: no configuration met the p99 budget");
+        } else {
+            System.out.println("Best: " + best);
+        }
+    }
+
+    public List<Trial> getTrials() {
+        return trials;
+    }
+
+    /**
+     * Destination of one trial's writes.
+     */
+    private interface TrialWriter {
+
+        void write(String host, String metric, long time, double value);
+
+        /**
+         * Blocks until every write has been acknowledged.
+         */
+        void close();
+    }
+
+    /**
+     * Result of one point of the grid.
+     */
+    public static class Trial {
+
+        private final int batchSize;
+        private final int concurrency;
+        private final int threads;
+        private final long rowsPerSecond;
+        private final long p99Micros;
+        private String note = "";
+
+        Trial(int batchSize, int concurrency, int threads, long rowsPerSecond, long p99Micros) {
+            this.batchSize = batchSize;
+            this.concurrency = concurrency;
+            this.threads = threads;
+            this.rowsPerSecond = rowsPerSecond;
+            this.p99Micros = p99Micros;
+        }
+
+        public int getBatchSize() {
+            return batchSize;
+        }
+
+        public int getConcurrency() {
+            return concurrency;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public long getRowsPerSecond() {
+            return rowsPerSecond;
+        }
+
+        public long getP99Micros() {
+            return p99Micros;
+        }
+
+        @Override
+        public String toString() {
+            return "batch size = " + this.batchSize + ", concurrency = " + this.concurrency + ", threads = " +
+                    this.threads + ", rows/sec = " + this.rowsPerSecond + ", p99 = " + this.p99Micros + " us";
+        }
+    }
+
+    /**
+     *
+     * @param args store names, default the store property
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+
+            String[] storeNames = args.length > 0 ? args : new String[] {appProps.getApplicationProperty(
+                    ApplicationProperties.storeProperty, MetricStoreFactory.CASSANDRA)};
+            int[] batchSizes = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.tunerBatchSizesProperty, "1,10,100,1000"));
+            int[] concurrencies = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.tunerConcurrencyProperty, "1,4,16,64"));
+            int[] threadCounts = ApplicationProperties.parseIntList(appProps.getApplicationProperty(
+                    ApplicationProperties.tunerThreadsProperty, "1,2,4,8"));
+            long trialMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.tunerTrialSecondsProperty, "5")));
+            long p99BudgetMillis = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.tunerP99BudgetMsProperty, "50"));
+            double plateauPercent = Double.parseDouble(appProps.getApplicationProperty(
+                    ApplicationProperties.tunerPlateauPercentProperty, "5"));
+
+            for (String storeName : storeNames) {
+                MetricStore store = MetricStoreFactory.createStore(storeName, appProps);
+                try {
+                    ParameterTuner tuner = new ParameterTuner(store, trialMillis, p99BudgetMillis, plateauPercent);
+                    tuner.setWarmup(Warmup.fromProperties(appProps));
+                    tuner.tune(batchSizes, concurrencies, threadCounts);
+                } finally {
+                    store.close();
+                }
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
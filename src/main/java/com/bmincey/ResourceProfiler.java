@@ -0,0 +1,213 @@
+package com.bmincey;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Client-side cost of each phase of a run, to tell time spent in the client JVM from time spent
+ * waiting on the database.  Around every phase it samples heap bytes allocated by all live
+ * threads, collection counts and times of every garbage collector and the CPU time of the
+ * process, and reports them normalized per operation and per point.  Allocations of threads
+ * that exit during a phase are lost, so phases should run on long-lived threads.  Counters the
+ * JVM does not provide are reported as -1.
+ */
+public class ResourceProfiler {
+
+    private final String backend;
+    private final List<Phase> phases = new ArrayList<Phase>();
+
+    private String phaseName;
+    private long startedNanos;
+    private long startedCpuNanos;
+    private long startedAllocatedBytes;
+    private long startedGcCount;
+    private long startedGcMillis;
+
+    /**
+     *
+     * @param backend name used in the report
+     */
+    public ResourceProfiler(String backend) {
+        this.backend = backend;
+    }
+
+    /**
+     * Starts a phase; phases do not nest.
+     *
+     * @param name
+     */
+    public void start(String name) {
+        this.phaseName = name;
+        this.startedGcCount = gcCount();
+        this.startedGcMillis = gcMillis();
+        this.startedAllocatedBytes = AllocationMeter.allThreadsAllocatedBytes();
+        this.startedCpuNanos = processCpuNanos();
+        this.startedNanos = System.nanoTime();
+    }
+
+    /**
+     * Ends the phase started last.
+     *
+     * @param operations requests issued in the phase
+     * @param points points written or read in the phase
+     * @return the phase
+     */
+    public Phase stop(long operations, long points) {
+        long wallNanos = System.nanoTime() - this.startedNanos;
+        long cpuNanos = processCpuNanos();
+        long allocatedBytes = AllocationMeter.allThreadsAllocatedBytes();
+
+        Phase phase = new Phase(this.phaseName, operations, points, wallNanos,
+                cpuNanos < 0 ? -1 : cpuNanos - this.startedCpuNanos,
+                allocatedBytes < 0 ? -1 : allocatedBytes - this.startedAllocatedBytes,
+                gcCount() - this.startedGcCount, gcMillis() - this.startedGcMillis);
+        this.phases.add(phase);
+        return phase;
+    }
+
+    public List<Phase> getPhases() {
+        return Collections.unmodifiableList(phases);
+    }
+
+    /**
+     *
+     * @param out
+     */
+    public void print(PrintStream out) {
+        out.println("Client resources for " + this.backend + ":");
+        out.printf("%-16s %10s %10s %10s %10s %12s %12s %12s %6s %8s%n", "phase", "ops", "points", "wall ms",
+                "cpu ms", "cpu us/op", "alloc MB", "bytes/point", "gcs", "gc ms");
+        for (Phase phase : this.phases) {
+            out.printf("%-16s %10d %10d %10d %10d %12d %12.1f %12d %6d %8d%n", phase.getName(),
+                    phase.getOperations(), phase.getPoints(), phase.getWallNanos() / 1000000,
+                    phase.getCpuNanos() < 0 ? -1 : phase.getCpuNanos() / 1000000, phase.getCpuMicrosPerOperation(),
+                    phase.getAllocatedBytes() < 0 ? -1 : phase.getAllocatedBytes() / (1024.0 * 1024.0),
+                    phase.getBytesPerPoint(), phase.getGcCount(), phase.getGcMillis());
+        }
+    }
+
+    /**
+     *
+     * @return CPU time of the process so far, -1 if not supported
+     */
+    private static long processCpuNanos() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    /**
+     *
+     * @return collections so far over all collectors
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    /**
+     *
+     * @return accumulated collection time so far over all collectors
+     */
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return millis;
+    }
+
+    /**
+     * Resource usage of one finished phase.
+     */
+    public static class Phase {
+
+        private final String name;
+        private final long operations;
+        private final long points;
+        private final long wallNanos;
+        private final long cpuNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        Phase(String name, long operations, long points, long wallNanos, long cpuNanos, long allocatedBytes,
+              long gcCount, long gcMillis) {
+            this.name = name;
+            this.operations = operations;
+            this.points = points;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getOperations() {
+            return operations;
+        }
+
+        public long getPoints() {
+            return points;
+        }
+
+        public long getWallNanos() {
+            return wallNanos;
+        }
+
+        /**
+         *
+         * @return process CPU time, -1 if not supported
+         */
+        public long getCpuNanos() {
+            return cpuNanos;
+        }
+
+        /**
+         *
+         * @return bytes allocated by all threads, -1 if not supported
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        public long getGcCount() {
+            return gcCount;
+        }
+
+        public long getGcMillis() {
+            return gcMillis;
+        }
+
+        /**
+         *
+         * @return process CPU microseconds per operation, -1 if unknown
+         */
+        public long getCpuMicrosPerOperation() {
+            return this.cpuNanos < 0 || this.operations == 0 ? -1 : this.cpuNanos / 1000 / this.operations;
+        }
+
+        /**
+         *
+         * @return bytes allocated per point, -1 if unknown
+         */
+        public long getBytesPerPoint() {
+            return this.allocatedBytes < 0 || this.points == 0 ? -1 : this.allocatedBytes / this.points;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.bmincey;
+
+/**
+ * Min, max, sum and count of one (host, metric) series over one window.  The window is the start
+ * time of the window in epoch milliseconds, or ALL_TIME for the aggregate of the whole series.
+ */
+public class Rollup {
+
+    public static final long ALL_TIME = Long.MIN_VALUE;
+
+    private final String host;
+    private final String metric;
+    private final long window;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double sum = 0;
+    private long count = 0;
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param window
+     */
+    public Rollup(String host, String metric, long window) {
+        this.host = host;
+        this.metric = metric;
+        this.window = window;
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param window
+     * @param min
+     * @param max
+     * @param sum
+     * @param count
+     */
+    public Rollup(String host, String metric, long window, double min, double max, double sum, long count) {
+        this(host, metric, window);
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+    }
+
+    /**
+     *
+     * @param value
+     */
+    public synchronized void add(double value) {
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+        this.sum += value;
+        this.count++;
+    }
+
+    /**
+     *
+     * @param other
+     */
+    public synchronized void merge(Rollup other) {
+        Rollup copy = other.copy();
+
+        this.min = Math.min(this.min, copy.min);
+        this.max = Math.max(this.max, copy.max);
+        this.sum += copy.sum;
+        this.count += copy.count;
+    }
+
+    /**
+     *
+     * @return a consistent copy of this rollup
+     */
+    public synchronized Rollup copy() {
+        return new Rollup(this.host, this.metric, this.window, this.min, this.max, this.sum, this.count);
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    public long getWindow() {
+        return window;
+    }
+
+    public synchronized double getMin() {
+        return min;
+    }
+
+    public synchronized double getMax() {
+        return max;
+    }
+
+    public synchronized double getSum() {
+        return sum;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     *
+     * @return the mean value, or NaN when the rollup is empty
+     */
+    public synchronized double getAverage() {
+        return this.count == 0 ? Double.NaN : this.sum / this.count;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "count = " + this.count + ", min = " + this.min + ", max = " + this.max + ", avg = " + this.getAverage();
+    }
+}
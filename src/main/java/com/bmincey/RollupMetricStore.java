@@ -0,0 +1,321 @@
+package com.bmincey;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricStore decorator that maintains min/max/sum/count rollups in the write path.  Each write
+ * updates the rollup of its (host, metric, window) and the all-time rollup of its series in
+ * memory.  Rollups changed since the last flush are written to a RollupSink every flush interval
+ * and on flush().  maxQuery and avgQuery are answered from the all-time rollup kept in memory,
+ * falling back to the stored one for a series this process has not written, so they see every
+ * write at once.  Windowed aggregates are read from the stored window rollups and are as fresh
+ * as the last flush.  Neither cost depends on how many points the series holds.  Every other
+ * operation goes to the wrapped store.
+ *
+ * Rollups are cumulative over the life of the process, so a flush writes the full state of each
+ * changed rollup and a late point simply updates its window again.  A write that replaces an
+ * existing (host, metric, time) is counted again, since the replaced value is not known.
+ *
+ * A window is closed once a later window has been written to.  Window rollups that are flushed
+ * and closed are dropped from memory after each flush, so only open windows and the all-time
+ * rollups stay resident.  A late point for a dropped window reloads it from the sink first.
+ */
+public class RollupMetricStore implements MetricStore {
+
+    private final MetricStore store;
+    private final RollupSink sink;
+    private final long windowMillis;
+    private final long flushMillis;
+
+    private final ConcurrentMap<String, Rollup> rollups = new ConcurrentHashMap<String, Rollup>();
+    private final ConcurrentMap<String, Rollup> dirty = new ConcurrentHashMap<String, Rollup>();
+    private final AtomicLong latestTime = new AtomicLong(Long.MIN_VALUE);
+    private final ScheduledExecutorService flusher;
+
+    /**
+     *
+     * @param store the store raw points are written to
+     * @param sink where rollups are flushed
+     * @param windowMillis length of a rollup window
+     * @param flushMillis interval between rollup flushes
+     */
+    public RollupMetricStore(MetricStore store, RollupSink sink, long windowMillis, long flushMillis) {
+        this.store = store;
+        this.sink = sink;
+        this.windowMillis = windowMillis;
+        this.flushMillis = flushMillis;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "rollup-flush");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    flushRollups();
+                } catch (RuntimeException e) {
+                    System.err.println("Rollup flush failed: " + e);
+                }
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String getName() {
+        return this.store.getName() + "+rollups";
+    }
+
+    @Override
+    public String toString() {
+        return this.store + ", rollup window = " + this.windowMillis + " ms, rollup flush = " +
+                this.flushMillis + " ms";
+    }
+
+    @Override
+    public void createSchema() {
+        this.store.createSchema();
+        this.sink.createSchema();
+        this.rollups.clear();
+        this.dirty.clear();
+        this.latestTime.set(Long.MIN_VALUE);
+    }
+
+    @Override
+    public void write(String host, String metric, long time, double value) {
+        this.store.write(host, metric, time, value);
+
+        long latest = this.latestTime.get();
+        while (time > latest && !this.latestTime.compareAndSet(latest, time)) {
+            latest = this.latestTime.get();
+        }
+        this.update(host, metric, this.windowOf(time), value);
+        this.update(host, metric, Rollup.ALL_TIME, value);
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param window
+     * @param value
+     */
+    private void update(String host, String metric, long window, double value) {
+        String key = rollupKey(host, metric, window);
+
+        while (true) {
+            Rollup rollup = this.rollups.get(key);
+
+            if (rollup == null) {
+                Rollup created = new Rollup(host, metric, window);
+                if (this.isClosed(window)) {
+                    // may have been evicted, so continue from the flushed state
+                    Rollup stored = this.sink.read(host, metric, window);
+                    if (stored != null) {
+                        created.merge(stored);
+                    }
+                }
+                rollup = this.rollups.putIfAbsent(key, created);
+                if (rollup == null) {
+                    rollup = created;
+                }
+            }
+
+            // eviction holds the same lock, so the value and dirty mark land together or not at all
+            synchronized (rollup) {
+                if (this.rollups.get(key) == rollup) {
+                    rollup.add(value);
+                    // marked after the update, so a flush that misses this value sees the key again
+                    this.dirty.put(key, rollup);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     *
+     * @param window
+     * @return whether a later window has been written to
+     */
+    private boolean isClosed(long window) {
+        return window != Rollup.ALL_TIME && window + this.windowMillis <= this.latestTime.get();
+    }
+
+    /**
+     * Flushes the wrapped store, then writes every rollup changed since the last flush.
+     */
+    @Override
+    public void flush() {
+        this.store.flush();
+        this.flushRollups();
+    }
+
+    /**
+     * Writes the changed rollups, then evicts window rollups that are closed and unchanged since.
+     *
+     * @return number of rollups written
+     */
+    synchronized int flushRollups() {
+        List<Rollup> changed = new ArrayList<Rollup>();
+
+        for (String key : this.dirty.keySet()) {
+            Rollup rollup = this.dirty.remove(key);
+            if (rollup != null) {
+                changed.add(rollup.copy());
+            }
+        }
+        if (!changed.isEmpty()) {
+            this.sink.write(changed);
+        }
+
+        for (Map.Entry<String, Rollup> entry : this.rollups.entrySet()) {
+            Rollup rollup = entry.getValue();
+
+            if (this.isClosed(rollup.getWindow())) {
+                synchronized (rollup) {
+                    if (!this.dirty.containsKey(entry.getKey())) {
+                        this.rollups.remove(entry.getKey(), rollup);
+                    }
+                }
+            }
+        }
+        return changed.size();
+    }
+
+    @Override
+    public Double pointQuery(String host, String metric, long time) {
+        return this.store.pointQuery(host, metric, time);
+    }
+
+    @Override
+    public int rangeQuery(String host, String metric, long from, long to) {
+        return this.store.rangeQuery(host, metric, from, to);
+    }
+
+    @Override
+    public SeriesPage readRange(String host, String metric, long from, long to, int limit, String pagingState) {
+        return this.store.readRange(host, metric, from, to, limit, pagingState);
+    }
+
+    @Override
+    public int[] multiRangeQuery(List<SeriesId> series, long from, long to) {
+        return this.store.multiRangeQuery(series, from, to);
+    }
+
+    /**
+     * Served from the all-time rollup, including writes not flushed yet.
+     *
+     * @param host
+     * @param metric
+     * @return
+     */
+    @Override
+    public Double maxQuery(String host, String metric) {
+        Rollup rollup = this.allTime(host, metric);
+        return rollup == null || rollup.getCount() == 0 ? null : rollup.getMax();
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @return the mean of the series from the all-time rollup, or null
+     */
+    public Double avgQuery(String host, String metric) {
+        Rollup rollup = this.allTime(host, metric);
+        return rollup == null || rollup.getCount() == 0 ? null : rollup.getAverage();
+    }
+
+    /**
+     * The in-memory rollup holds every value written since createSchema, which also dropped the
+     * stored rollups, so it is never behind the sink; the sink is only read when it is missing.
+     *
+     * @param host
+     * @param metric
+     * @return the all-time rollup of the series, or null
+     */
+    private Rollup allTime(String host, String metric) {
+        Rollup rollup = this.rollups.get(rollupKey(host, metric, Rollup.ALL_TIME));
+        return rollup != null ? rollup : this.sink.read(host, metric, Rollup.ALL_TIME);
+    }
+
+    /**
+     * Merges the stored window rollups.  The range is widened to whole windows.
+     *
+     * @param host
+     * @param metric
+     * @param from inclusive
+     * @param to exclusive
+     * @return the aggregate of every window overlapping the range
+     */
+    public Rollup rollupQuery(String host, String metric, long from, long to) {
+        Rollup merged = new Rollup(host, metric, this.windowOf(from));
+
+        for (Rollup rollup : this.sink.read(host, metric, this.windowOf(from), to)) {
+            merged.merge(rollup);
+        }
+        return merged;
+    }
+
+    @Override
+    public long scan() {
+        return this.store.scan();
+    }
+
+    @Override
+    public String storageStats() {
+        return this.store.storageStats() + ", rollups = " + this.rollups.size();
+    }
+
+    /**
+     *
+     * @return number of rollups held in memory
+     */
+    int getResidentRollups() {
+        return this.rollups.size();
+    }
+
+    /**
+     *
+     * @param time
+     * @return start of the window containing time
+     */
+    long windowOf(long time) {
+        return time - Math.floorMod(time, this.windowMillis);
+    }
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param window
+     * @return
+     */
+    static String rollupKey(String host, String metric, long window) {
+        return host + ':' + metric + ':' + window;
+    }
+
+    @Override
+    public void close() {
+        this.flusher.shutdownNow();
+        try {
+            this.flushRollups();
+        } finally {
+            this.store.close();
+        }
+    }
+}
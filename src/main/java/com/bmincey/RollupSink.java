@@ -0,0 +1,41 @@
+package com.bmincey;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Table or collection the rollups of a RollupMetricStore are flushed to and read from.  Rollups
+ * are written whole, so writing a (host, metric, window) again replaces the stored one.
+ */
+public interface RollupSink {
+
+    /**
+     * Drops and recreates the rollup table or collection.
+     */
+    void createSchema();
+
+    /**
+     *
+     * @param rollups
+     */
+    void write(Collection<Rollup> rollups);
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param window
+     * @return the stored rollup, or null
+     */
+    Rollup read(String host, String metric, long window);
+
+    /**
+     *
+     * @param host
+     * @param metric
+     * @param fromWindow inclusive
+     * @param toWindow exclusive
+     * @return the stored rollups of windows in the range, ordered by window
+     */
+    List<Rollup> read(String host, String metric, long fromWindow, long toWindow);
+}
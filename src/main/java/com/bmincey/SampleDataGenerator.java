@@ -0,0 +1,80 @@
+package com.bmincey;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Random-walk sample data shared by the examples and the workload driver.  Each iteration picks a
+ * random host name and produces one value per metric, scaled by the metric's multiplier.
+ * An instance keeps its own walk and is meant to be used by a single thread.
+ */
+public class SampleDataGenerator {
+
+    public static final String[] METRICS = {"m1", "m2", "m3"};
+    public static final double[] MULTIPLIERS = {1, 10, 100};
+
+    public static final double START_VALUE = 100; // start value for random walk
+
+    private final int numHosts;
+    private final String[] hostNames; // "host0" .. "hostN", built once so nextHost does not allocate
+    private double nextValue = START_VALUE; // next value in random walk, initially START_VALUE
+
+    /**
+     *
+     * @param numHosts how many host names to generate
+     */
+    public SampleDataGenerator(int numHosts) {
+        this.numHosts = numHosts;
+        this.hostNames = new String[numHosts + 1];
+
+        for (int h = 0; h <= numHosts; h++) {
+            this.hostNames[h] = ("host" + h).intern();
+        }
+    }
+
+    /**
+     *
+     * @return a random host name
+     */
+    public String nextHost() {
+        return this.hostNames[(int) Math.round((ThreadLocalRandom.current().nextDouble() * this.numHosts))];
+    }
+
+    /**
+     * Advances the random walk to produce realistic data.
+     *
+     * @return next value of the random walk
+     */
+    public double nextValue() {
+        double rand = ThreadLocalRandom.current().nextDouble();
+
+        if (rand < 0.5) {
+            // 50% chance that value doesn't change
+        } else if (rand < 0.75) {
+            // 25% chance that value increases by 1
+            this.nextValue++;
+        } else {
+            // 25% chance that value decreases by 1
+            this.nextValue--;
+        }
+
+        // never go negative
+        if (this.nextValue < 0) {
+            this.nextValue = 0;
+        }
+        return this.nextValue;
+    }
+
+    public int getNumHosts() {
+        return numHosts;
+    }
+
+    /**
+     *
+     * @param rows
+     * @param millis
+     * @return
+     */
+    public static long rowsPerSecond(long rows, long millis) {
+        return millis == 0 ? rows * 1000 : rows * 1000 / millis;
+    }
+}
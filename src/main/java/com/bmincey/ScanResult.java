@@ -0,0 +1,48 @@
+package com.bmincey;
+
+/**
+ * Totals of a full scan, merged over every range or cursor that took part in it.
+ */
+public class ScanResult {
+
+    private long rows = 0;
+    private long bytes = 0;
+    private int ranges = 0;
+
+    /**
+     *
+     * @param rows
+     * @param bytes
+     */
+    public synchronized void add(long rows, long bytes) {
+        this.rows += rows;
+        this.bytes += bytes;
+        this.ranges++;
+    }
+
+    public synchronized long getRows() {
+        return rows;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getRanges() {
+        return ranges;
+    }
+
+    /**
+     *
+     * @param millis elapsed time of the scan
+     * @return
+     */
+    public String toString(long millis) {
+        double megabytes = this.getBytes() / (1024.0 * 1024.0);
+        double seconds = Math.max(millis, 1) / 1000.0;
+
+        return String.format("rows = %d, bytes = %d, ranges = %d, rows/sec = %d, MB/sec = %.2f",
+                this.getRows(), this.getBytes(), this.getRanges(),
+                SampleDataGenerator.rowsPerSecond(this.getRows(), millis), megabytes / seconds);
+    }
+}
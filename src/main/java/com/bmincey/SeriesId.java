@@ -0,0 +1,85 @@
+package com.bmincey;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A (host, metric) pair naming one series, for queries over several series at once.
+ */
+public class SeriesId {
+
+    private final String host;
+    private final String metric;
+
+    /**
+     *
+     * @param host
+     * @param metric
+     */
+    public SeriesId(String host, String metric) {
+        this.host = host;
+        this.metric = metric;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public String getMetric() {
+        return metric;
+    }
+
+    /**
+     *
+     * @param series
+     * @return one counter per distinct series, for merging results that arrive in any order
+     */
+    static Map<SeriesId, int[]> counters(List<SeriesId> series) {
+        Map<SeriesId, int[]> counters = new HashMap<SeriesId, int[]>();
+
+        for (SeriesId id : series) {
+            if (!counters.containsKey(id)) {
+                counters.put(id, new int[1]);
+            }
+        }
+        return counters;
+    }
+
+    /**
+     *
+     * @param series
+     * @param counters as returned by counters(series)
+     * @return the count of every series, in the order of series
+     */
+    static int[] counts(List<SeriesId> series, Map<SeriesId, int[]> counters) {
+        int[] counts = new int[series.size()];
+
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = counters.get(series.get(i))[0];
+        }
+        return counts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SeriesId)) {
+            return false;
+        }
+        SeriesId other = (SeriesId) o;
+        return this.host.equals(other.host) && this.metric.equals(other.metric);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * this.host.hashCode() + this.metric.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.host + "/" + this.metric;
+    }
+}
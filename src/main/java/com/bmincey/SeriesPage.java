@@ -0,0 +1,190 @@
+package com.bmincey;
+
+/**
+ * One page of a time-range read in columnar form: parallel long[] times and double[] values,
+ * filled straight from driver rows or raw BSON without an object per point.
+ *
+ * Pages are resumed with an opaque paging state that records the time of the last point
+ * returned and how many points at that time were returned, so the next page starts at that time
+ * and skips them.  A store reads a page by reading the points in [startTime, to) in time order,
+ * skipping the first getSkip() of them, and offering up to limit + 1 points; the extra point
+ * only tells the page that another one follows.
+ *
+ * A store whose points carry a unique key ordering points at the same time records the key of
+ * the last point with setLastKey instead.  Its paging state then holds (time, key), and the next
+ * page reads the points after that pair without skipping anything.
+ */
+public class SeriesPage {
+
+    private final long[] times;
+    private final double[] values;
+    private final long startTime;
+    private final int skip;
+    private final String afterKey;
+    private String lastKey;
+    private int size;
+    private boolean more;
+
+    /**
+     *
+     * @param from start of the range, used when pagingState is null
+     * @param limit maximum points in the page
+     * @param pagingState from the previous page, or null for the first page
+     */
+    public SeriesPage(long from, int limit, String pagingState) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page limit must be positive: " + limit);
+        }
+        this.times = new long[limit];
+        this.values = new double[limit];
+
+        if (pagingState == null) {
+            this.startTime = from;
+            this.skip = 0;
+            this.afterKey = null;
+        } else if (pagingState.indexOf('/') >= 0) {
+            int separator = pagingState.indexOf('/');
+            this.startTime = Long.parseLong(pagingState.substring(0, separator));
+            this.skip = 0;
+            this.afterKey = pagingState.substring(separator + 1);
+        } else {
+            int separator = pagingState.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid paging state: " + pagingState);
+            }
+            this.startTime = Long.parseLong(pagingState.substring(0, separator));
+            this.skip = Integer.parseInt(pagingState.substring(separator + 1));
+            this.afterKey = null;
+        }
+    }
+
+    /**
+     *
+     * @return time the page starts at, inclusive
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     *
+     * @return points at getStartTime() returned by earlier pages, to be skipped
+     */
+    public int getSkip() {
+        return skip;
+    }
+
+    /**
+     *
+     * @return key of the last point returned at getStartTime(), or null when the page starts at
+     * getStartTime() inclusive
+     */
+    public String getAfterKey() {
+        return afterKey;
+    }
+
+    /**
+     *
+     * @return maximum points in the page
+     */
+    public int getLimit() {
+        return times.length;
+    }
+
+    /**
+     * Adds the next point in time order.
+     *
+     * @param time
+     * @param value
+     * @return false once the page is full, after which further points are not needed
+     */
+    public boolean offer(long time, double value) {
+        if (this.size == this.times.length) {
+            this.more = true;
+            return false;
+        }
+        this.times[this.size] = time;
+        this.values[this.size] = value;
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Records the key of the point just offered.  Only the key of the last point in the page is
+     * kept, so a store can read keys just for that point, when remaining() is 1 before offering.
+     *
+     * @param key
+     */
+    public void setLastKey(String key) {
+        this.lastKey = key;
+    }
+
+    /**
+     *
+     * @return points that still fit in the page
+     */
+    public int remaining() {
+        return this.times.length - this.size;
+    }
+
+    /**
+     *
+     * @return whether a point was offered past the limit
+     */
+    public boolean isFull() {
+        return more;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     *
+     * @return times of the page; only the first size() entries are valid
+     */
+    public long[] getTimes() {
+        return times;
+    }
+
+    /**
+     *
+     * @return values of the page; only the first size() entries are valid
+     */
+    public double[] getValues() {
+        return values;
+    }
+
+    /**
+     *
+     * @return state to pass for the next page, or null when the range has no more points
+     */
+    public String getPagingState() {
+        if (!this.more) {
+            return null;
+        }
+
+        long last = this.times[this.size - 1];
+        if (this.lastKey != null) {
+            return last + "/" + this.lastKey;
+        }
+
+        int atLast = 0;
+        for (int i = this.size - 1; i >= 0 && this.times[i] == last; i--) {
+            atLast++;
+        }
+        if (atLast == this.size && last == this.startTime) {
+            atLast += this.skip;
+        }
+        return last + ":" + atLast;
+    }
+
+    @Override
+    public String toString() {
+        if (this.size == 0) {
+            return "points = 0";
+        }
+        return "points = " + this.size + ", first = " + this.times[0] + " " + this.values[0] +
+                ", last = " + this.times[this.size - 1] + " " + this.values[this.size - 1];
+    }
+}
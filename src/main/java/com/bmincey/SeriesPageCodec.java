@@ -0,0 +1,139 @@
+package com.bmincey;
+
+import com.mongodb.MongoClient;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.types.ObjectId;
+
+import java.util.Arrays;
+
+/**
+ * Decodes {time, value} documents straight from the BsonReader into the columns of one
+ * SeriesPage, so a range read creates no Document, Date or Double per point.  Every decoded
+ * document yields the same page; a codec instance serves a single read.  The ObjectId _id is
+ * only read for the last point that fits in the page, which becomes the page's last key.
+ *
+ * A page is encoded as one columnar document {times: [dates], values: [doubles]}, and decoding
+ * such a document appends all of its points, so a page can be stored and read back as a whole.
+ */
+public class SeriesPageCodec implements Codec<SeriesPage> {
+
+    private final SeriesPage page;
+
+    /**
+     *
+     * @param page receives the points
+     */
+    public SeriesPageCodec(SeriesPage page) {
+        this.page = page;
+    }
+
+    /**
+     *
+     * @param page
+     * @return registry decoding into page, with the default codecs for query filters
+     */
+    public static CodecRegistry registryFor(SeriesPage page) {
+        return CodecRegistries.fromRegistries(CodecRegistries.fromCodecs(new SeriesPageCodec(page)),
+                MongoClient.getDefaultCodecRegistry());
+    }
+
+    @Override
+    public SeriesPage decode(BsonReader reader, DecoderContext decoderContext) {
+        ObjectId id = null;
+        long time = 0;
+        double value = 0;
+        boolean point = false;
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+
+            if (name.equals("_id") && reader.getCurrentBsonType() == BsonType.OBJECT_ID &&
+                    this.page.remaining() == 1) {
+                id = reader.readObjectId();
+            } else if (name.equals("time")) {
+                time = reader.readDateTime();
+                point = true;
+            } else if (name.equals("value")) {
+                value = reader.readDouble();
+            } else if (name.equals("times")) {
+                this.readColumns(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        if (point && this.page.offer(time, value) && id != null) {
+            this.page.setLastKey(id.toHexString());
+        }
+        return this.page;
+    }
+
+    /**
+     * Reads the times array of a columnar page document and the values array following it.
+     *
+     * @param reader positioned at the times array
+     */
+    private void readColumns(BsonReader reader) {
+        long[] times = new long[this.page.getLimit() + 1];
+        int count = 0;
+
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (count == times.length) {
+                times = Arrays.copyOf(times, count * 2);
+            }
+            times[count++] = reader.readDateTime();
+        }
+        reader.readEndArray();
+
+        reader.readName("values");
+        reader.readStartArray();
+        for (int i = 0; reader.readBsonType() != BsonType.END_OF_DOCUMENT; i++) {
+            double value = reader.readDouble();
+            if (i < count) {
+                this.page.offer(times[i], value);
+            }
+        }
+        reader.readEndArray();
+    }
+
+    /**
+     * Writes the size() points of page as {times: [dates], values: [doubles]}.
+     *
+     * @param writer
+     * @param page
+     * @param encoderContext
+     */
+    @Override
+    public void encode(BsonWriter writer, SeriesPage page, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+
+        writer.writeStartArray("times");
+        for (int i = 0; i < page.size(); i++) {
+            writer.writeDateTime(page.getTimes()[i]);
+        }
+        writer.writeEndArray();
+
+        writer.writeStartArray("values");
+        for (int i = 0; i < page.size(); i++) {
+            writer.writeDouble(page.getValues()[i]);
+        }
+        writer.writeEndArray();
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Class<SeriesPage> getEncoderClass() {
+        return SeriesPage.class;
+    }
+}
@@ -0,0 +1,147 @@
+package com.bmincey;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.TimeZone;
+
+/**
+ * Builds a binary metric trace from a CSV export with host, metric, time and value columns in
+ * that order, e.g. cqlsh COPY myKeySpace.myTable (host, metric, time, value) TO 'export.csv' or
+ * mongoexport --type=csv --fields host,metric,time,value.  Times are epoch millis or timestamps
+ * as printed by cqlsh and mongoexport; a header line, quotes and blank lines are skipped.
+ * Records are written in file order.  cqlsh exports in token order, so sort the CSV by time
+ * first if the trace will be replayed at a rate.
+ */
+public class TraceConverter {
+
+    private static final String[] TIME_FORMATS = {
+            "yyyy-MM-dd HH:mm:ss.SSSZ",      // cqlsh
+            "yyyy-MM-dd HH:mm:ssZ",
+            "yyyy-MM-dd'T'HH:mm:ss.SSSX",    // mongoexport
+            "yyyy-MM-dd'T'HH:mm:ssX"
+    };
+
+    private TraceConverter() {
+    }
+
+    /**
+     *
+     * @param csvFile
+     * @param traceFile
+     * @return records written
+     * @throws IOException
+     */
+    public static long convert(String csvFile, String traceFile) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(csvFile),
+                StandardCharsets.UTF_8));
+        MetricTraceWriter writer = new MetricTraceWriter(traceFile);
+        SimpleDateFormat[] formats = new SimpleDateFormat[TIME_FORMATS.length];
+
+        for (int f = 0; f < formats.length; f++) {
+            formats[f] = new SimpleDateFormat(TIME_FORMATS[f]);
+            formats[f].setTimeZone(TimeZone.getTimeZone("UTC"));
+        }
+
+        try {
+            String line;
+            long lineNumber = 0;
+
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+
+                String[] columns = line.split(",");
+                if (columns.length < 4) {
+                    throw new IOException(csvFile + ":" + lineNumber + ": expected host,metric,time,value");
+                }
+                String time = unquote(columns[2]);
+                String value = unquote(columns[3]);
+
+                if (lineNumber == 1 && !value.isEmpty() && !Character.isDigit(value.charAt(0)) &&
+                        value.charAt(0) != '-') {
+                    continue; // header
+                }
+                writer.append(unquote(columns[0]), unquote(columns[1]), parseTime(time, formats, lineNumber),
+                        Double.parseDouble(value));
+            }
+            return writer.getRecords();
+        } finally {
+            reader.close();
+            writer.close();
+        }
+    }
+
+    /**
+     *
+     * @param column
+     * @return column without surrounding whitespace and quotes
+     */
+    private static String unquote(String column) {
+        String value = column.trim();
+
+        if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     *
+     * @param time
+     * @param formats
+     * @param lineNumber
+     * @return epoch millis
+     * @throws IOException
+     */
+    private static long parseTime(String time, SimpleDateFormat[] formats, long lineNumber) throws IOException {
+        boolean numeric = !time.isEmpty();
+        for (int i = 0; i < time.length() && numeric; i++) {
+            numeric = Character.isDigit(time.charAt(i));
+        }
+        if (numeric) {
+            return Long.parseLong(time);
+        }
+
+        for (SimpleDateFormat format : formats) {
+            try {
+                return format.parse(time).getTime();
+            } catch (ParseException e) {
+                // try the next format
+            }
+        }
+        throw new IOException("Line " + lineNumber + ": unparseable time " + time);
+    }
+
+    /**
+     *
+     * @param args csv file, trace file
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: TraceConverter <csv file> <trace file>");
+            return;
+        }
+
+        try {
+            StopWatch stopWatch = new StopWatch();
+            stopWatch.start();
+            long records = convert(args[0], args[1]);
+            stopWatch.stop();
+
+            System.out.println("Converted records = " + records + " from " + args[0] + " to " + args[1] +
+                    " in time = " + stopWatch.toString());
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
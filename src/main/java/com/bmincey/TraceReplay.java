@@ -0,0 +1,187 @@
+package com.bmincey;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a binary metric trace into any MetricStore through its write path, in place of the
+ * random-walk generator.  Each thread replays every threads-th record in trace order, reading
+ * straight from the mapped file.  With speed 0 records are written as fast as possible;
+ * otherwise each record is written when (time - first time) / speed has passed since the start,
+ * and how late each write starts is recorded as "lag", which shows whether the store kept up
+ * with the recorded rate.  Points keep their recorded timestamps.  Exports such as cqlsh COPY TO
+ * are not in time order, so the earliest time is the origin, and a trace that is not sorted by
+ * time is rejected when replaying at a rate and reported when replaying as fast as possible.
+ */
+public class TraceReplay {
+
+    private final MetricStore store;
+    private final MetricTraceReader trace;
+    private final LatencyStats latencyStats;
+
+    /**
+     *
+     * @param store
+     * @param trace
+     */
+    public TraceReplay(MetricStore store, MetricTraceReader trace) {
+        this.store = store;
+        this.trace = trace;
+        this.latencyStats = new LatencyStats(store.toString(), 0);
+    }
+
+    /**
+     *
+     * @param threads
+     * @param speed multiple of the recorded rate, 0 for as fast as possible
+     * @return records written
+     * @throws IllegalArgumentException if speed is above 0 and the trace is not sorted by time
+     */
+    public long replay(final int threads, final double speed) {
+        StopWatch stopWatch = new StopWatch();
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+        long minTime = this.trace.getRecords() == 0 ? 0 : Long.MAX_VALUE;
+        long outOfOrder = 0;
+        long previous = Long.MIN_VALUE;
+
+        for (long r = 0; r < this.trace.getRecords(); r++) {
+            long time = this.trace.time(r);
+
+            minTime = Math.min(minTime, time);
+            if (time < previous) {
+                outOfOrder++;
+            }
+            previous = time;
+        }
+        if (outOfOrder > 0) {
+            if (speed > 0) {
+                throw new IllegalArgumentException("Trace is not sorted by time, " + outOfOrder +
+                        " records out of order; sort the CSV by time before converting to replay at a rate");
+            }
+            System.out.println("Trace is not sorted by time, records out of order = " + outOfOrder);
+        }
+
+        final long firstTime = minTime;
+        final long started = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return replay(first, threads, speed, firstTime, started);
+                }
+            });
+        }
+
+        System.out.println("Replaying records = " + this.trace.getRecords() + ", hosts = " + this.trace.getHostCount() +
+                ", metrics = " + this.trace.getMetricCount() + ", threads = " + threads + ", speed = " +
+                (speed > 0 ? speed + "x" : "as fast as possible"));
+        stopWatch.start();
+        long rows = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Long> future : executor.invokeAll(tasks)) {
+                rows += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long flushStarted = System.nanoTime();
+        this.store.flush();
+        this.latencyStats.record("flush", flushStarted);
+        stopWatch.stop();
+
+        System.out.println("Replayed rows = " + rows + " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(rows, stopWatch.getTime()));
+        return rows;
+    }
+
+    /**
+     *
+     * @param first first record of this thread
+     * @param stride number of threads
+     * @param speed
+     * @param firstTime earliest time in the trace
+     * @param started nanoTime the replay started
+     * @return records written
+     */
+    private long replay(int first, int stride, double speed, long firstTime, long started) {
+        long rows = 0;
+
+        for (long r = first; r < this.trace.getRecords(); r += stride) {
+            long time = this.trace.time(r);
+
+            if (speed > 0) {
+                long due = started + (long) (TimeUnit.MILLISECONDS.toNanos(time - firstTime) / speed);
+                long wait = due - System.nanoTime();
+
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                this.latencyStats.recordMicros("lag", Math.max(0, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due)));
+            }
+
+            long writeStarted = System.nanoTime();
+            this.store.write(this.trace.host(r), this.trace.metric(r), time, this.trace.value(r));
+            this.latencyStats.record("insert", writeStarted);
+            rows++;
+        }
+        return rows;
+    }
+
+    public LatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    /**
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+            String traceFile = appProps.getApplicationProperty(ApplicationProperties.traceFileProperty, "trace.bin");
+            double speed = Double.parseDouble(appProps.getApplicationProperty(
+                    ApplicationProperties.traceSpeedProperty, "0"));
+            int threads = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.traceThreadsProperty, "4"));
+
+            MetricTraceReader trace = new MetricTraceReader(traceFile);
+            MetricStore store = MetricStoreFactory.create(storeName, appProps);
+            try {
+                System.out.println("Store: " + store + ", trace: " + traceFile);
+                store.createSchema();
+
+                TraceReplay replay = new TraceReplay(store, trace);
+                replay.replay(threads, speed);
+                System.out.println("Storage: " + store.storageStats());
+                replay.getLatencyStats().print(System.out);
+            } finally {
+                store.close();
+                trace.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
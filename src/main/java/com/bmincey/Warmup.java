@@ -0,0 +1,106 @@
+package com.bmincey;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Untimed phase run before measurement so JIT compilation, connection pool ramp-up and first
+ * query costs do not land in the reported numbers.  The phase ends after a number of
+ * iterations or a duration, whichever is reached first; a limit of 0 is not used, and both 0
+ * disables the warmup.  Callers discard whatever the warmup wrote and recorded.
+ */
+public class Warmup {
+
+    private final long iterations;
+    private final long durationMillis;
+
+    /**
+     *
+     * @param iterations
+     * @param durationMillis
+     */
+    public Warmup(long iterations, long durationMillis) {
+        this.iterations = iterations;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     *
+     * @param appProps
+     * @return the warmup configured in application.properties
+     */
+    public static Warmup fromProperties(ApplicationProperties appProps) {
+        return new Warmup(
+                Long.parseLong(appProps.getApplicationProperty(ApplicationProperties.warmupIterationsProperty, "0")),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(appProps.getApplicationProperty(
+                        ApplicationProperties.warmupSecondsProperty, "0"))));
+    }
+
+    public boolean isEnabled() {
+        return this.iterations > 0 || this.durationMillis > 0;
+    }
+
+    /**
+     *
+     * @param threads
+     * @param iteration one unit of warmup work, called concurrently from every thread
+     * @return iterations executed
+     */
+    public long run(int threads, final Runnable iteration) {
+        StopWatch stopWatch = new StopWatch();
+        final AtomicLong executed = new AtomicLong();
+        final long limit = this.iterations > 0 ? this.iterations : Long.MAX_VALUE;
+        final boolean timed = this.durationMillis > 0;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.durationMillis);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for (int t = 0; t < threads; t++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    while ((!timed || deadline - System.nanoTime() > 0) && executed.incrementAndGet() <= limit) {
+                        iteration.run();
+                    }
+                    return null;
+                }
+            });
+        }
+
+        System.out.println("Warming up... " + this);
+        stopWatch.start();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        stopWatch.stop();
+
+        long count = Math.min(executed.get(), limit);
+        System.out.println("Warmup iterations = " + count + " in time = " + stopWatch.toString() +
+                ", results discarded");
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "iterations = " + (this.iterations > 0 ? Long.toString(this.iterations) : "unlimited") +
+                ", duration = " + (this.durationMillis > 0 ? this.durationMillis + " ms" : "unlimited");
+    }
+}
@@ -0,0 +1,440 @@
+package com.bmincey;
+
+import org.apache.commons.lang3.time.StopWatch;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs the sample workload against any MetricStore with a pool of worker threads, so every
+ * backend is measured under the same concurrent load.  The ingest phase splits the iterations
+ * across the workers; the query phase has every worker issue point, range and max queries
+ * against random hosts.  The single-series queries and the full scan of the examples are kept,
+ * and the sample series is also read in pages through readRange.
+ */
+public class WorkloadDriver {
+
+    private static final int RECENT_POINTS = 1024;
+
+    private final MetricStore store;
+    private final int workerThreads;
+    private final int iterations;
+    private final int numHosts;
+    private final int queryIterations;
+    private final LatencyStats latencyStats;
+    private final ResourceProfiler profiler;
+
+    private final List<Worker> workers = new ArrayList<Worker>();
+    private Warmup warmup = new Warmup(0, 0);
+    private int seriesPageSize = 5000;
+    private long runStarted;
+
+    /**
+     *
+     * @param store
+     * @param workerThreads
+     * @param iterations total iterations, each writing one point per metric
+     * @param numHosts
+     * @param queryIterations queries of each type issued by every worker
+     * @param expectedIntervalMicros expected time between requests of one worker, 0 disables
+     *                               coordinated omission correction
+     */
+    public WorkloadDriver(MetricStore store, int workerThreads, int iterations, int numHosts, int queryIterations,
+                          long expectedIntervalMicros) {
+        this.store = store;
+        this.workerThreads = workerThreads;
+        this.iterations = iterations;
+        this.numHosts = numHosts;
+        this.queryIterations = queryIterations;
+        this.latencyStats = new LatencyStats(store.toString(), expectedIntervalMicros);
+        this.profiler = new ResourceProfiler(store.toString());
+
+        for (int i = 0; i < workerThreads; i++) {
+            this.workers.add(new Worker(numHosts));
+        }
+    }
+
+    /**
+     *
+     * @param warmup untimed phase run on all worker threads before ingest
+     */
+    public void setWarmup(Warmup warmup) {
+        this.warmup = warmup;
+    }
+
+    /**
+     *
+     * @param seriesPageSize points per page when the sample series is read with readRange
+     */
+    public void setSeriesPageSize(int seriesPageSize) {
+        this.seriesPageSize = seriesPageSize;
+    }
+
+    /**
+     *
+     */
+    public void run() {
+        System.out.println("Store: " + this.store + ", worker threads = " + this.workerThreads +
+                ", iterations = " + this.iterations + ", hosts = " + this.numHosts);
+
+        this.store.createSchema();
+        if (this.warmup.isEnabled()) {
+            this.warmUp();
+        }
+        this.runStarted = System.currentTimeMillis();
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.workerThreads);
+        try {
+            this.ingest(executor);
+            System.out.println("Storage: " + this.store.storageStats());
+            this.sampleQueries();
+            this.concurrentQueries(executor);
+            this.scan();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        this.latencyStats.print(System.out);
+        this.profiler.print(System.out);
+
+        if (this.store instanceof CachingMetricStore) {
+            System.out.println("Query cache: " + ((CachingMetricStore) this.store).cacheStats());
+        }
+    }
+
+    /**
+     * Runs ingest and query iterations on throwaway workers, then recreates the schema and
+     * clears the latency histograms so nothing from the warmup is measured.
+     */
+    private void warmUp() {
+        final long warmupStarted = System.currentTimeMillis();
+        final ThreadLocal<Worker> warmupWorkers = new ThreadLocal<Worker>() {
+            @Override
+            protected Worker initialValue() {
+                return new Worker(numHosts);
+            }
+        };
+
+        this.warmup.run(this.workerThreads, new Runnable() {
+            @Override
+            public void run() {
+                Worker worker = warmupWorkers.get();
+                worker.ingest(1);
+                worker.query(1, warmupStarted);
+            }
+        });
+
+        this.store.createSchema();
+        this.latencyStats.reset();
+    }
+
+    /**
+     *
+     * @param executor
+     */
+    private void ingest(ExecutorService executor) {
+        StopWatch stopWatch = new StopWatch();
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+
+        for (int w = 0; w < this.workerThreads; w++) {
+            final Worker worker = this.workers.get(w);
+            // spread the remainder over the first workers
+            final int share = this.iterations / this.workerThreads + (w < this.iterations % this.workerThreads ? 1 : 0);
+
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return worker.ingest(share);
+                }
+            });
+        }
+
+        System.out.println("Creating data... iterations = " + this.iterations);
+        this.profiler.start("ingest");
+        stopWatch.start();
+        long rows = sum(invokeAll(executor, tasks));
+        long flushStarted = System.nanoTime();
+        this.store.flush();
+        this.latencyStats.record("flush", flushStarted);
+        stopWatch.stop();
+        this.profiler.stop(rows, rows);
+
+        System.out.println("Created rows = " + rows + " in time = " + stopWatch.toString() +
+                ", rows/sec = " + SampleDataGenerator.rowsPerSecond(rows, stopWatch.getTime()));
+    }
+
+    /**
+     * The single-series queries of the examples.
+     */
+    private void sampleQueries() {
+        StopWatch stopWatch = new StopWatch();
+
+        System.out.println("Getting max value for sample...");
+        this.profiler.start("max");
+        stopWatch.start();
+        long started = System.nanoTime();
+        Double max = this.store.maxQuery("host1", "m1");
+        this.latencyStats.record("max", started);
+        stopWatch.stop();
+        this.profiler.stop(1, 0);
+        System.out.println("Max value = " + max + " in time = " + stopWatch.toString());
+
+        if (this.store instanceof RollupMetricStore) {
+            RollupMetricStore rollupStore = (RollupMetricStore) this.store;
+
+            System.out.println("Getting rollup for sample...");
+            stopWatch.reset();
+            this.profiler.start("rollup");
+            stopWatch.start();
+            started = System.nanoTime();
+            Rollup rollup = rollupStore.rollupQuery("host1", "m1", this.runStarted, System.currentTimeMillis() + 1);
+            this.latencyStats.record("rollup", started);
+            stopWatch.stop();
+            this.profiler.stop(1, 0);
+            System.out.println("Rollup " + rollup + " in time = " + stopWatch.toString());
+        }
+
+        System.out.println("Getting all rows for sample...");
+        stopWatch.reset();
+        this.profiler.start("series");
+        stopWatch.start();
+        started = System.nanoTime();
+        int rows = this.store.rangeQuery("host1", "m1", this.runStarted, System.currentTimeMillis() + 1);
+        this.latencyStats.record("range", started);
+        stopWatch.stop();
+        this.profiler.stop(1, rows);
+        System.out.println("Returned rows = " + rows + " in time = " + stopWatch.toString());
+
+        System.out.println("Reading sample in pages...");
+        stopWatch.reset();
+        this.profiler.start("pages");
+        stopWatch.start();
+        long to = System.currentTimeMillis() + 1;
+        String pagingState = null;
+        SeriesPage page;
+        long points = 0;
+        int pages = 0;
+
+        do {
+            started = System.nanoTime();
+            page = this.store.readRange("host1", "m1", this.runStarted, to, this.seriesPageSize, pagingState);
+            this.latencyStats.record("page", started);
+            points += page.size();
+            pages++;
+            pagingState = page.getPagingState();
+        } while (pagingState != null);
+        stopWatch.stop();
+        this.profiler.stop(pages, points);
+        System.out.println("Read points = " + points + " in pages = " + pages + " of " + this.seriesPageSize +
+                ", last page: " + page + ", time = " + stopWatch.toString());
+    }
+
+    /**
+     *
+     * @param executor
+     */
+    private void concurrentQueries(ExecutorService executor) {
+        StopWatch stopWatch = new StopWatch();
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+
+        for (final Worker worker : this.workers) {
+            tasks.add(new Callable<Long>() {
+                @Override
+                public Long call() {
+                    return worker.query(queryIterations, runStarted);
+                }
+            });
+        }
+
+        System.out.println("Running concurrent queries... iterations per worker = " + this.queryIterations);
+        this.profiler.start("queries");
+        stopWatch.start();
+        long queries = sum(invokeAll(executor, tasks));
+        stopWatch.stop();
+        this.profiler.stop(queries, 0);
+
+        System.out.println("Executed queries = " + queries + " in time = " + stopWatch.toString() +
+                ", queries/sec = " + SampleDataGenerator.rowsPerSecond(queries, stopWatch.getTime()));
+    }
+
+    /**
+     *
+     */
+    private void scan() {
+        StopWatch stopWatch = new StopWatch();
+
+        System.out.println("Select ALL...");
+        this.profiler.start("scan");
+        stopWatch.start();
+        long started = System.nanoTime();
+        long rows = this.store.scan();
+        this.latencyStats.record("scan", started);
+        stopWatch.stop();
+        this.profiler.stop(1, rows);
+
+        System.out.println("Returned rows = " + rows + ", in time = " + stopWatch.toString());
+    }
+
+    public ResourceProfiler getResourceProfiler() {
+        return profiler;
+    }
+
+    /**
+     *
+     * @param executor
+     * @param tasks
+     * @return results of all tasks, rethrowing the first failure
+     */
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<T>();
+
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     *
+     * @param values
+     * @return
+     */
+    private static long sum(List<Long> values) {
+        long total = 0;
+        for (Long value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    /**
+     * Per-thread workload state: its own random walk and the most recently written points,
+     * which are used as keys for point queries.
+     */
+    private class Worker {
+
+        private final SampleDataGenerator generator;
+        private final String[] recentHosts = new String[RECENT_POINTS];
+        private final long[] recentTimes = new long[RECENT_POINTS];
+        private int recentCount = 0;
+
+        Worker(int numHosts) {
+            this.generator = new SampleDataGenerator(numHosts);
+        }
+
+        /**
+         *
+         * @param toCreate
+         * @return rows written
+         */
+        long ingest(int toCreate) {
+            long rows = 0;
+
+            for (int r = 1; r <= toCreate; r++) {
+                long now = System.currentTimeMillis();
+                String hostname = this.generator.nextHost();
+                double nextValue = this.generator.nextValue();
+
+                for (int m = 0; m < SampleDataGenerator.METRICS.length; m++) {
+                    long started = System.nanoTime();
+                    store.write(hostname, SampleDataGenerator.METRICS[m], now,
+                            nextValue * SampleDataGenerator.MULTIPLIERS[m]);
+                    latencyStats.record("insert", started);
+                    rows++;
+                }
+
+                int slot = this.recentCount++ % RECENT_POINTS;
+                this.recentHosts[slot] = hostname;
+                this.recentTimes[slot] = now;
+            }
+            return rows;
+        }
+
+        /**
+         *
+         * @param count
+         * @param from start of the range queries
+         * @return queries executed
+         */
+        long query(int count, long from) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int recent = Math.min(this.recentCount, RECENT_POINTS);
+            long queries = 0;
+
+            for (int q = 0; q < count; q++) {
+                String hostname = this.generator.nextHost();
+
+                long started = System.nanoTime();
+                store.maxQuery(hostname, "m1");
+                latencyStats.record("max", started);
+
+                started = System.nanoTime();
+                store.rangeQuery(hostname, "m1", from, System.currentTimeMillis() + 1);
+                latencyStats.record("range", started);
+                queries += 2;
+
+                if (recent > 0) {
+                    int slot = random.nextInt(recent);
+                    started = System.nanoTime();
+                    store.pointQuery(this.recentHosts[slot], "m1", this.recentTimes[slot]);
+                    latencyStats.record("point", started);
+                    queries++;
+                }
+            }
+            return queries;
+        }
+    }
+
+    /**
+     *
+     * @param args
+     */
+    public static void main(String[] args) {
+        try {
+            ApplicationProperties appProps = new ApplicationProperties();
+
+            String storeName = appProps.getApplicationProperty(ApplicationProperties.storeProperty,
+                    MetricStoreFactory.CASSANDRA);
+            int workerThreads = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.workerThreadsProperty, "4"));
+            int iterations = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.iterationsProperty, "1000"));
+            int numHosts = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.numHostsProperty, "100"));
+            int queryIterations = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.queryIterationsProperty, "100"));
+            long expectedIntervalMicros = Long.parseLong(appProps.getApplicationProperty(
+                    ApplicationProperties.expectedIntervalMicrosProperty, "0"));
+            int seriesPageSize = Integer.parseInt(appProps.getApplicationProperty(
+                    ApplicationProperties.seriesPageSizeProperty, "5000"));
+
+            MetricStore store = MetricStoreFactory.create(storeName, appProps);
+            try {
+                WorkloadDriver driver = new WorkloadDriver(store, workerThreads, iterations, numHosts,
+                        queryIterations, expectedIntervalMicros);
+                driver.setWarmup(Warmup.fromProperties(appProps));
+                driver.setSeriesPageSize(seriesPageSize);
+                driver.run();
+            } finally {
+                store.close();
+            }
+        }
+        catch(IOException ioe) {
+            System.err.println(ioe);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.bmincey;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * YCSB-style description of a mixed workload: how many series there are (hosts times metrics
+ * per host), what fraction of the threads read, how reads pick their series, how long a range
+ * each read covers, and how long the run lasts.  Writes pick series uniformly, or zipfian when
+ * that is the distribution.  With the latest distribution reads favor the series written most
+ * recently, chosen zipfian by recency from a ring of the last writes.
+ */
+public class WorkloadSpec {
+
+    public static final String UNIFORM = "uniform";
+    public static final String ZIPFIAN = "zipfian";
+    public static final String LATEST = "latest";
+
+    private static final int RECENT_WRITES = 1024;
+
+    private final int hosts;
+    private final int metricsPerHost;
+    private final double readRatio;
+    private final String distribution;
+    private final long rangeMillis;
+    private final int seconds;
+    private final int threads;
+
+    private final ZipfianGenerator zipfian;
+    private final ZipfianGenerator recency;
+    private final AtomicLongArray recentWrites = new AtomicLongArray(RECENT_WRITES);
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     *
+     * @param hosts
+     * @param metricsPerHost
+     * @param readRatio fraction of the threads that only read
+     * @param distribution one of uniform, zipfian, latest
+     * @param rangeMillis span of each range read, ending now
+     * @param seconds duration of the run
+     * @param threads reader plus writer threads
+     */
+    public WorkloadSpec(int hosts, int metricsPerHost, double readRatio, String distribution, long rangeMillis,
+                        int seconds, int threads) {
+        if (!UNIFORM.equals(distribution) && !ZIPFIAN.equals(distribution) && !LATEST.equals(distribution)) {
+            throw new IllegalArgumentException("Unknown key distribution: " + distribution);
+        }
+        if (readRatio < 0 || readRatio > 1) {
+            throw new IllegalArgumentException("readRatio must be between 0 and 1: " + readRatio);
+        }
+
+        this.hosts = hosts;
+        this.metricsPerHost = metricsPerHost;
+        this.readRatio = readRatio;
+        this.distribution = distribution;
+        this.rangeMillis = rangeMillis;
+        this.seconds = seconds;
+        this.threads = threads;
+
+        this.zipfian = ZIPFIAN.equals(distribution) ? new ZipfianGenerator(this.getSeries()) : null;
+        this.recency = LATEST.equals(distribution) ? new ZipfianGenerator(RECENT_WRITES) : null;
+    }
+
+    /**
+     *
+     * @param appProps
+     * @return the spec configured in application.properties
+     */
+    public static WorkloadSpec fromProperties(ApplicationProperties appProps) {
+        return new WorkloadSpec(
+                Integer.parseInt(appProps.getApplicationProperty(ApplicationProperties.workloadHostsProperty, "100")),
+                Integer.parseInt(appProps.getApplicationProperty(
+                        ApplicationProperties.workloadMetricsPerHostProperty, "3")),
+                Double.parseDouble(appProps.getApplicationProperty(
+                        ApplicationProperties.workloadReadRatioProperty, "0.5")),
+                appProps.getApplicationProperty(ApplicationProperties.workloadDistributionProperty, UNIFORM),
+                Long.parseLong(appProps.getApplicationProperty(ApplicationProperties.workloadRangeMsProperty, "60000")),
+                Integer.parseInt(appProps.getApplicationProperty(ApplicationProperties.workloadSecondsProperty, "30")),
+                Integer.parseInt(appProps.getApplicationProperty(ApplicationProperties.workloadThreadsProperty, "8")));
+    }
+
+    /**
+     *
+     * @return number of (host, metric) series
+     */
+    public long getSeries() {
+        return (long) this.hosts * this.metricsPerHost;
+    }
+
+    /**
+     * Threads are split by readRatio, keeping at least one of each when the ratio is strictly
+     * between 0 and 1.
+     *
+     * @return threads that only read
+     */
+    public int getReaderThreads() {
+        int readers = (int) Math.round(this.threads * this.readRatio);
+
+        if (this.readRatio > 0 && this.readRatio < 1 && this.threads > 1) {
+            readers = Math.max(1, Math.min(this.threads - 1, readers));
+        }
+        return readers;
+    }
+
+    /**
+     *
+     * @return threads that only write
+     */
+    public int getWriterThreads() {
+        return this.threads - this.getReaderThreads();
+    }
+
+    /**
+     *
+     * @param random
+     * @return series to write next
+     */
+    public long nextWriteSeries(Random random) {
+        long series = this.zipfian != null ? this.zipfian.next(random) : (long) (random.nextDouble() * this.getSeries());
+
+        if (this.recency != null) {
+            this.recentWrites.set((int) (this.writes.getAndIncrement() % RECENT_WRITES), series);
+        }
+        return series;
+    }
+
+    /**
+     *
+     * @param random
+     * @return series to read next
+     */
+    public long nextReadSeries(Random random) {
+        if (this.recency != null) {
+            long written = this.writes.get();
+
+            if (written > 0) {
+                long back = this.recency.next(random) % Math.min(written, RECENT_WRITES);
+                return this.recentWrites.get((int) ((written - 1 - back) % RECENT_WRITES));
+            }
+        }
+        return this.zipfian != null ? this.zipfian.next(random) : (long) (random.nextDouble() * this.getSeries());
+    }
+
+    /**
+     *
+     * @param series
+     * @return host of series
+     */
+    public String hostOf(long series) {
+        return "host" + series / this.metricsPerHost;
+    }
+
+    /**
+     *
+     * @param series
+     * @return metric of series, m1 to m<metricsPerHost>
+     */
+    public String metricOf(long series) {
+        return "m" + (series % this.metricsPerHost + 1);
+    }
+
+    public int getHosts() {
+        return hosts;
+    }
+
+    public int getMetricsPerHost() {
+        return metricsPerHost;
+    }
+
+    public double getReadRatio() {
+        return readRatio;
+    }
+
+    public String getDistribution() {
+        return distribution;
+    }
+
+    public long getRangeMillis() {
+        return rangeMillis;
+    }
+
+    public int getSeconds() {
+        return seconds;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public String toString() {
+        return "hosts = " + this.hosts + ", metrics per host = " + this.metricsPerHost + ", read ratio = " +
+                this.readRatio + " (" + this.getReaderThreads() + " readers, " + this.getWriterThreads() +
+                " writers), distribution = " + this.distribution + ", range = " + this.rangeMillis +
+                " ms, seconds = " + this.seconds;
+    }
+}
@@ -0,0 +1,84 @@
+package com.bmincey;
+
+import java.util.Random;
+
+/**
+ * Zipfian distributed integers in [0, items), item 0 being the most popular, using the
+ * rejection-free method of Gray et al., "Quickly Generating Billion-Record Synthetic
+ * Databases", as in YCSB.  The zeta constant is computed once in the constructor, which is
+ * linear in items; next() only reads final fields and can be called from any thread.
+ */
+public class ZipfianGenerator {
+
+    public static final double ZIPFIAN_CONSTANT = 0.99;
+
+    private final long items;
+    private final double theta;
+    private final double zetan;
+    private final double alpha;
+    private final double eta;
+
+    /**
+     *
+     * @param items
+     */
+    public ZipfianGenerator(long items) {
+        this(items, ZIPFIAN_CONSTANT);
+    }
+
+    /**
+     *
+     * @param items
+     * @param theta skew, larger is more skewed; must be below 1
+     */
+    public ZipfianGenerator(long items, double theta) {
+        if (items < 1) {
+            throw new IllegalArgumentException("items must be at least 1: " + items);
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetan = zeta(items, theta);
+        this.alpha = 1.0 / (1.0 - theta);
+
+        double zeta2 = zeta(2, theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / this.zetan);
+    }
+
+    /**
+     *
+     * @param n
+     * @param theta
+     * @return sum of 1 / i^theta for i in 1..n
+     */
+    static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+
+    /**
+     *
+     * @param random
+     * @return next item
+     */
+    public long next(Random random) {
+        double u = random.nextDouble();
+        double uz = u * this.zetan;
+
+        if (uz < 1.0) {
+            return 0;
+        }
+        if (uz < 1.0 + Math.pow(0.5, this.theta)) {
+            return Math.min(1, this.items - 1);
+        }
+
+        long item = (long) (this.items * Math.pow(this.eta * u - this.eta + 1, this.alpha));
+        return Math.min(item, this.items - 1);
+    }
+
+    public long getItems() {
+        return items;
+    }
+}
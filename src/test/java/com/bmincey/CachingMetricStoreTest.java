@@ -0,0 +1,107 @@
+package com.bmincey;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingMetricStoreTest {
+
+    private CachingMetricStore store;
+
+    /**
+     *
+     */
+    @Before
+    public void before() {
+        this.store = new CachingMetricStore(new InMemoryMetricStore(), 8, 2);
+        this.store.createSchema();
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testRepeatedQueriesHit() {
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 20, 2.0);
+
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 0, 100));
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 0, 100));
+        assertEquals(Double.valueOf(2.0), this.store.maxQuery("host1", "m1"));
+        assertEquals(Double.valueOf(2.0), this.store.maxQuery("host1", "m1"));
+
+        assertEquals(2, this.store.getHits());
+        assertEquals(2, this.store.getMisses());
+        assertEquals(0.5, this.store.getHitRate(), 0);
+        assertTrue(this.store.getEstimatedBytes() > 0);
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testWritesUpdateOrInvalidateAffectedEntries() {
+        this.store.write("host1", "m1", 10, 1.0);
+
+        assertNull(this.store.pointQuery("host1", "m1", 30));
+        assertEquals(Double.valueOf(1.0), this.store.maxQuery("host1", "m1"));
+        assertEquals(1, this.store.rangeQuery("host1", "m1", 0, 100));
+        assertEquals(1, this.store.rangeQuery("host1", "m1", 0, 20));
+
+        this.store.write("host1", "m1", 30, 5.0);
+
+        // updated in place
+        assertEquals(Double.valueOf(5.0), this.store.pointQuery("host1", "m1", 30));
+        assertEquals(Double.valueOf(5.0), this.store.maxQuery("host1", "m1"));
+        assertEquals(2, this.store.getHits());
+
+        // [0, 100) contains the write, [0, 20) does not
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 0, 100));
+        assertEquals(1, this.store.rangeQuery("host1", "m1", 0, 20));
+        assertEquals(1, this.store.getInvalidations());
+        assertEquals(3, this.store.getHits());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testMultiRangeQueryReadsOnlyMisses() {
+        List<SeriesId> series = Arrays.asList(new SeriesId("host1", "m1"), new SeriesId("host2", "m1"),
+                new SeriesId("host3", "m1"));
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 20, 2.0);
+        this.store.write("host2", "m1", 10, 1.0);
+
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 0, 100));
+        assertArrayEquals(new int[] {2, 1, 0}, this.store.multiRangeQuery(series, 0, 100));
+        assertEquals(1, this.store.getHits());
+        assertEquals(3, this.store.getMisses());
+
+        assertArrayEquals(new int[] {2, 1, 0}, this.store.multiRangeQuery(series, 0, 100));
+        assertEquals(4, this.store.getHits());
+
+        this.store.write("host3", "m1", 50, 3.0);
+        assertArrayEquals(new int[] {2, 1, 1}, this.store.multiRangeQuery(series, 0, 100));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testSizeIsBounded() {
+        for (int i = 0; i < 100; i++) {
+            this.store.rangeQuery("host" + i, "m1", 0, 100);
+        }
+
+        assertEquals(8, this.store.size());
+        assertEquals(92, this.store.getEvictions());
+    }
+}
@@ -0,0 +1,107 @@
+package com.bmincey;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class InMemoryMetricStoreTest {
+
+    private InMemoryMetricStore store;
+
+    /**
+     *
+     */
+    @Before
+    public void before() {
+        this.store = new InMemoryMetricStore();
+        this.store.createSchema();
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testQueriesOnOutOfOrderWrites() {
+        this.store.write("host1", "m1", 30, 3.0);
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 20, 7.0);
+        this.store.write("host1", "m2", 20, 99.0);
+
+        assertEquals(Double.valueOf(7.0), this.store.pointQuery("host1", "m1", 20));
+        assertNull(this.store.pointQuery("host1", "m1", 15));
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 10, 30));
+        assertEquals(3, this.store.rangeQuery("host1", "m1", 0, 31));
+        assertEquals(Double.valueOf(7.0), this.store.maxQuery("host1", "m1"));
+        assertNull(this.store.maxQuery("host2", "m1"));
+        assertEquals(4, this.store.scan());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testWriteToExistingTimeReplacesValue() {
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 10, 2.0);
+
+        assertEquals(Double.valueOf(2.0), this.store.pointQuery("host1", "m1", 10));
+        assertEquals(1, this.store.scan());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testReadRangeInPages() {
+        for (int t = 0; t < 10; t++) {
+            this.store.write("host1", "m1", t * 10, t);
+        }
+
+        SeriesPage page = this.store.readRange("host1", "m1", 15, 95, 3, null);
+        assertEquals(3, page.size());
+        assertEquals(20, page.getTimes()[0]);
+        assertEquals(4.0, page.getValues()[2], 0);
+
+        page = this.store.readRange("host1", "m1", 15, 95, 3, page.getPagingState());
+        assertEquals(3, page.size());
+        assertEquals(50, page.getTimes()[0]);
+
+        page = this.store.readRange("host1", "m1", 15, 95, 3, page.getPagingState());
+        assertEquals(2, page.size());
+        assertEquals(90, page.getTimes()[1]);
+        assertNull(page.getPagingState());
+    }
+
+    /**
+     *
+     * @throws InterruptedException
+     */
+    @Test
+    public void testConcurrentAppends() throws InterruptedException {
+        final int threads = 4;
+        final int points = 10000;
+        Thread[] writers = new Thread[threads];
+
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            writers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < points; i++) {
+                        store.write("host1", "m1", (long) i * threads + offset, i);
+                    }
+                }
+            });
+            writers[t].start();
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+
+        assertEquals(threads * points, this.store.scan());
+        assertEquals(threads * points, this.store.rangeQuery("host1", "m1", 0, Long.MAX_VALUE));
+        assertEquals(Double.valueOf(points - 1), this.store.maxQuery("host1", "m1"));
+    }
+}
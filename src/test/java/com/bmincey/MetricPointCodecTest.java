@@ -0,0 +1,49 @@
+package com.bmincey;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricPointCodecTest {
+
+    /**
+     * The codec must produce the same document as the Document based insert paths.
+     */
+    @Test
+    public void encodesLikeDocument() {
+        BsonDocument encoded = new BsonDocument();
+        new MetricPointCodec().encode(new BsonDocumentWriter(encoded), new MetricPoint("host7", "m2", 1000L, 42.5),
+                EncoderContext.builder().build());
+
+        Document expected = new Document("host", "host7")
+                .append("metric", "m2")
+                .append("time", new Date(1000L))
+                .append("value", 42.5);
+        assertEquals(expected.toJson(), encoded.toJson());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void decodesIgnoringOtherFields() {
+        BsonDocument document = BsonDocument.parse(
+                "{_id: 1, host: 'host3', metric: 'm1', time: {$date: 5000}, value: 7.0}");
+
+        MetricPoint point = new MetricPointCodec().decode(new BsonDocumentReader(document),
+                DecoderContext.builder().build());
+
+        assertEquals("host3", point.getHost());
+        assertEquals("m1", point.getMetric());
+        assertEquals(5000L, point.getTime());
+        assertEquals(7.0, point.getValue(), 0);
+    }
+}
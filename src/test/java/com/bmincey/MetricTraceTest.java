@@ -0,0 +1,120 @@
+package com.bmincey;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class MetricTraceTest {
+
+    private File traceFile;
+
+    /**
+     *
+     * @throws IOException
+     */
+    @Before
+    public void before() throws IOException {
+        this.traceFile = File.createTempFile("metric-trace", ".bin");
+    }
+
+    /**
+     *
+     */
+    @After
+    public void after() {
+        this.traceFile.delete();
+    }
+
+    /**
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testRecordsReadBackAcrossSegments() throws IOException {
+        MetricTraceWriter writer = new MetricTraceWriter(this.traceFile.getPath());
+        for (int i = 0; i < 1000; i++) {
+            writer.append("host" + (i % 7), "m" + (i % 3), 1000L + i, i * 0.5);
+        }
+        writer.close();
+
+        // 64 records per mapping so reads cross segment boundaries
+        MetricTraceReader reader = new MetricTraceReader(this.traceFile.getPath(), 64);
+        try {
+            assertEquals(1000, reader.getRecords());
+            assertEquals(7, reader.getHostCount());
+            assertEquals(3, reader.getMetricCount());
+
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("host" + (i % 7), reader.host(i));
+                assertEquals("m" + (i % 3), reader.metric(i));
+                assertEquals(1000L + i, reader.time(i));
+                assertEquals(i * 0.5, reader.value(i), 0);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     *
+     * @throws IOException
+     */
+    @Test
+    public void testConvertedCsvReplaysIntoStore() throws IOException {
+        File csvFile = File.createTempFile("metric-trace", ".csv");
+        FileWriter csv = new FileWriter(csvFile);
+        csv.write("host,metric,time,value\n");
+        csv.write("host1,m1,2018-05-16 12:00:00.000+0000,1.5\n");
+        csv.write("\"host1\",\"m1\",2018-05-16T12:00:01.000Z,2.5\n");
+        csv.write("host2,m1,1526472002000,3.5\n");
+        csv.close();
+
+        try {
+            assertEquals(3, TraceConverter.convert(csvFile.getPath(), this.traceFile.getPath()));
+        } finally {
+            csvFile.delete();
+        }
+
+        MetricTraceReader reader = new MetricTraceReader(this.traceFile.getPath());
+        InMemoryMetricStore store = new InMemoryMetricStore();
+        try {
+            store.createSchema();
+            assertEquals(3, new TraceReplay(store, reader).replay(2, 0));
+
+            assertEquals(2, store.rangeQuery("host1", "m1", 1526472000000L, 1526472002000L));
+            assertEquals(2.5, store.pointQuery("host1", "m1", 1526472001000L), 0);
+            assertEquals(3.5, store.maxQuery("host2", "m1"), 0);
+        } finally {
+            store.close();
+            reader.close();
+        }
+    }
+
+    /**
+     *
+     * @throws IOException
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsortedTraceRejectedAtRate() throws IOException {
+        MetricTraceWriter writer = new MetricTraceWriter(this.traceFile.getPath());
+        writer.append("host1", "m1", 2000L, 1.0);
+        writer.append("host1", "m1", 1000L, 2.0);
+        writer.close();
+
+        MetricTraceReader reader = new MetricTraceReader(this.traceFile.getPath());
+        InMemoryMetricStore store = new InMemoryMetricStore();
+        try {
+            store.createSchema();
+            new TraceReplay(store, reader).replay(1, 1);
+        } finally {
+            store.close();
+            reader.close();
+        }
+    }
+}
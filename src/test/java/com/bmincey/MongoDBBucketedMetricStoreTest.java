@@ -0,0 +1,77 @@
+package com.bmincey;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs against the MongoDB server configured by the surefire system properties, like
+ * MongoDBExampleTest.
+ */
+public class MongoDBBucketedMetricStoreTest {
+
+    private static final long BUCKET_SPAN = 1000;
+
+    private MongoDBBucketedMetricStore store;
+
+    /**
+     *
+     */
+    @Before
+    public void before() {
+        this.store = new MongoDBBucketedMetricStore(System.getProperty("MongoDBUri"),
+                System.getProperty("database"), System.getProperty("collection"), BUCKET_SPAN, 2);
+        this.store.createSchema();
+
+        // two adjacent buckets, then one far away, so walking every bucket span would not finish
+        this.store.write("host1", "m1", 100, 1.0);
+        this.store.write("host1", "m1", 900, 2.0);
+        this.store.write("host1", "m1", 1500, 3.0);
+        this.store.write("host1", "m1", 1000000000000L, 4.0);
+        this.store.write("host2", "m1", 1200, 5.0);
+    }
+
+    /**
+     *
+     */
+    @After
+    public void after() {
+        this.store.close();
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testOpenEndedRangeVisitsRecordedBuckets() {
+        assertEquals(4, this.store.rangeQuery("host1", "m1", 0, Long.MAX_VALUE));
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 500, 1000000000000L));
+        assertEquals(0, this.store.rangeQuery("host3", "m1", 0, Long.MAX_VALUE));
+        assertArrayEquals(new int[] {4, 1, 0}, this.store.multiRangeQuery(Arrays.asList(
+                new SeriesId("host1", "m1"), new SeriesId("host2", "m1"), new SeriesId("host3", "m1")),
+                0, Long.MAX_VALUE));
+        assertEquals(Double.valueOf(4.0), this.store.maxQuery("host1", "m1"));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testReadRangeAcrossBuckets() {
+        SeriesPage page = this.store.readRange("host1", "m1", 0, Long.MAX_VALUE, 3, null);
+        assertEquals(3, page.size());
+        assertEquals(100, page.getTimes()[0]);
+        assertEquals(1500, page.getTimes()[2]);
+
+        page = this.store.readRange("host1", "m1", 0, Long.MAX_VALUE, 3, page.getPagingState());
+        assertEquals(1, page.size());
+        assertEquals(4.0, page.getValues()[0], 0);
+        assertNull(page.getPagingState());
+    }
+}
@@ -0,0 +1,116 @@
+package com.bmincey;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RollupMetricStoreTest {
+
+    private RollupMetricStore store;
+
+    /**
+     *
+     */
+    @Before
+    public void before() {
+        // flush interval long enough that only explicit flushes run during a test
+        this.store = new RollupMetricStore(new InMemoryMetricStore(), new InMemoryRollupSink(), 100, 60000);
+        this.store.createSchema();
+    }
+
+    /**
+     *
+     */
+    @After
+    public void after() {
+        this.store.close();
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testMaxAndAverageServedBeforeAndAfterFlush() {
+        assertNull(this.store.maxQuery("host1", "m1"));
+
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 20, 5.0);
+
+        assertEquals(Double.valueOf(5.0), this.store.maxQuery("host1", "m1"));
+        assertEquals(Double.valueOf(3.0), this.store.avgQuery("host1", "m1"));
+
+        this.store.flush();
+        assertEquals(Double.valueOf(5.0), this.store.maxQuery("host1", "m1"));
+        assertEquals(Double.valueOf(3.0), this.store.avgQuery("host1", "m1"));
+        assertEquals(2, this.store.rangeQuery("host1", "m1", 0, 100));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testWindowedRollups() {
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 150, 4.0);
+        this.store.write("host1", "m1", 250, 9.0);
+        // late point for the first window
+        this.store.write("host1", "m1", 50, 2.0);
+        this.store.flush();
+
+        Rollup first = this.store.rollupQuery("host1", "m1", 0, 100);
+        assertEquals(2, first.getCount());
+        assertEquals(1.0, first.getMin(), 0);
+        assertEquals(2.0, first.getMax(), 0);
+
+        // widened to whole windows: [100, 200) and [200, 300)
+        Rollup rest = this.store.rollupQuery("host1", "m1", 120, 260);
+        assertEquals(2, rest.getCount());
+        assertEquals(13.0, rest.getSum(), 0);
+        assertEquals(Double.valueOf(9.0), this.store.maxQuery("host1", "m1"));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testOnlyChangedRollupsAreFlushed() {
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host2", "m1", 10, 1.0);
+
+        // one window and one all-time rollup per series
+        assertEquals(4, this.store.flushRollups());
+        assertEquals(0, this.store.flushRollups());
+
+        this.store.write("host1", "m1", 20, 3.0);
+        assertEquals(2, this.store.flushRollups());
+        assertEquals(Double.valueOf(3.0), this.store.maxQuery("host1", "m1"));
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testClosedWindowsEvictedAfterFlush() {
+        this.store.write("host1", "m1", 10, 1.0);
+        this.store.write("host1", "m1", 150, 4.0);
+        this.store.write("host1", "m1", 250, 9.0);
+        assertEquals(4, this.store.getResidentRollups());
+
+        // windows 0 and 100 are closed once flushed; window 200 and the all-time rollup remain
+        this.store.flush();
+        assertEquals(2, this.store.getResidentRollups());
+
+        // a late point reloads its evicted window instead of overwriting it
+        this.store.write("host1", "m1", 50, 2.0);
+        this.store.flush();
+
+        Rollup first = this.store.rollupQuery("host1", "m1", 0, 100);
+        assertEquals(2, first.getCount());
+        assertEquals(3.0, first.getSum(), 0);
+        assertEquals(2, this.store.getResidentRollups());
+        assertEquals(Double.valueOf(9.0), this.store.maxQuery("host1", "m1"));
+    }
+}
@@ -0,0 +1,53 @@
+package com.bmincey;
+
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SeriesPageCodecTest {
+
+    /**
+     * Only the _id of the last point that fits becomes the page's key.
+     */
+    @Test
+    public void decodesPointsAndKeepsLastKey() {
+        SeriesPage page = new SeriesPage(0, 2, null);
+        SeriesPageCodec codec = new SeriesPageCodec(page);
+
+        for (String json : new String[] {
+                "{_id: {$oid: '000000000000000000000001'}, time: {$date: 10}, value: 1.0}",
+                "{_id: {$oid: '000000000000000000000002'}, time: {$date: 20}, value: 2.0}",
+                "{_id: {$oid: '000000000000000000000003'}, time: {$date: 20}, value: 3.0}"}) {
+            codec.decode(new BsonDocumentReader(BsonDocument.parse(json)), DecoderContext.builder().build());
+        }
+
+        assertEquals(2, page.size());
+        assertEquals("20/000000000000000000000002", page.getPagingState());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void encodedPageDecodesToSamePoints() {
+        SeriesPage page = new SeriesPage(0, 3, null);
+        page.offer(10, 1.0);
+        page.offer(20, 2.5);
+
+        BsonDocument encoded = new BsonDocument();
+        new SeriesPageCodec(page).encode(new BsonDocumentWriter(encoded), page, EncoderContext.builder().build());
+
+        SeriesPage decoded = new SeriesPage(0, 3, null);
+        new SeriesPageCodec(decoded).decode(new BsonDocumentReader(encoded), DecoderContext.builder().build());
+
+        assertEquals(2, decoded.size());
+        assertArrayEquals(new long[] {10, 20, 0}, decoded.getTimes());
+        assertArrayEquals(new double[] {1.0, 2.5, 0}, decoded.getValues(), 0);
+    }
+}
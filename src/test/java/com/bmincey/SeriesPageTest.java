@@ -0,0 +1,72 @@
+package com.bmincey;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class SeriesPageTest {
+
+    /**
+     * Points sharing a time across page boundaries are skipped, not lost or repeated.
+     */
+    @Test
+    public void testPagingStateCountsPointsAtLastTime() {
+        long[] times = {10, 20, 20, 20, 20, 30};
+        String state = null;
+        int read = 0;
+
+        do {
+            SeriesPage page = new SeriesPage(0, 2, state);
+            int skip = page.getSkip();
+
+            for (long time : times) {
+                if (time < page.getStartTime()) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                } else if (!page.offer(time, read)) {
+                    break;
+                }
+            }
+            for (int i = 0; i < page.size(); i++) {
+                assertEquals(times[read++], page.getTimes()[i]);
+            }
+            state = page.getPagingState();
+        } while (state != null);
+
+        assertEquals(times.length, read);
+    }
+
+    /**
+     * A page with a last key resumes after (time, key) and skips nothing.
+     */
+    @Test
+    public void testPagingStateWithLastKey() {
+        SeriesPage page = new SeriesPage(0, 2, null);
+        page.offer(10, 1.0);
+        page.offer(20, 2.0);
+        page.setLastKey("abc");
+        page.offer(20, 3.0);
+
+        SeriesPage next = new SeriesPage(0, 2, page.getPagingState());
+        assertEquals(20, next.getStartTime());
+        assertEquals(0, next.getSkip());
+        assertEquals("abc", next.getAfterKey());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testLastPageHasNoState() {
+        SeriesPage page = new SeriesPage(0, 2, null);
+        page.offer(1, 1.0);
+        page.offer(2, 2.0);
+
+        assertFalse(page.isFull());
+        assertNull(page.getPagingState());
+    }
+}
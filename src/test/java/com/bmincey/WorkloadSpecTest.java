@@ -0,0 +1,66 @@
+package com.bmincey;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WorkloadSpecTest {
+
+    /**
+     *
+     */
+    @Test
+    public void testZipfianStaysInRangeAndFavorsFirstItems() {
+        ZipfianGenerator zipfian = new ZipfianGenerator(1000);
+        Random random = new Random(42);
+        int first = 0;
+
+        for (int i = 0; i < 100000; i++) {
+            long item = zipfian.next(random);
+            assertTrue(item >= 0 && item < 1000);
+            if (item < 10) {
+                first++;
+            }
+        }
+        // uniform would put 1% of the draws on the first 10 items
+        assertTrue("first 10 items drawn " + first + " times", first > 30000);
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testThreadSplitKeepsReadersAndWriters() {
+        assertEquals(1, new WorkloadSpec(10, 3, 0.05, WorkloadSpec.UNIFORM, 1000, 1, 8).getReaderThreads());
+        assertEquals(7, new WorkloadSpec(10, 3, 0.99, WorkloadSpec.UNIFORM, 1000, 1, 8).getReaderThreads());
+        assertEquals(0, new WorkloadSpec(10, 3, 0, WorkloadSpec.UNIFORM, 1000, 1, 8).getReaderThreads());
+        assertEquals(4, new WorkloadSpec(10, 3, 0.5, WorkloadSpec.UNIFORM, 1000, 1, 8).getWriterThreads());
+    }
+
+    /**
+     *
+     */
+    @Test
+    public void testLatestReadsRecentlyWrittenSeries() {
+        WorkloadSpec spec = new WorkloadSpec(1000, 3, 0.5, WorkloadSpec.LATEST, 1000, 1, 2);
+        Random random = new Random(7);
+
+        long last = -1;
+        for (int i = 0; i < 5; i++) {
+            last = spec.nextWriteSeries(random);
+        }
+        int hits = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (spec.nextReadSeries(random) == last) {
+                hits++;
+            }
+        }
+        assertTrue("last write read " + hits + " times", hits > 200);
+        assertEquals("host0", spec.hostOf(2));
+        assertEquals("m3", spec.metricOf(2));
+        assertEquals("host1", spec.hostOf(3));
+    }
+}